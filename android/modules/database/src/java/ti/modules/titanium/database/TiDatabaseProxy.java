@@ -6,11 +6,25 @@
  */
 package ti.modules.titanium.database;
 
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.appcelerator.kroll.KrollDict;
+import org.appcelerator.kroll.KrollFunction;
 import org.appcelerator.kroll.KrollProxy;
+import org.appcelerator.kroll.KrollRuntime;
 import org.appcelerator.kroll.annotations.Kroll;
 import org.appcelerator.kroll.common.Log;
 import org.appcelerator.kroll.common.TiConfig;
 import org.appcelerator.titanium.TiApplication;
+import org.appcelerator.titanium.TiBlob;
 import org.appcelerator.titanium.TiContext;
 import org.appcelerator.titanium.util.TiConvert;
 
@@ -18,7 +32,13 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.DatabaseUtils;
 import android.database.SQLException;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteCursorDriver;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteProgram;
+import android.database.sqlite.SQLiteQuery;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Build;
 
 @Kroll.proxy(parentModule=DatabaseModule.class)
 public class TiDatabaseProxy extends KrollProxy
@@ -26,10 +46,242 @@ public class TiDatabaseProxy extends KrollProxy
 	private static final String LCAT = "TiDB";
 	private static final boolean DBG = TiConfig.LOGD;
 
+	private static final int MAX_CACHED_STATEMENTS = 20;
+	// whole numbers up to this magnitude are exact as doubles, so they are bound as integers
+	private static final double MAX_EXACT_INTEGER = 9007199254740992.0;
+
+	private static final String PROPERTY_SUCCESS = "success";
+	private static final String PROPERTY_ERROR = "error";
+	private static final String PROPERTY_ROWS = "rows";
+	private static final String PROPERTY_ROWS_AFFECTED = "rowsAffected";
+	private static final String PROPERTY_LAST_INSERT_ROW_ID = "lastInsertRowId";
+	private static final String PROPERTY_QUEUE_TIME = "queueTime";
+	private static final String PROPERTY_EXECUTION_TIME = "executionTime";
+
 	protected SQLiteDatabase db;
 	protected String name;
 	boolean statementLogging, readOnly;
 
+	// Statements by SQL text, least recently used first. Queries are only kept for their
+	// classification, their cursors are compiled by rawQuery.
+	private Map<String, CachedStatement> statementCache = new LinkedHashMap<String, CachedStatement>(MAX_CACHED_STATEMENTS, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest)
+		{
+			if (size() > MAX_CACHED_STATEMENTS) {
+				eldest.getValue().evict();
+				return true;
+			}
+			return false;
+		}
+	};
+
+	// Created by the first executeAsync, runs statements one at a time in the order they were queued
+	// guarded by this
+	private ExecutorService worker;
+	private boolean writeAheadLoggingChecked = false;
+	private volatile boolean writeAheadLogging = false;
+
+	// Requests that have been queued but not started yet, by id
+	// guarded by pendingRequests
+	private HashMap<Integer, AsyncRequest> pendingRequests = new HashMap<Integer, AsyncRequest>();
+	private int lastRequestId = 0;
+
+	/**
+	 * A statement classified once when first executed. Non-query statements are compiled on first
+	 * use and kept compiled until they are evicted from the cache.
+	 */
+	private class CachedStatement
+	{
+		final String sql;
+		final boolean isQuery;
+
+		// guarded by this
+		private SQLiteStatement statement;
+		private boolean evicted = false;
+
+		CachedStatement(String sql)
+		{
+			this.sql = sql;
+			this.isQuery = isQuery(sql);
+		}
+
+		synchronized void execute(Object[] args)
+		{
+			if (statement == null) {
+				statement = db.compileStatement(sql);
+			}
+
+			try {
+				bindArgs(statement, args);
+				statement.execute();
+
+			} finally {
+				if (evicted) {
+					// evicted while another thread was holding on to it
+					statement.close();
+					statement = null;
+
+				} else {
+					// don't keep blobs alive between calls
+					statement.clearBindings();
+				}
+			}
+		}
+
+		/**
+		 * Executes the statement once per set of arguments, holding on to it for the whole batch.
+		 * @return the total number of rows changed.
+		 */
+		synchronized long executeBatch(Object[] argsList)
+		{
+			if (statement == null) {
+				statement = db.compileStatement(sql);
+			}
+
+			SQLiteStatement changes = db.compileStatement("select changes()");
+			long rowsAffected = 0;
+			try {
+				for (Object args : argsList) {
+					if (args == null || args instanceof Object[]) {
+						bindArgs(statement, (Object[]) args);
+
+					} else {
+						// a single value for a single placeholder
+						bindArgs(statement, new Object[] { args });
+					}
+					statement.execute();
+					rowsAffected += changes.simpleQueryForLong();
+				}
+
+			} finally {
+				changes.close();
+				if (evicted) {
+					statement.close();
+					statement = null;
+
+				} else {
+					statement.clearBindings();
+				}
+			}
+
+			return rowsAffected;
+		}
+
+		synchronized void evict()
+		{
+			evicted = true;
+			if (statement != null) {
+				statement.close();
+				statement = null;
+			}
+		}
+	}
+
+	/**
+	 * Binds query arguments with their native types, rawQuery would bind them all as strings.
+	 */
+	private static class TypedCursorFactory implements SQLiteDatabase.CursorFactory
+	{
+		private Object[] args;
+
+		TypedCursorFactory(Object[] args)
+		{
+			this.args = args;
+		}
+
+		@SuppressWarnings("deprecation")
+		public Cursor newCursor(SQLiteDatabase db, SQLiteCursorDriver masterQuery, String editTable, SQLiteQuery query)
+		{
+			bindArgs(query, args);
+			return new SQLiteCursor(db, masterQuery, editTable, query);
+		}
+	}
+
+	/**
+	 * A statement queued by executeAsync. The callback receives the rows or the number of rows changed,
+	 * along with how long the statement waited in the queue and how long it took to execute.
+	 */
+	private class AsyncRequest implements Runnable
+	{
+		final int id;
+		final String sql;
+		final Object[] args;
+		final KrollFunction callback;
+		final long queuedTime = System.currentTimeMillis();
+
+		AsyncRequest(int id, String sql, Object[] args, KrollFunction callback)
+		{
+			this.id = id;
+			this.sql = sql;
+			this.args = args;
+			this.callback = callback;
+		}
+
+		public void run()
+		{
+			synchronized (pendingRequests) {
+				if (pendingRequests.remove(id) == null) {
+					// cancelled while queued
+					return;
+				}
+			}
+
+			long startTime = System.currentTimeMillis();
+			KrollDict result = new KrollDict();
+			try {
+				CachedStatement statement = getStatement(sql);
+				if (statement.isQuery) {
+					result.put(PROPERTY_ROWS, query(sql, args));
+
+				} else if (isTransactionControl(sql)) {
+					// can't run inside a transaction of its own
+					statement.execute(args);
+					result.put(PROPERTY_ROWS_AFFECTED, 0);
+					result.put(PROPERTY_LAST_INSERT_ROW_ID, getLastInsertRowId());
+
+				} else {
+					// Read the results in the same transaction, so they come from the connection that ran
+					// the statement and no statement from another thread runs in between
+					boolean inTransaction = tryBeginTransaction();
+					try {
+						statement.execute(args);
+						result.put(PROPERTY_ROWS_AFFECTED, getRowsAffected());
+						result.put(PROPERTY_LAST_INSERT_ROW_ID, getLastInsertRowId());
+						if (inTransaction) {
+							db.setTransactionSuccessful();
+						}
+
+					} finally {
+						if (inTransaction) {
+							db.endTransaction();
+						}
+					}
+				}
+				result.put(PROPERTY_SUCCESS, true);
+
+			} catch (RuntimeException e) {
+				// SQLException, or IllegalStateException if the database was closed
+				Log.e(LCAT, "Error executing async sql: " + e.getMessage(), e);
+				result.put(PROPERTY_SUCCESS, false);
+				result.put(PROPERTY_ERROR, e.getMessage());
+			}
+
+			long endTime = System.currentTimeMillis();
+			long queueTime = startTime - queuedTime;
+			long executionTime = endTime - startTime;
+			result.put(PROPERTY_QUEUE_TIME, queueTime);
+			result.put(PROPERTY_EXECUTION_TIME, executionTime);
+			if (statementLogging && TiConfig.LOGV) {
+				Log.v(LCAT, "Async SQL " + id + " waited " + queueTime + "ms, executed in " + executionTime + "ms: " + sql);
+			}
+
+			if (callback != null) {
+				callback.callAsync(getKrollObject(), new Object[] { result });
+			}
+		}
+	}
+
 	public TiDatabaseProxy(String name, SQLiteDatabase db)
 	{
 		//super(tiContext);
@@ -63,10 +315,29 @@ public class TiDatabaseProxy extends KrollProxy
 
 	@Kroll.method
 	public void close() {
+		ExecutorService asyncWorker = stopWorker();
+		if (asyncWorker != null) {
+			// let the statements already queued finish first
+			asyncWorker.execute(new Runnable() {
+				public void run()
+				{
+					closeDatabase();
+				}
+			});
+			asyncWorker.shutdown();
+			return;
+		}
+
+		closeDatabase();
+	}
+
+	private void closeDatabase()
+	{
 		if (db.isOpen()) {
 			if (DBG) {
 				Log.d(LCAT, "Closing database: " + name);
 			}
+			clearStatementCache();
 			db.close();
 		} else {
 			if (DBG) {
@@ -109,21 +380,14 @@ public class TiDatabaseProxy extends KrollProxy
 
 		TiResultSetProxy rs = null;
 		Cursor c = null;
-		String[] newArgs = null;
-		if (sqlArgs != null) {
-			newArgs = new String[sqlArgs.length];
-			for(int i = 0; i < sqlArgs.length; i++) {
-				newArgs[i] = TiConvert.toString(sqlArgs[i]);
-			}
-		}
 		try {
-			String lcSql = sql.toLowerCase().trim(); 
-			// You must use execSQL unless you are expecting a resultset, changes aren't committed
-			// if you don't. Just expecting them on select or pragma may be enough, but
+			CachedStatement statement = getStatement(sql);
+			// You must execute the statement unless you are expecting a resultset, changes aren't
+			// committed if you don't. Just expecting them on select or pragma may be enough, but
 			// it may need additional tuning. The better solution would be to expose
 			// both types of queries through the Titanium API.
-			if (lcSql.startsWith("select") || lcSql.startsWith("pragma")) {
-				c = db.rawQuery(sql, newArgs);
+			if (statement.isQuery) {
+				c = db.rawQueryWithFactory(new TypedCursorFactory(sqlArgs), sql, null, null);
 	 			if (c != null) {
 					// Most non-SELECT statements won't actually return data, but some such as
 					// PRAGMA do. If there are no results, just return null.
@@ -145,7 +409,7 @@ public class TiDatabaseProxy extends KrollProxy
 					rs = new TiResultSetProxy(null); // because iPhone does it this way.
 				}
 			} else {
-				db.execSQL(sql, newArgs);
+				statement.execute(sqlArgs);
 			}
 		} catch (SQLException e) {
 			String msg = "Error executing sql: " + e.getMessage();
@@ -163,6 +427,299 @@ public class TiDatabaseProxy extends KrollProxy
 		return rs;
 	}
 
+	/**
+	 * Executes a statement once for each set of arguments, inside a single transaction.
+	 * @param sql a statement that doesn't return rows.
+	 * @param argsList an array holding an array of arguments for each execution.
+	 * @return the total number of rows changed.
+	 */
+	@Kroll.method
+	public int executeBatch(String sql, Object[] argsList)
+	{
+		CachedStatement statement = getStatement(sql);
+		if (statement.isQuery) {
+			throw new IllegalArgumentException("executeBatch expects a statement that doesn't return rows");
+		}
+
+		if (statementLogging && TiConfig.LOGV) {
+			Log.v(LCAT, "Executing SQL batch of " + argsList.length + ": " + sql);
+		}
+
+		long rowsAffected;
+		db.beginTransaction();
+		try {
+			rowsAffected = statement.executeBatch(argsList);
+			db.setTransactionSuccessful();
+
+		} catch (SQLException e) {
+			Log.e(LCAT, "Error executing sql batch: " + e.getMessage(), e);
+			throw e;
+
+		} finally {
+			db.endTransaction();
+		}
+
+		return (int) rowsAffected;
+	}
+
+	/**
+	 * Calls a function inside a transaction. The transaction is committed when the function
+	 * returns anything but false. It is rolled back when the function returns false, or when
+	 * the runtime reports an exception while it runs. The runtime reports the exception as usual
+	 * and the function's result is null in that case. Transactions can be nested, in which case
+	 * nothing is committed until the outermost one is.
+	 * @param callback the function to call, which receives this database.
+	 * @return the result of the function.
+	 */
+	@Kroll.method
+	public Object transaction(KrollFunction callback)
+	{
+		Object result;
+		db.beginTransaction();
+		try {
+			// the runtimes report exceptions thrown by the function and return null, rather than rethrowing
+			int exceptionCount = KrollRuntime.getExceptionCount();
+			result = callback.call(getKrollObject(), new Object[] { this });
+			if (KrollRuntime.getExceptionCount() != exceptionCount) {
+				Log.w(LCAT, "Exception in transaction function, rolling back");
+
+			} else if (!Boolean.FALSE.equals(result)) {
+				db.setTransactionSuccessful();
+
+			} else if (DBG) {
+				Log.d(LCAT, "Transaction function returned false, rolling back");
+			}
+
+		} finally {
+			db.endTransaction();
+		}
+
+		return result;
+	}
+
+	/**
+	 * Queues a statement on this database's worker thread, so a slow statement doesn't hold up the
+	 * calling thread. Statements queued this way run one at a time, in order. The first call switches
+	 * the database to write-ahead logging where available, so reads on other threads don't wait for
+	 * the worker's writes.
+	 * @param sql the statement to execute.
+	 * @param args an array of arguments for the statement's placeholders, or null.
+	 * @param callback the function called with the result.
+	 * @return an id that can be passed to {@link #cancel(int)}.
+	 */
+	@Kroll.method
+	public int executeAsync(String sql, Object args, @Kroll.argument(optional=true) KrollFunction callback)
+	{
+		Object[] sqlArgs;
+		if (args == null || args instanceof Object[]) {
+			sqlArgs = (Object[]) args;
+
+		} else {
+			// a single value for a single placeholder
+			sqlArgs = new Object[] { args };
+		}
+
+		AsyncRequest request;
+		synchronized (pendingRequests) {
+			request = new AsyncRequest(++lastRequestId, sql, sqlArgs, callback);
+			pendingRequests.put(request.id, request);
+		}
+		getWorker().execute(request);
+
+		return request.id;
+	}
+
+	/**
+	 * Cancels a statement queued by {@link #executeAsync(String, Object, KrollFunction)}. Statements
+	 * that have already started can't be cancelled. The callback of a cancelled statement is not called.
+	 * @param id the id returned by executeAsync.
+	 * @return whether the statement was cancelled before it started.
+	 */
+	@Kroll.method
+	public boolean cancel(int id)
+	{
+		synchronized (pendingRequests) {
+			return pendingRequests.remove(id) != null;
+		}
+	}
+
+	private synchronized ExecutorService getWorker()
+	{
+		if (worker == null) {
+			enableWriteAheadLogging();
+
+			// a single thread, kept until the database is closed
+			worker = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+					public Thread newThread(Runnable runnable)
+					{
+						return new Thread(runnable, LCAT + "-" + name);
+					}
+				});
+		}
+		return worker;
+	}
+
+	// Detaches the worker and returns it, if there was one. Statements already queued still run.
+	private synchronized ExecutorService stopWorker()
+	{
+		ExecutorService stopped = worker;
+		worker = null;
+		return stopped;
+	}
+
+	// Drops queued statements, so they don't run and their callbacks aren't called
+	private void cancelPendingRequests()
+	{
+		synchronized (pendingRequests) {
+			if (DBG && !pendingRequests.isEmpty()) {
+				Log.d(LCAT, "Dropping " + pendingRequests.size() + " queued statements for " + name);
+			}
+			pendingRequests.clear();
+		}
+	}
+
+	// must be called while holding the lock on this
+	private void enableWriteAheadLogging()
+	{
+		if (writeAheadLoggingChecked) {
+			return;
+		}
+		writeAheadLoggingChecked = true;
+
+		// enableWriteAheadLogging is API 11+
+		if (readOnly || Build.VERSION.SDK_INT < 11) {
+			return;
+		}
+
+		try {
+			Method method = SQLiteDatabase.class.getMethod("enableWriteAheadLogging");
+			Object enabled = method.invoke(db);
+			writeAheadLogging = Boolean.TRUE.equals(enabled);
+			if (DBG) {
+				Log.d(LCAT, "Write-ahead logging for " + name + ": " + enabled);
+			}
+
+		} catch (Exception e) {
+			// fails inside a transaction, the worker still runs without it
+			Log.w(LCAT, "Unable to enable write-ahead logging for " + name + ": " + e.getMessage());
+		}
+	}
+
+	// Reads every row of a query into an array of dictionaries
+	private Object[] query(String sql, Object[] args)
+	{
+		Cursor c = db.rawQueryWithFactory(new TypedCursorFactory(args), sql, null, null);
+		if (c == null) {
+			return new Object[0];
+		}
+
+		try {
+			if (c.getColumnCount() == 0) {
+				return new Object[0];
+			}
+			return new TiResultSetProxy(c).toArray(null, false);
+
+		} finally {
+			c.close();
+		}
+	}
+
+	private CachedStatement getStatement(String sql)
+	{
+		synchronized (statementCache) {
+			CachedStatement statement = statementCache.get(sql);
+			if (statement == null) {
+				statement = new CachedStatement(sql);
+				statementCache.put(sql, statement);
+			}
+			return statement;
+		}
+	}
+
+	private void clearStatementCache()
+	{
+		synchronized (statementCache) {
+			for (CachedStatement statement : statementCache.values()) {
+				statement.evict();
+			}
+			statementCache.clear();
+		}
+	}
+
+	private static boolean isQuery(String sql)
+	{
+		int start = skipWhitespace(sql);
+		return sql.regionMatches(true, start, "select", 0, 6) || sql.regionMatches(true, start, "pragma", 0, 6);
+	}
+
+	// Statements that begin or end a transaction themselves
+	private static boolean isTransactionControl(String sql)
+	{
+		int start = skipWhitespace(sql);
+		return sql.regionMatches(true, start, "begin", 0, 5) || sql.regionMatches(true, start, "commit", 0, 6)
+			|| sql.regionMatches(true, start, "end", 0, 3) || sql.regionMatches(true, start, "rollback", 0, 8)
+			|| sql.regionMatches(true, start, "savepoint", 0, 9) || sql.regionMatches(true, start, "release", 0, 7);
+	}
+
+	private static int skipWhitespace(String sql)
+	{
+		int start = 0;
+		int length = sql.length();
+		while (start < length && Character.isWhitespace(sql.charAt(start))) {
+			start++;
+		}
+		return start;
+	}
+
+	/**
+	 * Binds arguments to a statement with their native SQLite types: numbers as integers or reals,
+	 * booleans as 0 and 1, blobs as blobs and null as NULL. Anything else is bound as a string.
+	 */
+	static void bindArgs(SQLiteProgram program, Object[] args)
+	{
+		program.clearBindings();
+		if (args == null) {
+			return;
+		}
+
+		for (int i = 0; i < args.length; i++) {
+			bindArg(program, i + 1, args[i]);
+		}
+	}
+
+	static void bindArg(SQLiteProgram program, int index, Object value)
+	{
+		if (value == null) {
+			program.bindNull(index);
+
+		} else if (value instanceof Boolean) {
+			program.bindLong(index, ((Boolean) value) ? 1 : 0);
+
+		} else if (value instanceof Double || value instanceof Float) {
+			// JS numbers arrive as doubles, keep whole numbers integral
+			double number = ((Number) value).doubleValue();
+			if (number == Math.rint(number) && Math.abs(number) <= MAX_EXACT_INTEGER) {
+				program.bindLong(index, (long) number);
+
+			} else {
+				program.bindDouble(index, number);
+			}
+
+		} else if (value instanceof Number) {
+			program.bindLong(index, ((Number) value).longValue());
+
+		} else if (value instanceof TiBlob) {
+			program.bindBlob(index, ((TiBlob) value).getBytes());
+
+		} else if (value instanceof byte[]) {
+			program.bindBlob(index, (byte[]) value);
+
+		} else {
+			program.bindString(index, TiConvert.toString(value));
+		}
+	}
+
 	@Kroll.getProperty @Kroll.method
 	public String getName() {
 		return name;
@@ -170,12 +727,51 @@ public class TiDatabaseProxy extends KrollProxy
 
 	@Kroll.getProperty @Kroll.method
 	public int getLastInsertRowId() {
-		return (int) DatabaseUtils.longForQuery(db, "select last_insert_rowid()", null);
+		return (int) longForPrimaryQuery("select last_insert_rowid()");
 	}
 
 	@Kroll.getProperty @Kroll.method
 	public int getRowsAffected() {
-		return (int) DatabaseUtils.longForQuery(db, "select changes()", null);
+		return (int) longForPrimaryQuery("select changes()");
+	}
+
+	// With write-ahead logging, read-only statements outside a transaction may run on a secondary
+	// connection, where changes() and last_insert_rowid() don't see the statements run on this one
+	private long longForPrimaryQuery(String sql)
+	{
+		if (!writeAheadLogging) {
+			return DatabaseUtils.longForQuery(db, sql, null);
+		}
+
+		boolean inTransaction = tryBeginTransaction();
+		try {
+			long value = DatabaseUtils.longForQuery(db, sql, null);
+			if (inTransaction) {
+				db.setTransactionSuccessful();
+			}
+			return value;
+
+		} finally {
+			if (inTransaction) {
+				db.endTransaction();
+			}
+		}
+	}
+
+	// Returns false when a transaction can't be started, e.g. on platforms that don't track
+	// a transaction begun with a BEGIN statement and so can't nest inside it
+	private boolean tryBeginTransaction()
+	{
+		try {
+			db.beginTransaction();
+			return true;
+
+		} catch (SQLException e) {
+			if (DBG) {
+				Log.d(LCAT, "Unable to begin a transaction: " + e.getMessage());
+			}
+			return false;
+		}
 	}
 
 	@Kroll.method
@@ -185,8 +781,15 @@ public class TiDatabaseProxy extends KrollProxy
 			return;
 		}
 		
+		cancelPendingRequests();
+		ExecutorService asyncWorker = stopWorker();
+		if (asyncWorker != null) {
+			asyncWorker.shutdown();
+		}
+
 		if (db.isOpen()) {
 			Log.w(LCAT, "Attempt to remove open database. Closing then removing " + name);
+			clearStatementCache();
 			db.close();
 		}
 		Context ctx = TiApplication.getInstance();
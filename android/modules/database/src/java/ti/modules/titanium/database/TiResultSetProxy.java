@@ -8,6 +8,7 @@ package ti.modules.titanium.database;
 
 import java.util.HashMap;
 
+import org.appcelerator.kroll.KrollDict;
 import org.appcelerator.kroll.KrollProxy;
 import org.appcelerator.kroll.annotations.Kroll;
 import org.appcelerator.kroll.common.Log;
@@ -103,26 +104,9 @@ public class TiResultSetProxy extends KrollProxy
 		}
 		boolean outOfBounds = (index >= rs.getColumnCount());
 		Object result = null;
-		boolean fromString = false;
 
 		try {
-			if (rs instanceof AbstractWindowedCursor) {
-				AbstractWindowedCursor cursor = (AbstractWindowedCursor) rs;
-				if (cursor.isFloat(index)) {
-					result = cursor.getDouble(index);
-				} else if (cursor.isLong(index)) {
-					result = cursor.getLong(index);
-				} else if (cursor.isNull(index)) {
-					result = null;
-				} else {
-					fromString = true;
-				}
-			} else {
-				fromString = true;
-			}
-			if (fromString) {
-				result = rs.getString(index);
-			}
+			result = getValue(index);
 			if (outOfBounds && Build.VERSION.SDK_INT >= 11) {
 				// TIMOB-4515: Column number doesn't exist, yet no exception
 				// occurred. This is known to happen in Honeycomb. So
@@ -163,6 +147,167 @@ public class TiResultSetProxy extends KrollProxy
 		return result;
 	}
 
+	// Reads a column of the current row as a Double, Long, null or String
+	private Object getValue(int index)
+	{
+		if (rs instanceof AbstractWindowedCursor) {
+			AbstractWindowedCursor cursor = (AbstractWindowedCursor) rs;
+			if (cursor.isFloat(index)) {
+				return cursor.getDouble(index);
+			} else if (cursor.isLong(index)) {
+				return cursor.getLong(index);
+			} else if (cursor.isNull(index)) {
+				return null;
+			}
+		}
+
+		return rs.getString(index);
+	}
+
+	/**
+	 * Reads rows starting at the current row, leaving the result set positioned after the last row read.
+	 * @param limit the maximum number of rows to read, all remaining rows if omitted or not positive.
+	 * @param asArrays whether to return each row as an array of values instead of a dictionary keyed by column name.
+	 * @return the rows read.
+	 */
+	@Kroll.method
+	public Object[] toArray(@Kroll.argument(optional=true) Object limit, @Kroll.argument(optional=true) boolean asArrays)
+	{
+		return readRows(toLimit(limit), asArrays);
+	}
+
+	/**
+	 * Reads the next page of rows, starting at the current row.
+	 * @param count the number of rows to read.
+	 * @param asArrays whether to return each row as an array of values instead of a dictionary keyed by column name.
+	 * @return the rows read, an empty array once there are no rows left.
+	 */
+	@Kroll.method
+	public Object[] nextPage(int count, @Kroll.argument(optional=true) boolean asArrays)
+	{
+		if (count <= 0) {
+			return new Object[0];
+		}
+		return readRows(count, asArrays);
+	}
+
+	/**
+	 * Reads rows into one array per column, starting at the current row. Columns holding only
+	 * integers or only numbers are returned as primitive arrays, which cross into JS in bulk.
+	 * @param limit the maximum number of rows to read, all remaining rows if omitted or not positive.
+	 * @return a dictionary of arrays keyed by column name.
+	 */
+	@Kroll.method
+	public KrollDict toColumns(@Kroll.argument(optional=true) Object limit)
+	{
+		int rowCount = startBulkRead(toLimit(limit));
+		String[] names = rs == null ? new String[0] : rs.getColumnNames();
+		KrollDict columns = new KrollDict(names.length);
+
+		Object[][] values = new Object[names.length][rowCount];
+		for (int row = 0; row < rowCount; row++) {
+			for (int column = 0; column < names.length; column++) {
+				values[column][row] = getValue(column);
+			}
+			rs.moveToNext();
+		}
+
+		for (int column = 0; column < names.length; column++) {
+			columns.put(names[column], toColumnArray(values[column]));
+		}
+
+		return columns;
+	}
+
+	private Object toColumnArray(Object[] values)
+	{
+		boolean allLong = true;
+		boolean allNumber = true;
+		for (Object value : values) {
+			if (!(value instanceof Long)) {
+				allLong = false;
+				if (!(value instanceof Double)) {
+					allNumber = false;
+					break;
+				}
+			}
+		}
+
+		if (values.length == 0 || !allNumber) {
+			return values;
+		}
+
+		if (allLong) {
+			long[] longs = new long[values.length];
+			for (int i = 0; i < values.length; i++) {
+				longs[i] = (Long) values[i];
+			}
+			return longs;
+		}
+
+		double[] doubles = new double[values.length];
+		for (int i = 0; i < values.length; i++) {
+			doubles[i] = ((Number) values[i]).doubleValue();
+		}
+		return doubles;
+	}
+
+	private Object[] readRows(int limit, boolean asArrays)
+	{
+		int rowCount = startBulkRead(limit);
+		Object[] rows = new Object[rowCount];
+		if (rowCount == 0) {
+			return rows;
+		}
+
+		String[] names = rs.getColumnNames();
+		for (int row = 0; row < rowCount; row++) {
+			if (asArrays) {
+				Object[] values = new Object[names.length];
+				for (int column = 0; column < names.length; column++) {
+					values[column] = getValue(column);
+				}
+				rows[row] = values;
+
+			} else {
+				KrollDict values = new KrollDict(names.length);
+				for (int column = 0; column < names.length; column++) {
+					values.put(names[column], getValue(column));
+				}
+				rows[row] = values;
+			}
+			rs.moveToNext();
+		}
+
+		return rows;
+	}
+
+	// Positions the cursor on its first unread row and returns how many rows can be read
+	private int startBulkRead(int limit)
+	{
+		if (!isValidRow()) {
+			return 0;
+		}
+
+		if (rs.isBeforeFirst()) {
+			rs.moveToFirst();
+		}
+
+		try {
+			return Math.max(0, Math.min(limit, rs.getCount() - rs.getPosition()));
+
+		} catch (SQLException e) {
+			Log.e(LCAT, "Unable to read rows: " + e.getMessage(), e);
+			throw e;
+		}
+	}
+
+	private static int toLimit(Object limit)
+	{
+		int value = limit == null ? 0 : TiConvert.toInt(limit);
+		return value > 0 ? value : Integer.MAX_VALUE;
+	}
+
 	@Kroll.method
 	public Object fieldByName(Object[] args) 
 	{
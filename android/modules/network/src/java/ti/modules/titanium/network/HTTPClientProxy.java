@@ -16,7 +16,7 @@ import ti.modules.titanium.xml.DocumentProxy;
 
 @Kroll.proxy(creatableInModule=NetworkModule.class, propertyAccessors = {
 	"ondatastream", "onerror", "onload",
-	"onreadystatechange", "onsendstream"
+	"onreadystatechange", "onsendstream", "priority", "file", "resume"
 })
 
 public class HTTPClientProxy extends KrollProxy
@@ -14,6 +14,7 @@ import org.appcelerator.kroll.common.Log;
 import org.appcelerator.kroll.common.TiConfig;
 import org.appcelerator.titanium.TiApplication;
 import org.appcelerator.titanium.TiContext;
+import org.appcelerator.titanium.util.TiResponseCache;
 
 import android.app.Activity;
 import android.content.Context;
@@ -39,6 +40,9 @@ public class NetworkModule extends KrollModule {
 	public static final int NETWORK_LAN = 3;
 	public static final int NETWORK_UNKNOWN = 4;
 
+	@Kroll.constant public static final int HTTP_PRIORITY_FOREGROUND = TiHTTPRequestExecutor.PRIORITY_FOREGROUND;
+	@Kroll.constant public static final int HTTP_PRIORITY_PREFETCH = TiHTTPRequestExecutor.PRIORITY_PREFETCH;
+
     public enum State {
         UNKNOWN,
 
@@ -231,6 +235,21 @@ public class NetworkModule extends KrollModule {
 		}
 	}
 	
+	@Kroll.method
+	public KrollDict getHTTPClientStats()
+	{
+		KrollDict stats = TiHTTPRequestExecutor.getInstance().getStats();
+		stats.put("connectionPool", TiHTTPClient.getConnectionPoolStats());
+
+		return stats;
+	}
+
+	@Kroll.method
+	public KrollDict getResponseCacheStats()
+	{
+		return TiResponseCache.getStats();
+	}
+
 	@Kroll.method @Kroll.topLevel
 	public String encodeURIComponent(String component) {
 		return Uri.encode(component);
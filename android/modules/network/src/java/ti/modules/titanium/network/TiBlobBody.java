@@ -0,0 +1,100 @@
+/**
+ * Appcelerator Titanium Mobile
+ * Copyright (c) 2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Apache Public License
+ * Please see the LICENSE included with this distribution for details.
+ */
+package ti.modules.titanium.network;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.http.entity.mime.MIME;
+import org.apache.http.entity.mime.content.AbstractContentBody;
+import org.apache.james.mime4j.message.BinaryBody;
+import org.appcelerator.titanium.TiBlob;
+import org.appcelerator.titanium.io.TiBaseFile;
+import org.appcelerator.titanium.util.TiMimeTypeHelper;
+
+/**
+ * A multipart body that streams a blob or file straight from its input stream, instead of
+ * copying it to a temporary file first.
+ */
+class TiBlobBody extends AbstractContentBody implements BinaryBody
+{
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final TiBlob blob;
+	private final String filename;
+	private final long length;
+
+	/**
+	 * @param blob the blob to send. File blobs are read when the request is written.
+	 */
+	public TiBlobBody(TiBlob blob)
+	{
+		super(blob.getMimeType() == null ? "application/octet-stream" : blob.getMimeType());
+		this.blob = blob;
+		this.length = blob.getLength();
+
+		String name = null;
+		if (blob.getType() == TiBlob.TYPE_FILE) {
+			name = ((TiBaseFile) blob.getData()).name();
+			if (name != null && name.startsWith("/")) {
+				name = name.substring(1);
+			}
+		}
+		if (name == null || name.length() == 0) {
+			name = "tixhr." + TiMimeTypeHelper.getFileExtensionFromMimeType(getMimeType(), "txt");
+		}
+		this.filename = name;
+	}
+
+	public InputStream getInputStream() throws IOException
+	{
+		InputStream in = blob.getInputStream();
+		if (in == null) {
+			throw new IOException("Unable to read " + filename);
+		}
+		return in;
+	}
+
+	public void writeTo(OutputStream out, int mode) throws IOException
+	{
+		if (out == null) {
+			throw new IllegalArgumentException("Output stream may not be null");
+		}
+		InputStream in = getInputStream();
+		try {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int count;
+			while ((count = in.read(buffer)) != -1) {
+				out.write(buffer, 0, count);
+			}
+			out.flush();
+		} finally {
+			in.close();
+		}
+	}
+
+	public String getTransferEncoding()
+	{
+		return MIME.ENC_BINARY;
+	}
+
+	public String getCharset()
+	{
+		return null;
+	}
+
+	public long getContentLength()
+	{
+		return length;
+	}
+
+	public String getFilename()
+	{
+		return filename;
+	}
+}
@@ -20,22 +20,29 @@ import java.net.URI;
 import java.net.URL;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.GZIPInputStream;
 
 import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.HeaderElementIterator;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
 import org.apache.http.HttpVersion;
 import org.apache.http.MethodNotSupportedException;
 import org.apache.http.NameValuePair;
@@ -48,6 +55,8 @@ import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.HttpResponseException;
 import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
 import org.apache.http.conn.params.ConnManagerParams;
 import org.apache.http.conn.params.ConnPerRouteBean;
 import org.apache.http.conn.scheme.PlainSocketFactory;
@@ -57,14 +66,15 @@ import org.apache.http.conn.ssl.SSLSocketFactory;
 import org.apache.http.cookie.Cookie;
 import org.apache.http.entity.AbstractHttpEntity;
 import org.apache.http.entity.StringEntity;
+import org.apache.http.entity.mime.MIME;
 import org.apache.http.entity.mime.MultipartEntity;
+import org.apache.http.entity.mime.content.AbstractContentBody;
 import org.apache.http.entity.mime.content.ContentBody;
-import org.apache.http.entity.mime.content.FileBody;
 import org.apache.http.entity.mime.content.StringBody;
 import org.apache.http.impl.DefaultHttpRequestFactory;
 import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.impl.client.DefaultRedirectHandler;
-import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.message.BasicHeaderElementIterator;
 import org.apache.http.message.BasicHttpEntityEnclosingRequest;
 import org.apache.http.message.BasicNameValuePair;
 import org.apache.http.params.BasicHttpParams;
@@ -83,13 +93,15 @@ import org.appcelerator.kroll.util.TiTempFileHelper;
 import org.appcelerator.titanium.TiApplication;
 import org.appcelerator.titanium.TiBlob;
 import org.appcelerator.titanium.TiFileProxy;
+import org.appcelerator.titanium.TiProperties;
 import org.appcelerator.titanium.io.TiBaseFile;
 import org.appcelerator.titanium.io.TiFile;
-import org.appcelerator.titanium.io.TiResourceFile;
+import org.appcelerator.titanium.io.TiFileFactory;
 import org.appcelerator.titanium.util.TiConvert;
 import org.appcelerator.titanium.util.TiMimeTypeHelper;
 import org.appcelerator.titanium.util.TiUrl;
 
+import ti.modules.titanium.BufferProxy;
 import ti.modules.titanium.xml.DocumentProxy;
 import ti.modules.titanium.xml.XMLModule;
 import android.net.Uri;
@@ -106,10 +118,25 @@ public class TiHTTPClient
 	private static final String ON_ERROR = "onerror";
 	private static final String ON_DATA_STREAM = "ondatastream";
 	private static final String ON_SEND_STREAM = "onsendstream";
+	private static final String PROPERTY_PRIORITY = "priority";
+	private static final String PROPERTY_FILE = "file";
+	private static final String PROPERTY_RESUME = "resume";
+	private static final int STREAM_CHUNK_SIZE = 64 * 1024;
+	private static final String PROPERTY_MAX_CONNECTIONS = "ti.android.httpclient.maxconnections";
+	private static final String PROPERTY_MAX_CONNECTIONS_PER_ROUTE = "ti.android.httpclient.maxconnectionsperroute";
+	private static final String PROPERTY_IDLE_TIMEOUT = "ti.android.httpclient.idletimeout";
+	private static final String PROPERTY_STALE_CHECK = "ti.android.httpclient.stalecheck";
+	private static final int DEFAULT_MAX_CONNECTIONS = 5;
+	private static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 5;
+	private static final int DEFAULT_IDLE_TIMEOUT = 30000;
+	private static final int MIN_IDLE_CHECK_INTERVAL = 1000;
+	private static final String PROPERTY_PROGRESS_INTERVAL = "ti.android.httpclient.progressinterval";
+	private static final int DEFAULT_PROGRESS_INTERVAL = 100;
 
-	private static AtomicInteger httpClientThreadCounter;
 	private static DefaultHttpClient nonValidatingClient;
 	private static DefaultHttpClient validatingClient;
+	private static final Object clientLock = new Object();
+	private static Timer idleConnectionTimer;
 
 	private DefaultHttpClient client;
 	private KrollProxy proxy;
@@ -127,14 +154,17 @@ public class TiHTTPClient
 	private Credentials credentials;
 	private TiBlob responseData;
 	private OutputStream responseOut;
+	private TiFile responseFile;
+	private long resumeOffset;
 	private String charset;
 	private String contentType;
 	private long maxBufferSize;
+	private long progressInterval;
 	private ArrayList<NameValuePair> nvPairs;
 	private HashMap<String, ContentBody> parts;
 	private String data;
 	private boolean needMultipart;
-	private Thread clientThread;
+	private volatile TiHTTPRequestExecutor.Request clientRequest;
 	private boolean aborted;
 	private int timeout = -1;
 	private boolean autoEncodeUrl = true;
@@ -207,6 +237,9 @@ public class TiHTTPClient
 			if (client != null) {
 				TiHTTPClient c = client.get();
 				if (c != null) {
+					if (c.clientRequest != null) {
+						c.clientRequest.firstByteReceived();
+					}
 					c.response = response;
 					c.setReadyState(READY_STATE_HEADERS_RECEIVED);
 					c.setStatus(response.getStatusLine().getStatusCode());
@@ -249,7 +282,15 @@ public class TiHTTPClient
 
 				responseData = null;
 
-				if (is != null) {
+				if (is != null && responseFile != null) {
+					try {
+						streamEntityToFile(is, entity.getContentLength());
+
+					} finally {
+						entity.consumeContent();
+					}
+
+				} else if (is != null) {
 					long contentLength = entity.getContentLength();
 					if (DBG) {
 						Log.d(LCAT, "Content length: " + contentLength);
@@ -302,12 +343,13 @@ public class TiHTTPClient
 			}
 
 			TiFile tiFile = new TiFile(outFile, outFile.getAbsolutePath(), false);
+			FileOutputStream fileOut = new FileOutputStream(outFile, false);
 			if (dumpResponseOut) {
-				ByteArrayOutputStream byteStream = (ByteArrayOutputStream) responseOut;
-				tiFile.write(TiBlob.blobFromData(byteStream.toByteArray()), false);
+				// write the buffered bytes straight to the file instead of copying them out first
+				((ByteArrayOutputStream) responseOut).writeTo(fileOut);
 			}
 
-			responseOut = new FileOutputStream(outFile, dumpResponseOut);
+			responseOut = fileOut;
 			responseData = TiBlob.blobFromFile(tiFile, contentType);
 			return tiFile;
 		}
@@ -319,7 +361,7 @@ public class TiHTTPClient
 					createFileResponseData(false);
 				} else {
 					long streamSize = contentLength > 0 ? contentLength : 512;
-					responseOut = new ByteArrayOutputStream((int)streamSize);
+					responseOut = new ResponseBufferStream((int)streamSize);
 				}
 			}
 			if (totalSize > maxBufferSize && responseOut instanceof ByteArrayOutputStream) {
@@ -349,14 +391,77 @@ public class TiHTTPClient
 		
 		private void finishedReceivingEntityData(long contentLength) throws IOException
 		{
-			if (responseOut instanceof ByteArrayOutputStream) {
-				ByteArrayOutputStream byteStream = (ByteArrayOutputStream) responseOut;
-				responseData = TiBlob.blobFromData(byteStream.toByteArray(), contentType);
+			if (responseOut instanceof ResponseBufferStream) {
+				ResponseBufferStream byteStream = (ResponseBufferStream) responseOut;
+				responseData = TiBlob.blobFromData(byteStream.getBytes(), contentType);
 			}
 			responseOut.close();
 			responseOut = null;
 		}
 
+		/**
+		 * Streams the response body straight into the target file using channel transfers. When an
+		 * ondatastream callback is set, each chunk is handed to it in a single reused BufferProxy, and
+		 * the callback is invoked synchronously so the buffer is not overwritten before JS is done with it.
+		 */
+		private void streamEntityToFile(InputStream is, long contentLength) throws IOException
+		{
+			boolean append = resumeOffset > 0 && response.getStatusLine().getStatusCode() == HttpStatus.SC_PARTIAL_CONTENT;
+			long position = append ? resumeOffset : 0;
+			long totalCount = contentLength > 0 ? position + contentLength : contentLength;
+
+			FileOutputStream out = new FileOutputStream(responseFile.getNativeFile(), append);
+			FileChannel fileChannel = out.getChannel();
+			ReadableByteChannel source = Channels.newChannel(is);
+
+			try {
+				KrollFunction onDataStreamCallback = getCallback(ON_DATA_STREAM);
+				if (onDataStreamCallback == null) {
+					long transferred;
+					while ((transferred = fileChannel.transferFrom(source, position, STREAM_CHUNK_SIZE)) > 0) {
+						position += transferred;
+					}
+
+				} else {
+					BufferProxy chunk = new BufferProxy(STREAM_CHUNK_SIZE);
+					while (true) {
+						// the callback sees the chunk trimmed to the bytes read, restore it before the next read
+						// (resizing keeps the capacity, and the view is taken again in case JS grew the buffer)
+						chunk.resize(STREAM_CHUNK_SIZE);
+						ByteBuffer buffer = chunk.getByteBuffer();
+						int count = source.read(buffer);
+						if (count == -1) {
+							break;
+						}
+						if (count == 0) {
+							continue;
+						}
+
+						buffer.flip();
+						while (buffer.hasRemaining()) {
+							fileChannel.write(buffer);
+						}
+						position += count;
+						chunk.resize(count);
+
+						KrollDict o = new KrollDict();
+						o.put("totalCount", totalCount);
+						o.put("totalSize", position);
+						o.put("size", count);
+						o.put("buffer", chunk);
+						// the total is unknown without a content length
+						o.put("progress", totalCount > 0 ? ((double)position)/((double)totalCount) : -1);
+						onDataStreamCallback.call(proxy.getKrollObject(), o);
+					}
+				}
+
+			} finally {
+				out.close();
+			}
+
+			responseData = TiBlob.blobFromFile(responseFile, contentType);
+		}
+
 		private void setResponseText(HttpEntity entity) throws IOException, ParseException
 		{
 			if (entity != null) {
@@ -365,19 +470,46 @@ public class TiHTTPClient
 		}
 	}
 
+	/**
+	 * Response buffer that hands out its internal array when it is exactly full,
+	 * which is the case whenever the server reported a content length.
+	 */
+	private static class ResponseBufferStream extends ByteArrayOutputStream
+	{
+		public ResponseBufferStream(int size)
+		{
+			super(size);
+		}
+
+		public synchronized byte[] getBytes()
+		{
+			if (count == buf.length) {
+				return buf;
+			}
+
+			return toByteArray();
+		}
+	}
+
 	private interface ProgressListener
 	{
-		public void progress(int progress);
+		public void progress(long progress);
 	}
 
 	private class ProgressEntity implements HttpEntity
 	{
 		private HttpEntity delegate;
 		private ProgressListener listener;
-		public ProgressEntity(HttpEntity delegate, ProgressListener listener)
+		private boolean chunked;
+
+		/**
+		 * @param chunked true to send the entity with chunked transfer encoding, even if its length is known.
+		 */
+		public ProgressEntity(HttpEntity delegate, ProgressListener listener, boolean chunked)
 		{
 			this.delegate = delegate;
 			this.listener = listener;
+			this.chunked = chunked;
 		}
 
 		public void consumeContent() throws IOException
@@ -397,7 +529,7 @@ public class TiHTTPClient
 
 		public long getContentLength()
 		{
-			return delegate.getContentLength();
+			return chunked ? -1 : delegate.getContentLength();
 		}
 
 		public Header getContentType()
@@ -407,7 +539,7 @@ public class TiHTTPClient
 
 		public boolean isChunked()
 		{
-			return delegate.isChunked();
+			return chunked || delegate.isChunked();
 		}
 
 		public boolean isRepeatable()
@@ -422,15 +554,21 @@ public class TiHTTPClient
 
 		public void writeTo(OutputStream stream) throws IOException
 		{
-			OutputStream progressOut = new ProgressOutputStream(stream, listener);
+			ProgressOutputStream progressOut = new ProgressOutputStream(stream, listener);
 			delegate.writeTo(progressOut);
+			progressOut.finish();
 		}
 	}
 
+	/**
+	 * Counts the bytes written and reports them at most once every progressInterval milliseconds,
+	 * plus once when the entity has been written.
+	 */
 	private class ProgressOutputStream extends FilterOutputStream
 	{
 		private ProgressListener listener;
-		private int transferred = 0, lastTransferred = 0;
+		private long transferred = 0, lastTransferred = 0;
+		private long lastProgressTime = 0;
 
 		public ProgressOutputStream(OutputStream delegate, ProgressListener listener)
 		{
@@ -440,8 +578,17 @@ public class TiHTTPClient
 
 		private void fireProgress()
 		{
-			// filter to 512 bytes of granularity
-			if (transferred - lastTransferred >= 512) {
+			long now = System.currentTimeMillis();
+			if (now - lastProgressTime >= progressInterval) {
+				lastProgressTime = now;
+				lastTransferred = transferred;
+				listener.progress(transferred);
+			}
+		}
+
+		public void finish()
+		{
+			if (transferred != lastTransferred) {
 				lastTransferred = transferred;
 				listener.progress(transferred);
 			}
@@ -450,10 +597,59 @@ public class TiHTTPClient
 		@Override
 		public void write(int b) throws IOException
 		{
-			super.write(b);
+			out.write(b);
 			transferred++;
 			fireProgress();
 		}
+
+		@Override
+		public void write(byte[] buffer, int offset, int length) throws IOException
+		{
+			// FilterOutputStream would write the array one byte at a time
+			out.write(buffer, offset, length);
+			transferred += length;
+			fireProgress();
+		}
+	}
+
+	/**
+	 * A multipart body that writes URL encoded form fields straight from the form entity.
+	 */
+	private static class FormBody extends AbstractContentBody
+	{
+		private UrlEncodedFormEntity form;
+
+		public FormBody(UrlEncodedFormEntity form)
+		{
+			super("application/x-www-form-urlencoded");
+			this.form = form;
+		}
+
+		public void writeTo(OutputStream out, int mode) throws IOException
+		{
+			form.writeTo(out);
+			out.flush();
+		}
+
+		public String getTransferEncoding()
+		{
+			return MIME.ENC_8BIT;
+		}
+
+		public String getCharset()
+		{
+			return "UTF-8";
+		}
+
+		public long getContentLength()
+		{
+			return form.getContentLength();
+		}
+
+		public String getFilename()
+		{
+			return null;
+		}
 	}
 
 	public TiHTTPClient(KrollProxy proxy)
@@ -461,9 +657,6 @@ public class TiHTTPClient
 		this.proxy = proxy;
 		this.client = getClient(false);
 
-		if (httpClientThreadCounter == null) {
-			httpClientThreadCounter = new AtomicInteger();
-		}
 		readyState = 0;
 		responseText = "";
 		credentials = null;
@@ -472,6 +665,8 @@ public class TiHTTPClient
 		this.parts = new HashMap<String,ContentBody>();
 		this.maxBufferSize = TiApplication.getInstance()
 				.getSystemProperties().getInt(PROPERTY_MAX_BUFFER_SIZE, DEFAULT_MAX_BUFFER_SIZE);
+		this.progressInterval = TiApplication.getInstance()
+				.getSystemProperties().getInt(PROPERTY_PROGRESS_INTERVAL, DEFAULT_PROGRESS_INTERVAL);
 	}
 
 	public int getReadyState()
@@ -642,14 +837,20 @@ public class TiHTTPClient
 		if (readyState > READY_STATE_UNSENT && readyState < READY_STATE_DONE) {
 			aborted = true;
 
+			// a request still waiting in the executor's queue never starts
+			TiHTTPRequestExecutor.Request request = clientRequest;
+			if (request != null) {
+				request.cancel();
+			}
+
 			if (client != null) {
 				client.getConnectionManager().shutdown();
 				client = null;
 			}
-			if (validatingClient != null)
+			synchronized (clientLock) {
 				validatingClient = null;
-			if (nonValidatingClient != null)
 				nonValidatingClient = null;
+			}
 		}
 	}
 
@@ -850,45 +1051,26 @@ public class TiHTTPClient
 
 	public int addTitaniumFileAsPostData(String name, Object value)
 	{
-		try {
-			// TiResourceFile cannot use the FileBody approach directly, because it requires
-			// a java File object, which you can't get from packaged resources. So
-			// TiResourceFile uses the approach we use for blobs, which is write out the
-			// contents to a temp file, then use that for the FileBody.
-			if (value instanceof TiBaseFile && !(value instanceof TiResourceFile)) {
-				TiBaseFile baseFile = (TiBaseFile) value;
-				FileBody body = new FileBody(baseFile.getNativeFile(), TiMimeTypeHelper.getMimeType(baseFile.nativePath()));
-				parts.put(name, body);
-				return (int)baseFile.getNativeFile().length();
-
-			} else if (value instanceof TiBlob || value instanceof TiResourceFile) {
-				TiBlob blob;
-				if (value instanceof TiBlob) {
-					blob = (TiBlob) value;
-				} else {
-					blob = ((TiResourceFile) value).read();
-				}
-				String mimeType = blob.getMimeType();
-				File tmpFile = File.createTempFile("tixhr", "." + TiMimeTypeHelper.getFileExtensionFromMimeType(mimeType, "txt"));
-				FileOutputStream fos = new FileOutputStream(tmpFile);
-				fos.write(blob.getBytes());
-				fos.close();
-				
-				FileBody body = new FileBody(tmpFile, mimeType);
-				parts.put(name, body);
-				return blob.getLength();
-
+		// Files and blobs are streamed from their input streams when the request is written,
+		// so neither is copied to a temp file or read into memory first.
+		if (value instanceof TiBaseFile || value instanceof TiBlob) {
+			TiBlob blob;
+			if (value instanceof TiBlob) {
+				blob = (TiBlob) value;
 			} else {
-				if (value != null) {
-					Log.e(LCAT, name + " is a " + value.getClass().getSimpleName());
-
-				} else {
-					Log.e(LCAT, name + " is null");
-				}
+				blob = TiBlob.blobFromFile((TiBaseFile) value);
 			}
+			TiBlobBody body = new TiBlobBody(blob);
+			parts.put(name, body);
+			return (int) body.getContentLength();
 
-		} catch (IOException e) {
-			Log.e(LCAT, "Error adding post data ("+name+"): " + e.getMessage());
+		} else {
+			if (value != null) {
+				Log.e(LCAT, name + " is a " + value.getClass().getSimpleName());
+
+			} else {
+				Log.e(LCAT, name + " is null");
+			}
 		}
 		return 0;
 	}
@@ -898,18 +1080,118 @@ public class TiHTTPClient
 		SchemeRegistry registry = new SchemeRegistry();
 		registry.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), 80));
 
+		TiProperties properties = TiApplication.getInstance().getSystemProperties();
+		int maxConnections = properties.getInt(PROPERTY_MAX_CONNECTIONS, DEFAULT_MAX_CONNECTIONS);
+		int maxConnectionsPerRoute = properties.getInt(PROPERTY_MAX_CONNECTIONS_PER_ROUTE, DEFAULT_MAX_CONNECTIONS_PER_ROUTE);
+		final int idleTimeout = properties.getInt(PROPERTY_IDLE_TIMEOUT, DEFAULT_IDLE_TIMEOUT);
+		boolean staleCheck = properties.getBool(PROPERTY_STALE_CHECK, true);
+
 		HttpParams params = new BasicHttpParams();
-		ConnManagerParams.setMaxTotalConnections(params, 5);
-		ConnPerRouteBean connPerRoute = new ConnPerRouteBean(5);
+		ConnManagerParams.setMaxTotalConnections(params, maxConnections);
+		ConnPerRouteBean connPerRoute = new ConnPerRouteBean(maxConnectionsPerRoute);
 		ConnManagerParams.setMaxConnectionsPerRoute(params, connPerRoute);
+		HttpConnectionParams.setStaleCheckingEnabled(params, staleCheck);
 
 		HttpProtocolParams.setUseExpectContinue(params, false);
 		HttpProtocolParams.setVersion(params, HttpVersion.HTTP_1_1);
 
-		return new DefaultHttpClient(new ThreadSafeClientConnManager(params, registry), params);
+		DefaultHttpClient httpClient = new DefaultHttpClient(new TiHTTPConnectionManager(params, registry), params);
+
+		// Honor the server's Keep-Alive timeout, otherwise keep connections for the configured idle timeout
+		httpClient.setKeepAliveStrategy(new ConnectionKeepAliveStrategy() {
+			public long getKeepAliveDuration(HttpResponse response, HttpContext context)
+			{
+				HeaderElementIterator i = new BasicHeaderElementIterator(response.headerIterator(HTTP.CONN_KEEP_ALIVE));
+				while (i.hasNext()) {
+					HeaderElement element = i.nextElement();
+					String value = element.getValue();
+					if (value != null && element.getName().equalsIgnoreCase("timeout")) {
+						try {
+							return Long.parseLong(value) * 1000;
+
+						} catch (NumberFormatException e) {
+							// fall back to the default
+						}
+					}
+				}
+
+				return idleTimeout;
+			}
+		});
+
+		startIdleConnectionMonitor(idleTimeout);
+		return httpClient;
+	}
+
+	private static void startIdleConnectionMonitor(final long idleTimeout)
+	{
+		synchronized (clientLock) {
+			if (idleConnectionTimer != null) {
+				return;
+			}
+
+			long interval = Math.max(MIN_IDLE_CHECK_INTERVAL, idleTimeout / 2);
+			idleConnectionTimer = new Timer("TiHttpClient-IdleConnections", true);
+			idleConnectionTimer.schedule(new TimerTask() {
+				@Override
+				public void run()
+				{
+					DefaultHttpClient[] clients;
+					synchronized (clientLock) {
+						clients = new DefaultHttpClient[] { validatingClient, nonValidatingClient };
+					}
+
+					for (DefaultHttpClient client : clients) {
+						if (client != null) {
+							ClientConnectionManager manager = client.getConnectionManager();
+							manager.closeExpiredConnections();
+							manager.closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+						}
+					}
+				}
+			}, interval, interval);
+		}
+	}
+
+	/**
+	 * @return leased, available and pending connection counts summed across the shared clients,
+	 * along with the configured pool limits.
+	 */
+	public static KrollDict getConnectionPoolStats()
+	{
+		int leased = 0, available = 0, pending = 0;
+		synchronized (clientLock) {
+			for (DefaultHttpClient client : new DefaultHttpClient[] { validatingClient, nonValidatingClient }) {
+				if (client != null && client.getConnectionManager() instanceof TiHTTPConnectionManager) {
+					TiHTTPConnectionManager manager = (TiHTTPConnectionManager) client.getConnectionManager();
+					leased += manager.getLeasedConnections();
+					available += manager.getAvailableConnections();
+					pending += manager.getPendingRequests();
+				}
+			}
+		}
+
+		TiProperties properties = TiApplication.getInstance().getSystemProperties();
+		KrollDict stats = new KrollDict();
+		stats.put("leased", leased);
+		stats.put("available", available);
+		stats.put("pending", pending);
+		stats.put("maxTotal", properties.getInt(PROPERTY_MAX_CONNECTIONS, DEFAULT_MAX_CONNECTIONS));
+		stats.put("maxPerRoute", properties.getInt(PROPERTY_MAX_CONNECTIONS_PER_ROUTE, DEFAULT_MAX_CONNECTIONS_PER_ROUTE));
+		stats.put("idleTimeout", properties.getInt(PROPERTY_IDLE_TIMEOUT, DEFAULT_IDLE_TIMEOUT));
+
+		return stats;
 	}
 
 	protected DefaultHttpClient getClient(boolean validating)
+	{
+		synchronized (clientLock) {
+			return getOrCreateClient(validating);
+		}
+	}
+
+	// must be called while holding clientLock
+	private DefaultHttpClient getOrCreateClient(boolean validating)
 	{
 		if (validating) {
 			if (nonValidatingClient != null) {
@@ -1007,15 +1289,57 @@ public class TiHTTPClient
 			request.setHeader(header, headers.get(header));
 		}
 
-		clientThread = new Thread(new ClientRunnable(totalLength), "TiHttpClient-" + httpClientThreadCounter.incrementAndGet());
-		clientThread.setPriority(Thread.MIN_PRIORITY);
-		clientThread.start();
+		prepareResponseFile();
+
+		int priority = TiHTTPRequestExecutor.PRIORITY_FOREGROUND;
+		if (proxy.hasProperty(PROPERTY_PRIORITY)) {
+			priority = TiConvert.toInt(proxy.getProperty(PROPERTY_PRIORITY));
+		}
+		// keep the handle before queuing, the request may start (and receive data) before execute returns
+		TiHTTPRequestExecutor executor = TiHTTPRequestExecutor.getInstance();
+		clientRequest = executor.createRequest(new ClientRunnable(totalLength), host.getHostName(), priority);
+		executor.execute(clientRequest);
 
 		if (DBG) {
 			Log.d(LCAT, "Leaving send()");
 		}
 	}
 	
+	/**
+	 * Resolves the optional "file" property. When set, the response is streamed to that file instead of
+	 * being buffered in memory. With "resume" set, an existing partial file is continued with a range request.
+	 */
+	private void prepareResponseFile()
+	{
+		responseFile = null;
+		resumeOffset = 0;
+
+		Object file = proxy.getProperty(PROPERTY_FILE);
+		if (file == null) {
+			return;
+		}
+
+		TiBaseFile baseFile = null;
+		if (file instanceof TiFileProxy) {
+			baseFile = ((TiFileProxy) file).getBaseFile();
+
+		} else if (file instanceof String) {
+			baseFile = TiFileFactory.createTitaniumFile(proxy.resolveUrl(null, (String) file), false);
+		}
+
+		if (!(baseFile instanceof TiFile)) {
+			Log.w(LCAT, "Unable to stream response to " + file + ", it is not a writable file");
+			return;
+		}
+
+		responseFile = (TiFile) baseFile;
+		File nativeFile = responseFile.getNativeFile();
+		if (TiConvert.toBoolean(proxy.getProperty(PROPERTY_RESUME)) && nativeFile.exists() && nativeFile.length() > 0) {
+			resumeOffset = nativeFile.length();
+			request.setHeader("Range", "bytes=" + resumeOffset + "-");
+		}
+	}
+
 	private class ClientRunnable implements Runnable
 	{
 		private double totalLength;
@@ -1028,7 +1352,6 @@ public class TiHTTPClient
 		public void run()
 		{
 			try {
-				Thread.sleep(10);
 				if (DBG) {
 					Log.d(LCAT, "send()");
 				}
@@ -1045,6 +1368,14 @@ public class TiHTTPClient
 				client.setRedirectHandler(new RedirectHandler());
 				if(request instanceof BasicHttpEntityEnclosingRequest) {
 
+					// the entity is flagged as chunked instead, HttpClient rejects requests with this header already set
+					boolean chunked = false;
+					Header transferEncoding = request.getFirstHeader("Transfer-Encoding");
+					if (transferEncoding != null && "chunked".equalsIgnoreCase(transferEncoding.getValue())) {
+						chunked = true;
+						request.removeHeaders("Transfer-Encoding");
+					}
+
 					UrlEncodedFormEntity form = null;
 					MultipartEntity mpe = null;
 
@@ -1067,38 +1398,31 @@ public class TiHTTPClient
 						}
 
 						if (form != null) {
-							try {
-								ByteArrayOutputStream bos = new ByteArrayOutputStream((int) form.getContentLength());
-								form.writeTo(bos);
-								mpe.addPart("form", new StringBody(bos.toString(), "application/x-www-form-urlencoded", Charset.forName("UTF-8")));
-
-							} catch (UnsupportedEncodingException e) {
-								Log.e(LCAT, "Unsupported encoding: ", e);
-
-							} catch (IOException e) {
-								Log.e(LCAT, "Error converting form to string: ", e);
-							}
+							mpe.addPart("form", new FormBody(form));
 						}
 
 						HttpEntityEnclosingRequest e = (HttpEntityEnclosingRequest) request;
 
+						// the multipart length includes the part headers, so prefer it when it is known
+						long contentLength = mpe.getContentLength();
+						final double progressLength = contentLength > 0 ? contentLength : totalLength;
 						ProgressEntity progressEntity = new ProgressEntity(mpe, new ProgressListener() {
-							public void progress(int progress) {
+							public void progress(long progress) {
 								KrollFunction cb = getCallback(ON_SEND_STREAM);
 								if (cb != null) {
 									KrollDict data = new KrollDict();
-									data.put("progress", ((double)progress)/totalLength);
+									data.put("progress", Math.min(1.0, progress / progressLength));
 									data.put("source", proxy);
 									cb.callAsync(proxy.getKrollObject(), data);
 								}
 							}
-						});
+						}, chunked);
 						e.setEntity(progressEntity);
 
 						e.addHeader("Length", totalLength+"");
 
 					} else {
-						handleURLEncodedData(form);
+						handleURLEncodedData(form, chunked);
 					}
 				}
 
@@ -1162,7 +1486,7 @@ public class TiHTTPClient
 		}
 	}
 	
-	private void handleURLEncodedData(UrlEncodedFormEntity form)
+	private void handleURLEncodedData(UrlEncodedFormEntity form, boolean chunked)
 	{
 		AbstractHttpEntity entity = null;
 		if (data != null) {
@@ -1186,6 +1510,7 @@ public class TiHTTPClient
 			} else {
 				entity.setContentType(header.getValue());
 			}
+			entity.setChunked(chunked);
 			HttpEntityEnclosingRequest e = (HttpEntityEnclosingRequest)request;
 			e.setEntity(entity);
 		}
@@ -0,0 +1,95 @@
+/**
+ * Appcelerator Titanium Mobile
+ * Copyright (c) 2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Apache Public License
+ * Please see the LICENSE included with this distribution for details.
+ */
+package ti.modules.titanium.network;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.conn.ClientConnectionRequest;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.params.HttpParams;
+
+/**
+ * A pooling connection manager that keeps track of leased and pending connections
+ * so the pool can be inspected from Ti.Network.
+ */
+public class TiHTTPConnectionManager extends ThreadSafeClientConnManager
+{
+	private AtomicInteger leased = new AtomicInteger();
+	private AtomicInteger pending = new AtomicInteger();
+
+	public TiHTTPConnectionManager(HttpParams params, SchemeRegistry registry)
+	{
+		super(params, registry);
+	}
+
+	@Override
+	public ClientConnectionRequest requestConnection(HttpRoute route, Object state)
+	{
+		final ClientConnectionRequest request = super.requestConnection(route, state);
+
+		return new ClientConnectionRequest() {
+			public void abortRequest()
+			{
+				request.abortRequest();
+			}
+
+			public ManagedClientConnection getConnection(long timeout, TimeUnit unit)
+				throws InterruptedException, ConnectionPoolTimeoutException
+			{
+				pending.incrementAndGet();
+				try {
+					ManagedClientConnection connection = request.getConnection(timeout, unit);
+					leased.incrementAndGet();
+					return connection;
+
+				} finally {
+					pending.decrementAndGet();
+				}
+			}
+		};
+	}
+
+	@Override
+	public void releaseConnection(ManagedClientConnection connection, long validDuration, TimeUnit timeUnit)
+	{
+		try {
+			super.releaseConnection(connection, validDuration, timeUnit);
+
+		} finally {
+			leased.decrementAndGet();
+		}
+	}
+
+	/**
+	 * @return the number of connections currently handed out to requests.
+	 */
+	public int getLeasedConnections()
+	{
+		return Math.max(0, leased.get());
+	}
+
+	/**
+	 * @return the number of requests waiting for a connection to become available.
+	 */
+	public int getPendingRequests()
+	{
+		return pending.get();
+	}
+
+	/**
+	 * @return the number of open connections sitting idle in the pool.
+	 */
+	public int getAvailableConnections()
+	{
+		return Math.max(0, getConnectionsInPool() - getLeasedConnections());
+	}
+}
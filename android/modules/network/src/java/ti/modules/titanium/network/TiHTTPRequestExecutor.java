@@ -0,0 +1,300 @@
+/**
+ * Appcelerator Titanium Mobile
+ * Copyright (c) 2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Apache Public License
+ * Please see the LICENSE included with this distribution for details.
+ */
+package ti.modules.titanium.network;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.appcelerator.kroll.KrollDict;
+import org.appcelerator.kroll.common.Log;
+import org.appcelerator.kroll.common.TiConfig;
+import org.appcelerator.titanium.TiApplication;
+import org.appcelerator.titanium.TiProperties;
+
+/**
+ * Runs HTTPClient requests on a shared, bounded pool of threads instead of a new thread per request.
+ *
+ * Requests are queued in two lanes: foreground requests are always started before prefetch requests.
+ * No more than a configurable number of requests run against the same host at once. Limits are read from
+ * the application's <code>tiapp.xml</code>:
+ * <pre>
+ * &lt;property name="ti.android.httpclient.maxthreads" type="int"&gt;4&lt;/property&gt;
+ * &lt;property name="ti.android.httpclient.maxperhost" type="int"&gt;2&lt;/property&gt;
+ * </pre>
+ */
+public class TiHTTPRequestExecutor
+{
+	private static final String LCAT = "TiHTTPRequestExecutor";
+	private static final boolean DBG = TiConfig.LOGD;
+
+	private static final String PROPERTY_MAX_THREADS = "ti.android.httpclient.maxthreads";
+	private static final String PROPERTY_MAX_PER_HOST = "ti.android.httpclient.maxperhost";
+	private static final int DEFAULT_MAX_THREADS = 4;
+	private static final int DEFAULT_MAX_PER_HOST = 2;
+	private static final long KEEP_ALIVE_SECONDS = 30;
+
+	public static final int PRIORITY_FOREGROUND = 0;
+	public static final int PRIORITY_PREFETCH = 1;
+
+	private static TiHTTPRequestExecutor instance;
+
+	private final int maxThreads;
+	private final int maxPerHost;
+	private final ExecutorService executor;
+
+	// guarded by this
+	private final LinkedList<Request> foregroundQueue = new LinkedList<Request>();
+	private final LinkedList<Request> prefetchQueue = new LinkedList<Request>();
+	private final HashMap<String, Integer> runningPerHost = new HashMap<String, Integer>();
+	private int runningCount = 0;
+
+	private final AtomicLong startedCount = new AtomicLong();
+	private final AtomicLong completedCount = new AtomicLong();
+	private final AtomicLong totalQueueWaitMillis = new AtomicLong();
+	private final AtomicLong totalTimeToFirstByteMillis = new AtomicLong();
+	private final AtomicLong firstByteCount = new AtomicLong();
+	private volatile long lastTimeToFirstByteMillis = -1;
+
+	/**
+	 * A queued request. The runnable should call {@link #firstByteReceived()} once response headers arrive.
+	 */
+	public class Request implements Runnable
+	{
+		private final Runnable task;
+		private final String host;
+		private final int priority;
+		private long enqueueTime;
+		private volatile long startTime;
+		private volatile boolean cancelled;
+
+		private Request(Runnable task, String host, int priority)
+		{
+			this.task = task;
+			this.host = host == null ? "" : host;
+			this.priority = priority;
+		}
+
+		public void run()
+		{
+			startTime = System.currentTimeMillis();
+			startedCount.incrementAndGet();
+			totalQueueWaitMillis.addAndGet(startTime - enqueueTime);
+
+			try {
+				if (!cancelled) {
+					task.run();
+				}
+
+			} finally {
+				completedCount.incrementAndGet();
+				finished(this);
+			}
+		}
+
+		/**
+		 * Records the time from the start of execution until the response headers were received.
+		 */
+		public void firstByteReceived()
+		{
+			if (startTime > 0) {
+				long ttfb = System.currentTimeMillis() - startTime;
+				lastTimeToFirstByteMillis = ttfb;
+				totalTimeToFirstByteMillis.addAndGet(ttfb);
+				firstByteCount.incrementAndGet();
+			}
+		}
+
+		/**
+		 * Keeps the request from running if it hasn't started yet. A running request is not interrupted.
+		 */
+		public void cancel()
+		{
+			cancelled = true;
+			synchronized (TiHTTPRequestExecutor.this) {
+				if (!foregroundQueue.remove(this)) {
+					prefetchQueue.remove(this);
+				}
+			}
+		}
+	}
+
+	public static synchronized TiHTTPRequestExecutor getInstance()
+	{
+		if (instance == null) {
+			int maxThreads = DEFAULT_MAX_THREADS;
+			int maxPerHost = DEFAULT_MAX_PER_HOST;
+
+			TiApplication app = TiApplication.getInstance();
+			if (app != null) {
+				TiProperties properties = app.getSystemProperties();
+				maxThreads = Math.max(1, properties.getInt(PROPERTY_MAX_THREADS, DEFAULT_MAX_THREADS));
+				maxPerHost = Math.max(1, properties.getInt(PROPERTY_MAX_PER_HOST, DEFAULT_MAX_PER_HOST));
+			}
+
+			instance = new TiHTTPRequestExecutor(maxThreads, maxPerHost);
+		}
+
+		return instance;
+	}
+
+	private TiHTTPRequestExecutor(int maxThreads, int maxPerHost)
+	{
+		this.maxThreads = maxThreads;
+		this.maxPerHost = maxPerHost;
+
+		// The number of concurrent requests is bounded by promote(), so the pool itself only needs to
+		// reuse idle threads and let them expire.
+		executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+			new SynchronousQueue<Runnable>(), new ThreadFactory() {
+				private final AtomicInteger threadCounter = new AtomicInteger();
+
+				public Thread newThread(Runnable runnable)
+				{
+					Thread thread = new Thread(runnable, "TiHttpClient-" + threadCounter.incrementAndGet());
+					thread.setPriority(Thread.MIN_PRIORITY);
+					return thread;
+				}
+			});
+	}
+
+	/**
+	 * Creates a request without queuing it, so the caller can keep the handle before the task can run.
+	 * @param task the work to run.
+	 * @param host the host the request is sent to, used for the per-host limit.
+	 * @param priority {@link #PRIORITY_FOREGROUND} or {@link #PRIORITY_PREFETCH}.
+	 * @return the request, to be passed to {@link #execute(Request)}.
+	 */
+	public Request createRequest(Runnable task, String host, int priority)
+	{
+		return new Request(task, host, priority);
+	}
+
+	/**
+	 * Queues a request.
+	 * @param task the work to run.
+	 * @param host the host the request is sent to, used for the per-host limit.
+	 * @param priority {@link #PRIORITY_FOREGROUND} or {@link #PRIORITY_PREFETCH}.
+	 * @return the queued request.
+	 */
+	public Request execute(Runnable task, String host, int priority)
+	{
+		Request request = createRequest(task, host, priority);
+		execute(request);
+		return request;
+	}
+
+	/**
+	 * Queues a request created by {@link #createRequest(Runnable, String, int)}.
+	 */
+	public void execute(Request request)
+	{
+		request.enqueueTime = System.currentTimeMillis();
+		synchronized (this) {
+			if (request.cancelled) {
+				return;
+			}
+
+			if (request.priority == PRIORITY_PREFETCH) {
+				prefetchQueue.add(request);
+
+			} else {
+				foregroundQueue.add(request);
+			}
+		}
+
+		promote();
+	}
+
+	private void finished(Request request)
+	{
+		synchronized (this) {
+			runningCount--;
+			Integer count = runningPerHost.get(request.host);
+			if (count != null) {
+				if (count <= 1) {
+					runningPerHost.remove(request.host);
+
+				} else {
+					runningPerHost.put(request.host, count - 1);
+				}
+			}
+		}
+
+		promote();
+	}
+
+	/**
+	 * Starts as many queued requests as the thread and per-host limits allow, foreground lane first.
+	 */
+	private void promote()
+	{
+		LinkedList<Request> ready = new LinkedList<Request>();
+		synchronized (this) {
+			promoteFrom(foregroundQueue, ready);
+			promoteFrom(prefetchQueue, ready);
+		}
+
+		for (Request request : ready) {
+			if (DBG) {
+				Log.d(LCAT, "starting request for host " + request.host + ", priority " + request.priority);
+			}
+			executor.execute(request);
+		}
+	}
+
+	// must be called while holding the lock on this
+	private void promoteFrom(LinkedList<Request> queue, LinkedList<Request> ready)
+	{
+		Iterator<Request> i = queue.iterator();
+		while (i.hasNext() && runningCount < maxThreads) {
+			Request request = i.next();
+			Integer count = runningPerHost.get(request.host);
+			int hostCount = count == null ? 0 : count;
+			if (hostCount >= maxPerHost) {
+				continue;
+			}
+
+			i.remove();
+			runningPerHost.put(request.host, hostCount + 1);
+			runningCount++;
+			ready.add(request);
+		}
+	}
+
+	/**
+	 * @return a snapshot of queue depth, running requests and timing statistics.
+	 */
+	public KrollDict getStats()
+	{
+		KrollDict stats = new KrollDict();
+		synchronized (this) {
+			stats.put("foregroundQueued", foregroundQueue.size());
+			stats.put("prefetchQueued", prefetchQueue.size());
+			stats.put("queueDepth", foregroundQueue.size() + prefetchQueue.size());
+			stats.put("running", runningCount);
+		}
+
+		long started = startedCount.get();
+		long firstBytes = firstByteCount.get();
+		stats.put("maxThreads", maxThreads);
+		stats.put("maxPerHost", maxPerHost);
+		stats.put("completed", completedCount.get());
+		stats.put("averageQueueWait", started > 0 ? totalQueueWaitMillis.get() / (double) started : 0);
+		stats.put("averageTimeToFirstByte", firstBytes > 0 ? totalTimeToFirstByteMillis.get() / (double) firstBytes : 0);
+		stats.put("lastTimeToFirstByte", lastTimeToFirstByteMillis);
+
+		return stats;
+	}
+}
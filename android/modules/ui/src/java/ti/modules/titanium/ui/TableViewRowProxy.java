@@ -179,7 +179,7 @@ public class TableViewRowProxy extends TiViewProxy
 	}
 
 	@Override
-	public boolean fireEvent(String eventName, Object data) {
+	protected Object prepareEventData(String eventName, Object data) {
 		if (eventName.equals(TiC.EVENT_CLICK) || eventName.equals(TiC.EVENT_LONGCLICK)) {
 			// Inject row click data for events coming from row children.
 			TableViewProxy table = getTable();
@@ -192,7 +192,7 @@ public class TableViewRowProxy extends TiViewProxy
 				data = dataCopy;
 			}
 		}
-		return super.fireEvent(eventName, data);
+		return data;
 	}
 
 	@Override
@@ -6,6 +6,7 @@
  */
 package ti.modules.titanium.ui;
 
+import org.appcelerator.kroll.KrollDict;
 import org.appcelerator.kroll.KrollModule;
 import org.appcelerator.kroll.KrollProxy;
 import org.appcelerator.kroll.annotations.Kroll;
@@ -17,9 +18,11 @@ import org.appcelerator.titanium.TiContext;
 import org.appcelerator.titanium.TiDimension;
 import org.appcelerator.titanium.TiRootActivity;
 import org.appcelerator.titanium.proxy.TiWindowProxy;
+import org.appcelerator.titanium.util.TiBitmapCache;
 import org.appcelerator.titanium.util.TiColorHelper;
 import org.appcelerator.titanium.util.TiOrientationHelper;
 import org.appcelerator.titanium.util.TiUIHelper;
+import org.appcelerator.titanium.view.TiUIView;
 
 import android.app.Activity;
 import android.content.res.Resources;
@@ -109,6 +112,8 @@ public class UIModule extends KrollModule implements Handler.Callback
 	@Kroll.constant public static final int TEXT_AUTOCAPITALIZATION_WORDS = 2;
 	@Kroll.constant public static final int TEXT_AUTOCAPITALIZATION_ALL = 3;
 
+	@Kroll.constant public static final int TOUCH_MOVE_RATE_FRAME = TiUIView.TOUCH_MOVE_RATE_FRAME;
+
 	@Kroll.constant public static final String SIZE = TiC.LAYOUT_SIZE;
 	@Kroll.constant public static final String FILL = TiC.LAYOUT_FILL;
 	@Kroll.constant public static final String UNIT_PX = TiDimension.UNIT_PX;
@@ -223,6 +228,18 @@ public class UIModule extends KrollModule implements Handler.Callback
 		return result;
 	}
 
+	@Kroll.method
+	public KrollDict getImageCacheStats()
+	{
+		return TiBitmapCache.getInstance().getStats();
+	}
+
+	@Kroll.method
+	public KrollDict getTouchEventStats()
+	{
+		return TiUIView.getTouchEventStats();
+	}
+
 	protected void doSetOrientation(int tiOrientationMode)
 	{
 		Activity activity = TiApplication.getInstance().getCurrentActivity();
@@ -10,6 +10,7 @@ import java.lang.ref.SoftReference;
 
 import org.appcelerator.kroll.common.Log;
 import org.appcelerator.kroll.common.TiConfig;
+import org.appcelerator.titanium.util.TiBitmapCache;
 
 import android.content.Context;
 import android.graphics.Bitmap;
@@ -233,7 +234,8 @@ public class TiImageView extends ViewGroup
 			if (od instanceof BitmapDrawable && recycle) {
 				Bitmap bitmap = ((BitmapDrawable) od).getBitmap();
 				//check if bitmap exists before recycling (it may not if the user creates an imageView without passing in an image or defaultImage)
-				if (bitmap != null) {
+				//bitmaps from the shared cache may still be shown by other views
+				if (bitmap != null && !TiBitmapCache.getInstance().isShared(bitmap)) {
 					bitmap.recycle();
 				}
 			}
@@ -30,6 +30,7 @@ import org.appcelerator.titanium.proxy.TiViewProxy;
 import org.appcelerator.titanium.util.TiBackgroundImageLoadTask;
 import org.appcelerator.titanium.util.TiConvert;
 import org.appcelerator.titanium.util.TiDownloadListener;
+import org.appcelerator.titanium.util.TiDownloadManager;
 import org.appcelerator.titanium.util.TiResponseCache;
 import org.appcelerator.titanium.util.TiUIHelper;
 import org.appcelerator.titanium.util.TiUrl;
@@ -82,6 +83,7 @@ public class TiUIImageView extends TiUIView implements OnLifecycleEvent, Handler
 	private ArrayList<TiDrawableReference> imageSources;
 	private TiDrawableReference defaultImageSource;
 	private TiDownloadListener downloadListener;
+	private URI pendingDownloadUri;
 	private int decodeRetries = 0;
 	private Object releasedLock = new Object();
 
@@ -167,6 +169,9 @@ public class TiUIImageView extends TiUIView implements OnLifecycleEvent, Handler
 			@Override
 			public void downloadFinished(URI uri)
 			{
+				if (uri.equals(pendingDownloadUri)) {
+					pendingDownloadUri = null;
+				}
 				if (!TiResponseCache.peek(uri)) {
 					// The requested image did not make it into our TiResponseCache,
 					// possibly because it had a header forbidding that. Now get it
@@ -186,6 +191,7 @@ public class TiUIImageView extends TiUIView implements OnLifecycleEvent, Handler
 			@Override
 			public void downloadFailed()
 			{
+				pendingDownloadUri = null;
 				// If the download failed, fire an error event
 				fireError();
 			}
@@ -729,6 +735,10 @@ public class TiUIImageView extends TiUIView implements OnLifecycleEvent, Handler
 					
 					URI uri = new URI(imageUrl);
 					getAsync = !TiResponseCache.peek(uri);
+					if (getAsync) {
+						cancelPendingDownload(uri);
+						pendingDownloadUri = uri;
+					}
 				} catch (URISyntaxException e) {
 					Log.e(LCAT, "URISyntaxException for url " + imageref.getUrl(), e);
 					getAsync = false;
@@ -762,6 +772,18 @@ public class TiUIImageView extends TiUIView implements OnLifecycleEvent, Handler
 		}
 	}
 
+	/**
+	 * Drops our interest in a download that was started for an image we are no longer showing,
+	 * e.g. when a table row is reused for another image before the previous one arrived.
+	 */
+	private void cancelPendingDownload(URI uri)
+	{
+		if (pendingDownloadUri != null && !pendingDownloadUri.equals(uri)) {
+			TiDownloadManager.getInstance().cancel(pendingDownloadUri, downloadListener);
+		}
+		pendingDownloadUri = null;
+	}
+
 	private void setDefaultImage()
 	{
 		if (defaultImageSource == null) {
@@ -992,6 +1014,7 @@ public class TiUIImageView extends TiUIView implements OnLifecycleEvent, Handler
 	public void release()
 	{
 		super.release();
+		cancelPendingDownload(null);
 		if (loader != null) {
 			synchronized (loader) {
 				loader.notify();
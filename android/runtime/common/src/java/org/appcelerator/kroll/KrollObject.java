@@ -7,6 +7,7 @@
 package org.appcelerator.kroll;
 
 import java.util.HashMap;
+import java.util.Map;
 
 import org.appcelerator.kroll.common.AsyncResult;
 import org.appcelerator.kroll.common.TiMessenger;
@@ -35,12 +36,24 @@ public abstract class KrollObject implements Handler.Callback
 	}
 
 	/**
-	 * Sets the Proxy associated with this object.
+	 * Sets the Proxy associated with this object. Event types that already have listeners are
+	 * reported to the new proxy.
 	 * @param proxySupport the Proxy to be set.
 	 */
 	public void setProxySupport(KrollProxySupport proxySupport)
 	{
+		if (this.proxySupport == proxySupport) {
+			return;
+		}
+
 		this.proxySupport = proxySupport;
+		if (proxySupport != null) {
+			for (Map.Entry<String, Boolean> entry : hasListenersForEventType.entrySet()) {
+				if (entry.getValue().booleanValue()) {
+					proxySupport.onHasListenersChanged(entry.getKey(), true);
+				}
+			}
+		}
 	}
 
 	/**
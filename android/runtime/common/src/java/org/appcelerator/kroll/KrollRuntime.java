@@ -9,6 +9,7 @@ package org.appcelerator.kroll;
 import java.lang.ref.WeakReference;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.appcelerator.kroll.common.TiMessenger;
 import org.appcelerator.kroll.util.KrollAssetHelper;
@@ -44,6 +45,7 @@ public abstract class KrollRuntime implements Handler.Callback
 
 	private static KrollRuntime instance;
 	private static int activityRefCount = 0;
+	private static AtomicInteger exceptionCount = new AtomicInteger();
 
 	private WeakReference<KrollApplication> krollApplication;
 	private KrollRuntimeThread thread;
@@ -324,6 +326,24 @@ public abstract class KrollRuntime implements Handler.Callback
 		return activityRefCount;
 	}
 
+	/**
+	 * Called whenever a Javascript exception is reported instead of being rethrown to the caller,
+	 * for example when a function called from Java throws.
+	 */
+	public static void exceptionReported()
+	{
+		exceptionCount.incrementAndGet();
+	}
+
+	/**
+	 * @return the number of Javascript exceptions reported so far. Compare the values before and
+	 * after a call to find out whether it reported an exception.
+	 */
+	public static int getExceptionCount()
+	{
+		return exceptionCount.get();
+	}
+
 	private void internalDispose()
 	{
 		doDispose();
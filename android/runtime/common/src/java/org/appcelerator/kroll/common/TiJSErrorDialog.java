@@ -67,6 +67,8 @@ public class TiJSErrorDialog implements Handler.Callback
 	public static void openErrorDialog(final String title, final String message, final String sourceName, final int line,
 		final String lineSource, final int lineOffset)
 	{
+		KrollRuntime.exceptionReported();
+
 		ErrorMessage error = new ErrorMessage();
 		error.title = title;
 		error.message = message;
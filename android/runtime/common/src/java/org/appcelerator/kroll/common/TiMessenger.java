@@ -6,10 +6,16 @@
  */
 package org.appcelerator.kroll.common;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.appcelerator.kroll.KrollRuntime;
 
@@ -75,8 +81,15 @@ public class TiMessenger implements Handler.Callback
 		}
 	};
 
+	protected static ConcurrentHashMap<Integer, BlockingStats> blockingStats = new ConcurrentHashMap<Integer, BlockingStats>();
+
 	protected ArrayBlockingQueue<Message> messageQueue = new ArrayBlockingQueue<Message>(10);
 	protected CountDownLatch blockingLatch;
+
+	// signaled whenever a blocking result arrives or a message is queued while blocking,
+	// so a blocked thread wakes up immediately instead of polling
+	protected ReentrantLock blockingLock = new ReentrantLock();
+	protected Condition blockingCondition = blockingLock.newCondition();
 	protected AtomicInteger blockingMessageCount = new AtomicInteger(0);
 	protected Handler.Callback callback;
 	protected long creationThreadId = -1;
@@ -223,16 +236,10 @@ public class TiMessenger implements Handler.Callback
 			@Override
 			public Object getResult()
 			{
-				int timeout = 0;
 				try {
-					// TODO: create a multi-semaphore condition
-					// here so we don't unnecessarily poll
-					while (!tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
-						if (messageQueue.size() == 0) {
-							timeout = 50;
-
-						} else {
-							dispatchPendingMessages();
+					while (!tryAcquire()) {
+						if (!dispatchMessage()) {
+							awaitResultOrMessage(this);
 						}
 					}
 
@@ -252,20 +259,100 @@ public class TiMessenger implements Handler.Callback
 			public void setResult(Object result)
 			{
 				super.setResult(result);
+				signalBlocking();
+			}
+
+			@Override
+			public void setException(Throwable exception)
+			{
+				super.setException(exception);
+				signalBlocking();
 			}
 		};
 
+		int what = message.what;
+		long startTime = System.nanoTime();
+
 		blockingMessageCount.incrementAndGet();
 		message.obj = wrappedAsyncResult;
 		targetMessenger.sendMessage(message);
 
-		Object messageResult = wrappedAsyncResult.getResult();
-		blockingMessageCount.decrementAndGet();
+		Object messageResult;
+		try {
+			messageResult = wrappedAsyncResult.getResult();
+
+		} finally {
+			blockingMessageCount.decrementAndGet();
+			recordBlockingTime(what, System.nanoTime() - startTime);
+		}
 		dispatchPendingMessages();
 
 		return messageResult;
 	}
 
+	/**
+	 * Blocks the current thread until either the result has been released or a new message
+	 * has been queued to this messenger.
+	 * @param result the AsyncResult being waited on.
+	 * @throws InterruptedException if the current thread is interrupted while waiting.
+	 */
+	private void awaitResultOrMessage(AsyncResult result) throws InterruptedException
+	{
+		blockingLock.lock();
+		try {
+			while (result.availablePermits() == 0 && messageQueue.isEmpty()) {
+				blockingCondition.await();
+			}
+
+		} finally {
+			blockingLock.unlock();
+		}
+	}
+
+	private void signalBlocking()
+	{
+		blockingLock.lock();
+		try {
+			blockingCondition.signalAll();
+
+		} finally {
+			blockingLock.unlock();
+		}
+	}
+
+	private static void recordBlockingTime(int what, long elapsedNanos)
+	{
+		BlockingStats stats = blockingStats.get(what);
+		if (stats == null) {
+			BlockingStats newStats = new BlockingStats();
+			stats = blockingStats.putIfAbsent(what, newStats);
+			if (stats == null) {
+				stats = newStats;
+			}
+		}
+
+		stats.record(elapsedNanos);
+	}
+
+	/**
+	 * @return a snapshot of the time spent blocked in sendBlockingMainMessage / sendBlockingRuntimeMessage,
+	 * keyed by the {@link Message#what} of the blocking message.
+	 */
+	public static Map<Integer, BlockingStats> getBlockingStats()
+	{
+		HashMap<Integer, BlockingStats> snapshot = new HashMap<Integer, BlockingStats>();
+		for (Map.Entry<Integer, BlockingStats> entry : blockingStats.entrySet()) {
+			snapshot.put(entry.getKey(), entry.getValue().copy());
+		}
+
+		return snapshot;
+	}
+
+	public static void resetBlockingStats()
+	{
+		blockingStats.clear();
+	}
+
 	/**
 	 * Sends this message using one three methods:
 	 * <ul>
@@ -297,6 +384,7 @@ public class TiMessenger implements Handler.Callback
 			if (isBlocking()) {
 				try {
 					messageQueue.put(message);
+					signalBlocking();
 
 				} catch (InterruptedException e) {
 					Log.w(TAG, "interrupted trying to put new message, sending to handler", e);
@@ -393,5 +481,67 @@ public class TiMessenger implements Handler.Callback
 		}
 		return false;
 	}
-}
 
+	/**
+	 * Accumulated blocking time for a single message type.
+	 */
+	public static class BlockingStats
+	{
+		protected AtomicLong count = new AtomicLong();
+		protected AtomicLong totalNanos = new AtomicLong();
+		protected AtomicLong maxNanos = new AtomicLong();
+
+		protected void record(long elapsedNanos)
+		{
+			count.incrementAndGet();
+			totalNanos.addAndGet(elapsedNanos);
+
+			long max = maxNanos.get();
+			while (elapsedNanos > max && !maxNanos.compareAndSet(max, elapsedNanos)) {
+				max = maxNanos.get();
+			}
+		}
+
+		protected BlockingStats copy()
+		{
+			BlockingStats stats = new BlockingStats();
+			stats.count.set(count.get());
+			stats.totalNanos.set(totalNanos.get());
+			stats.maxNanos.set(maxNanos.get());
+
+			return stats;
+		}
+
+		public long getCount()
+		{
+			return count.get();
+		}
+
+		public long getTotalBlockedMillis()
+		{
+			return TimeUnit.NANOSECONDS.toMillis(totalNanos.get());
+		}
+
+		public long getMaxBlockedMillis()
+		{
+			return TimeUnit.NANOSECONDS.toMillis(maxNanos.get());
+		}
+
+		public double getAverageBlockedMillis()
+		{
+			long n = count.get();
+			if (n == 0) {
+				return 0;
+			}
+
+			return (totalNanos.get() / (double) n) / 1000000.0;
+		}
+
+		@Override
+		public String toString()
+		{
+			return "count=" + getCount() + ", total=" + getTotalBlockedMillis() + "ms, avg="
+				+ getAverageBlockedMillis() + "ms, max=" + getMaxBlockedMillis() + "ms";
+		}
+	}
+}
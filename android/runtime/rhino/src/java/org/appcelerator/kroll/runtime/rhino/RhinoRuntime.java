@@ -8,6 +8,7 @@ package org.appcelerator.kroll.runtime.rhino;
 
 import org.appcelerator.kroll.KrollProxySupport;
 import org.appcelerator.kroll.KrollRuntime;
+import org.appcelerator.kroll.common.TiConfig;
 import org.appcelerator.kroll.common.TiJSErrorDialog;
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.ContextFactory;
@@ -26,6 +27,7 @@ public class RhinoRuntime extends KrollRuntime implements ErrorReporter
 {
 	private static final String TAG = "RhinoRuntime";
 	private static final String NAME = "rhino";
+	private static final boolean DBG = TiConfig.LOGD;
 
 	private Scriptable globalScope;
 	private Scriptable globalKrollObject;
@@ -59,11 +61,16 @@ public class RhinoRuntime extends KrollRuntime implements ErrorReporter
 		runModuleFunction = null;
 		errorReporter = null;
 
+		if (DBG) {
+			Log.d(TAG, "Script cache: " + RhinoScriptCache.getInstance().getStats());
+		}
+
 		EventEmitter.dispose();
 		KrollBindings.dispose();
 		KrollWith.dispose();
 		Proxy.dispose();
 		ProxyFactory.dispose();
+		RhinoScriptCache.dispose();
 	}
 
 	@Override
@@ -98,7 +105,8 @@ public class RhinoRuntime extends KrollRuntime implements ErrorReporter
 		Context context = enterContext();
 
 		try {
-			Object result = context.evaluateString(globalScope, source, filename, 1, null);
+			Script script = RhinoScriptCache.getInstance().getScript(context, source, filename);
+			Object result = script.exec(context, globalScope);
 			return TypeConverter.jsObjectToJavaObject(result, globalScope);
 
 		} catch (Exception e) {
@@ -0,0 +1,356 @@
+/**
+ * Appcelerator Titanium Mobile
+ * Copyright (c) 2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Apache Public License
+ * Please see the LICENSE included with this distribution for details.
+ */
+package org.appcelerator.kroll.runtime.rhino;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.appcelerator.kroll.common.TiConfig;
+import org.appcelerator.kroll.util.KrollAssetHelper;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Script;
+
+import android.util.Log;
+
+/**
+ * Caches compiled scripts so evaluating the same source again skips the Rhino parser and compiler.
+ *
+ * Scripts are keyed by a hash of their file name and source, and kept in an LRU bounded by an estimate
+ * of their size in memory. Larger scripts are also serialized to the application's cache directory,
+ * so a warm start can load the compiled interpreter data instead of compiling again. Since entries are
+ * keyed by the source itself, a changed file simply misses the cache.
+ */
+public class RhinoScriptCache
+{
+	private static final String TAG = "RhinoScriptCache";
+	private static final boolean DBG = TiConfig.LOGD;
+
+	private static final String DISK_CACHE_DIR = "rhino-scripts";
+	private static final String SCRIPT_SUFFIX = ".ser";
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	// rough estimate of the interpreter data generated per character of source
+	private static final int BYTES_PER_SOURCE_CHAR = 4;
+	private static final long MAX_MEMORY_SIZE = Runtime.getRuntime().maxMemory() / 32;
+	private static final long MAX_DISK_SIZE = 4 * 1024 * 1024;
+	// small scripts compile quickly enough that a disk round trip isn't worth it
+	private static final int MIN_DISK_SOURCE_LENGTH = 2048;
+
+	private static RhinoScriptCache instance;
+
+	private LinkedHashMap<String, CachedScript> scripts = new LinkedHashMap<String, CachedScript>(32, 0.75f, true);
+	private long memorySize = 0;
+
+	private boolean diskCacheEnabled = true;
+	private File diskCacheDir;
+	private HashSet<String> diskEntries;
+	private long diskSize = 0;
+
+	private long hitCount = 0;
+	private long diskHitCount = 0;
+	private long missCount = 0;
+
+	private static class CachedScript
+	{
+		Script script;
+		long size;
+
+		CachedScript(Script script, long size)
+		{
+			this.script = script;
+			this.size = size;
+		}
+	}
+
+	public static synchronized RhinoScriptCache getInstance()
+	{
+		if (instance == null) {
+			instance = new RhinoScriptCache();
+		}
+		return instance;
+	}
+
+	public static synchronized void dispose()
+	{
+		instance = null;
+	}
+
+	private RhinoScriptCache()
+	{
+	}
+
+	/**
+	 * Enables or disables the on-disk store of compiled scripts. It is enabled by default.
+	 */
+	public synchronized void setDiskCacheEnabled(boolean enabled)
+	{
+		diskCacheEnabled = enabled;
+	}
+
+	/**
+	 * Returns the compiled form of a script, compiling it only if neither the memory nor the disk tier has it.
+	 * @param context the current context.
+	 * @param source the script source.
+	 * @param filename the file name used in error messages and stack traces.
+	 * @return the compiled script.
+	 */
+	public synchronized Script getScript(Context context, String source, String filename)
+	{
+		String key = getKey(source, filename);
+		if (key == null) {
+			missCount++;
+			return context.compileString(source, filename, 1, null);
+		}
+
+		CachedScript cached = scripts.get(key);
+		if (cached != null) {
+			hitCount++;
+			return cached.script;
+		}
+
+		boolean persist = diskCacheEnabled && source.length() >= MIN_DISK_SOURCE_LENGTH;
+		Script script = persist ? readFromDisk(context, key) : null;
+		if (script != null) {
+			diskHitCount++;
+			persist = false;
+
+		} else {
+			missCount++;
+			script = context.compileString(source, filename, 1, null);
+		}
+
+		put(key, script, (long) source.length() * BYTES_PER_SOURCE_CHAR);
+		if (persist) {
+			// written before the first run so the interpreter data is untouched
+			writeToDisk(context, key, script);
+		}
+
+		return script;
+	}
+
+	/**
+	 * @return a summary of cache hits and misses, for logging.
+	 */
+	public synchronized String getStats()
+	{
+		return "hits=" + hitCount + ", diskHits=" + diskHitCount + ", misses=" + missCount
+			+ ", entries=" + scripts.size() + ", memorySize=" + memorySize + ", diskSize=" + diskSize;
+	}
+
+	private void put(String key, Script script, long size)
+	{
+		if (size > MAX_MEMORY_SIZE) {
+			return;
+		}
+
+		CachedScript previous = scripts.put(key, new CachedScript(script, size));
+		if (previous != null) {
+			memorySize -= previous.size;
+		}
+		memorySize += size;
+
+		Iterator<CachedScript> i = scripts.values().iterator();
+		while (memorySize > MAX_MEMORY_SIZE && i.hasNext()) {
+			memorySize -= i.next().size;
+			i.remove();
+		}
+	}
+
+	private static String getKey(String source, String filename)
+	{
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			if (filename != null) {
+				digest.update(filename.getBytes("UTF-8"));
+			}
+			digest.update((byte) 0);
+			digest.update(source.getBytes("UTF-8"));
+
+			byte[] hash = digest.digest();
+			StringBuilder key = new StringBuilder(hash.length * 2);
+			for (byte b : hash) {
+				key.append(Character.forDigit((b >> 4) & 0xf, 16));
+				key.append(Character.forDigit(b & 0xf, 16));
+			}
+			return key.toString();
+
+		} catch (NoSuchAlgorithmException e) {
+			return null;
+
+		} catch (UnsupportedEncodingException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Lists the disk store on first use. Compiled scripts are stored per Rhino version, since the
+	 * serialized interpreter data is not compatible across versions.
+	 */
+	private boolean initDiskCache(Context context)
+	{
+		if (diskEntries != null) {
+			return true;
+		}
+
+		String cacheDir = KrollAssetHelper.getCacheDir();
+		if (cacheDir == null) {
+			return false;
+		}
+
+		String version = context.getImplementationVersion();
+		String versionDir = version == null ? "default" : Integer.toHexString(version.hashCode());
+		diskCacheDir = new File(new File(cacheDir, DISK_CACHE_DIR), versionDir);
+		if (!diskCacheDir.exists() && !diskCacheDir.mkdirs()) {
+			Log.w(TAG, "Unable to create script cache directory " + diskCacheDir);
+			diskCacheEnabled = false;
+			return false;
+		}
+
+		diskEntries = new HashSet<String>();
+		diskSize = 0;
+		File[] files = diskCacheDir.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				String name = file.getName();
+				if (name.endsWith(SCRIPT_SUFFIX)) {
+					diskEntries.add(name.substring(0, name.length() - SCRIPT_SUFFIX.length()));
+					diskSize += file.length();
+
+				} else {
+					file.delete();
+				}
+			}
+		}
+
+		return true;
+	}
+
+	private Script readFromDisk(Context context, String key)
+	{
+		if (!initDiskCache(context) || !diskEntries.contains(key)) {
+			return null;
+		}
+
+		File file = new File(diskCacheDir, key + SCRIPT_SUFFIX);
+		ObjectInputStream in = null;
+		try {
+			in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+			Object script = in.readObject();
+			if (script instanceof Script) {
+				file.setLastModified(System.currentTimeMillis());
+				return (Script) script;
+			}
+
+		} catch (Exception e) {
+			Log.w(TAG, "Unable to load compiled script, compiling it again: " + e.getMessage());
+
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+
+		diskEntries.remove(key);
+		diskSize -= file.length();
+		file.delete();
+		return null;
+	}
+
+	private void writeToDisk(Context context, String key, Script script)
+	{
+		if (!initDiskCache(context)) {
+			return;
+		}
+
+		File tempFile = new File(diskCacheDir, key + SCRIPT_SUFFIX + TEMP_SUFFIX);
+		File file = new File(diskCacheDir, key + SCRIPT_SUFFIX);
+		ObjectOutputStream out = null;
+		boolean written = false;
+		try {
+			out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+			out.writeObject(script);
+			out.close();
+			out = null;
+			written = tempFile.renameTo(file);
+
+		} catch (Exception e) {
+			// scripts that can't be serialized are only cached in memory
+			if (DBG) {
+				Log.d(TAG, "Unable to store compiled script: " + e.getMessage());
+			}
+
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+
+		if (!written) {
+			tempFile.delete();
+			return;
+		}
+
+		diskEntries.add(key);
+		diskSize += file.length();
+		trimDisk();
+	}
+
+	// Removes the least recently used files until the store is under its maximum size
+	private void trimDisk()
+	{
+		if (diskSize <= MAX_DISK_SIZE) {
+			return;
+		}
+
+		File[] files = diskCacheDir.listFiles();
+		if (files == null) {
+			return;
+		}
+
+		Arrays.sort(files, new Comparator<File>() {
+			public int compare(File a, File b)
+			{
+				long diff = a.lastModified() - b.lastModified();
+				return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+			}
+		});
+
+		for (File file : files) {
+			if (diskSize <= MAX_DISK_SIZE) {
+				break;
+			}
+			String name = file.getName();
+			if (name.endsWith(SCRIPT_SUFFIX)) {
+				diskEntries.remove(name.substring(0, name.length() - SCRIPT_SUFFIX.length()));
+			}
+			diskSize -= file.length();
+			file.delete();
+		}
+	}
+}
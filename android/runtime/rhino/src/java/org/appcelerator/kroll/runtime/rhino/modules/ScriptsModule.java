@@ -11,10 +11,12 @@ import org.appcelerator.kroll.KrollRuntime;
 import org.appcelerator.kroll.runtime.rhino.KrollScriptRunner;
 import org.appcelerator.kroll.runtime.rhino.KrollWith;
 import org.appcelerator.kroll.runtime.rhino.RhinoRuntime;
+import org.appcelerator.kroll.runtime.rhino.RhinoScriptCache;
 import org.appcelerator.kroll.util.KrollAssetHelper;
 import org.mozilla.javascript.BaseFunction;
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.Function;
+import org.mozilla.javascript.Script;
 import org.mozilla.javascript.Scriptable;
 import org.mozilla.javascript.ScriptableObject;
 import org.mozilla.javascript.Undefined;
@@ -74,7 +76,8 @@ public class ScriptsModule extends ScriptableObject
 				return evaluator.evaluateString(scope, source, path);
 			}
 
-			return context.evaluateString(scope, source, path, 1, null);
+			Script script = RhinoScriptCache.getInstance().getScript(context, source, path);
+			return script.exec(context, scope);
 
 		} catch (Throwable throwable) {
 			if (displayError) {
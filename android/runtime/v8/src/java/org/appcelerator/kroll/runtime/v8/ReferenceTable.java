@@ -1,12 +1,44 @@
 package org.appcelerator.kroll.runtime.v8;
 
 import java.lang.ref.WeakReference;
-import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+/*
+ * Holds the Java objects referenced from JavaScript. References are stored
+ * in a slab indexed directly by key (key = slot + 1) so lookups never box
+ * the key. Released slots are recycled through a free list.
+ *
+ * Lookups are lock-free. Creating, destroying and weakening references is
+ * serialized by a single lock so slab growth can never lose a write.
+ */
 public final class ReferenceTable
 {
-	private static HashMap<Integer, Object> references = new HashMap<Integer, Object>();
-	private static int lastKey = 1;
+	private static final int INITIAL_CAPACITY = 256;
+	private static final int END_OF_FREE_LIST = -1;
+	private static final int SLOT_IN_USE = -2;
+
+	private static final Object lock = new Object();
+
+	// Each slot holds either the strongly referenced object or a WeakRef to it.
+	private static volatile AtomicReferenceArray<Object> references = new AtomicReferenceArray<Object>(INITIAL_CAPACITY);
+
+	// Guarded by lock. The last WeakRef created for a slot, reused if the slot is weakened again.
+	private static WeakRef[] weakReferences = new WeakRef[INITIAL_CAPACITY];
+	private static int[] nextFree = new int[INITIAL_CAPACITY];
+	private static int freeHead = END_OF_FREE_LIST;
+	private static int nextUnusedSlot = 0;
+
+	/*
+	 * Marks weakened entries so a referenced object that is itself a
+	 * java.lang.ref.WeakReference is never mistaken for a weak entry.
+	 */
+	private static final class WeakRef extends WeakReference<Object>
+	{
+		WeakRef(Object referent)
+		{
+			super(referent);
+		}
+	}
 
 	/*
 	 * Creates a new reference.
@@ -15,9 +47,23 @@ public final class ReferenceTable
 	 */
 	public static int createReference(Object object)
 	{
-		int key = lastKey++;
-		references.put(key, object);
-		return key;
+		synchronized (lock) {
+			int slot;
+			if (freeHead != END_OF_FREE_LIST) {
+				slot = freeHead;
+				freeHead = nextFree[slot];
+
+			} else {
+				slot = nextUnusedSlot++;
+				if (slot == references.length()) {
+					grow();
+				}
+			}
+
+			nextFree[slot] = SLOT_IN_USE;
+			references.set(slot, object);
+			return slot + 1;
+		}
 	}
 
 	/*
@@ -26,7 +72,17 @@ public final class ReferenceTable
 	 */
 	public static void destroyReference(int key)
 	{
-		references.remove(key);
+		int slot = key - 1;
+		synchronized (lock) {
+			if (slot < 0 || slot >= nextUnusedSlot || nextFree[slot] != SLOT_IN_USE) {
+				return;
+			}
+
+			references.set(slot, null);
+			weakReferences[slot] = null;
+			nextFree[slot] = freeHead;
+			freeHead = slot;
+		}
 	}
 
 	/*
@@ -36,8 +92,25 @@ public final class ReferenceTable
 	 */
 	public static void makeWeakReference(int key)
 	{
-		Object ref = references.get(key);
-		references.put(key, new WeakReference<Object>(ref));
+		int slot = key - 1;
+		synchronized (lock) {
+			AtomicReferenceArray<Object> table = references;
+			if (slot < 0 || slot >= table.length()) {
+				return;
+			}
+
+			Object ref = table.get(slot);
+			if (ref instanceof WeakRef) {
+				return;
+			}
+
+			WeakRef weakRef = weakReferences[slot];
+			if (weakRef == null || weakRef.get() != ref) {
+				weakRef = new WeakRef(ref);
+				weakReferences[slot] = weakRef;
+			}
+			table.set(slot, weakRef);
+		}
 	}
 
 	/*
@@ -49,12 +122,20 @@ public final class ReferenceTable
 	 */
 	public static Object clearWeakReference(int key)
 	{
-		Object ref = references.get(key);
-		if (ref instanceof WeakReference) {
-			ref = ((WeakReference<?>)ref).get();
-			references.put(key, ref);
+		int slot = key - 1;
+		synchronized (lock) {
+			AtomicReferenceArray<Object> table = references;
+			if (slot < 0 || slot >= table.length()) {
+				return null;
+			}
+
+			Object ref = table.get(slot);
+			if (ref instanceof WeakRef) {
+				ref = ((WeakRef) ref).get();
+				table.set(slot, ref);
+			}
+			return ref;
 		}
-		return ref;
 	}
 
 	/*
@@ -64,10 +145,41 @@ public final class ReferenceTable
 	 */
 	public static Object getReference(int key)
 	{
-		Object ref = references.get(key);
-		if (ref instanceof WeakReference) {
-			ref = ((WeakReference<?>)ref).get();
+		int slot = key - 1;
+		AtomicReferenceArray<Object> table = references;
+		if (slot < 0 || slot >= table.length()) {
+			return null;
+		}
+
+		Object ref = table.get(slot);
+		if (ref instanceof WeakRef) {
+			ref = ((WeakRef) ref).get();
 		}
 		return ref;
 	}
+
+	/*
+	 * Doubles the slab capacity. Must be called while holding lock.
+	 */
+	private static void grow()
+	{
+		AtomicReferenceArray<Object> table = references;
+		int capacity = table.length();
+		int newCapacity = capacity * 2;
+
+		AtomicReferenceArray<Object> newTable = new AtomicReferenceArray<Object>(newCapacity);
+		for (int i = 0; i < capacity; i++) {
+			newTable.set(i, table.get(i));
+		}
+
+		WeakRef[] newWeakReferences = new WeakRef[newCapacity];
+		System.arraycopy(weakReferences, 0, newWeakReferences, 0, capacity);
+		weakReferences = newWeakReferences;
+
+		int[] newNextFree = new int[newCapacity];
+		System.arraycopy(nextFree, 0, newNextFree, 0, capacity);
+		nextFree = newNextFree;
+
+		references = newTable;
+	}
 }
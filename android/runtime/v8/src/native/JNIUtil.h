@@ -113,6 +113,7 @@ public:
 	static jmethodID krollInvocationInitMethod;
 	static jmethodID krollObjectSetHasListenersForEventTypeMethod;
 	static jmethodID krollObjectOnEventFiredMethod;
+	static jmethodID krollObjectSetProxySupportMethod;
 	static jmethodID krollProxyCreateProxyMethod;
 	static jmethodID krollProxyCreateDeprecatedProxyMethod;
 	static jfieldID krollProxyKrollObjectField;
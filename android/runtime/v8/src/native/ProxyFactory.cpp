@@ -101,6 +101,11 @@ Handle<Object> ProxyFactory::createV8Proxy(jclass javaClass, jobject javaProxy)
 
 	env->SetObjectField(javaProxy,
 		JNIUtil::krollProxyKrollObjectField, javaV8Object);
+
+	// Proxies created from Java never run setupProxy, so hook up the
+	// listener callbacks here as well.
+	env->CallVoidMethod(javaV8Object,
+		JNIUtil::krollObjectSetProxySupportMethod, javaProxy);
 	env->DeleteLocalRef(javaV8Object);
 
 	return scope.Close(v8Proxy);
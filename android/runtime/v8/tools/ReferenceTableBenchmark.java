@@ -0,0 +1,157 @@
+/**
+ * Appcelerator Titanium Mobile
+ * Copyright (c) 2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Apache Public License
+ * Please see the LICENSE included with this distribution for details.
+ */
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+
+import org.appcelerator.kroll.runtime.v8.ReferenceTable;
+
+/*
+ * Compares create/get/weaken/destroy throughput of ReferenceTable against the
+ * previous HashMap backed implementation. Runs on a desktop JVM:
+ *
+ *   javac -d /tmp/reftable src/java/org/appcelerator/kroll/runtime/v8/ReferenceTable.java tools/ReferenceTableBenchmark.java
+ *   java -cp /tmp/reftable ReferenceTableBenchmark [liveReferences] [rounds]
+ */
+public class ReferenceTableBenchmark
+{
+	private static final int DEFAULT_LIVE_REFERENCES = 10000;
+	private static final int DEFAULT_ROUNDS = 200;
+	private static final int WARMUP_ROUNDS = 50;
+
+	// The HashMap backed table that ReferenceTable replaced.
+	private static final class MapReferenceTable
+	{
+		private static HashMap<Integer, Object> references = new HashMap<Integer, Object>();
+		private static int lastKey = 1;
+
+		static int createReference(Object object)
+		{
+			int key = lastKey++;
+			references.put(key, object);
+			return key;
+		}
+
+		static void destroyReference(int key)
+		{
+			references.remove(key);
+		}
+
+		static void makeWeakReference(int key)
+		{
+			Object ref = references.get(key);
+			references.put(key, new WeakReference<Object>(ref));
+		}
+
+		static Object clearWeakReference(int key)
+		{
+			Object ref = references.get(key);
+			if (ref instanceof WeakReference) {
+				ref = ((WeakReference<?>) ref).get();
+				references.put(key, ref);
+			}
+			return ref;
+		}
+
+		static Object getReference(int key)
+		{
+			Object ref = references.get(key);
+			if (ref instanceof WeakReference) {
+				ref = ((WeakReference<?>) ref).get();
+			}
+			return ref;
+		}
+	}
+
+	private static abstract class Workload
+	{
+		final String name;
+		long sink;
+
+		Workload(String name)
+		{
+			this.name = name;
+		}
+
+		abstract int create(Object object);
+		abstract Object get(int key);
+		abstract void weaken(int key);
+		abstract Object strengthen(int key);
+		abstract void destroy(int key);
+
+		// one round: create N, get each 4 times, weaken/strengthen each, destroy all
+		void round(Object[] objects, int[] keys)
+		{
+			int n = objects.length;
+			for (int i = 0; i < n; i++) {
+				keys[i] = create(objects[i]);
+			}
+			for (int pass = 0; pass < 4; pass++) {
+				for (int i = 0; i < n; i++) {
+					if (get(keys[i]) != null) {
+						sink++;
+					}
+				}
+			}
+			for (int i = 0; i < n; i++) {
+				weaken(keys[i]);
+				if (strengthen(keys[i]) != null) {
+					sink++;
+				}
+			}
+			for (int i = 0; i < n; i++) {
+				destroy(keys[i]);
+			}
+		}
+	}
+
+	public static void main(String[] args)
+	{
+		int liveReferences = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_LIVE_REFERENCES;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ROUNDS;
+
+		Object[] objects = new Object[liveReferences];
+		for (int i = 0; i < liveReferences; i++) {
+			objects[i] = new Object();
+		}
+		int[] keys = new int[liveReferences];
+
+		Workload map = new Workload("HashMap") {
+			int create(Object object) { return MapReferenceTable.createReference(object); }
+			Object get(int key) { return MapReferenceTable.getReference(key); }
+			void weaken(int key) { MapReferenceTable.makeWeakReference(key); }
+			Object strengthen(int key) { return MapReferenceTable.clearWeakReference(key); }
+			void destroy(int key) { MapReferenceTable.destroyReference(key); }
+		};
+		Workload slab = new Workload("ReferenceTable") {
+			int create(Object object) { return ReferenceTable.createReference(object); }
+			Object get(int key) { return ReferenceTable.getReference(key); }
+			void weaken(int key) { ReferenceTable.makeWeakReference(key); }
+			Object strengthen(int key) { return ReferenceTable.clearWeakReference(key); }
+			void destroy(int key) { ReferenceTable.destroyReference(key); }
+		};
+
+		for (Workload workload : new Workload[] { map, slab }) {
+			for (int i = 0; i < WARMUP_ROUNDS; i++) {
+				workload.round(objects, keys);
+			}
+		}
+
+		// each round performs 1 create, 4 gets, 1 weaken, 1 strengthen and 1 destroy per reference
+		long operations = (long) liveReferences * rounds * 8;
+		for (Workload workload : new Workload[] { map, slab }) {
+			long start = System.nanoTime();
+			for (int i = 0; i < rounds; i++) {
+				workload.round(objects, keys);
+			}
+			long elapsed = System.nanoTime() - start;
+
+			System.out.println(String.format("%-15s %8.1f ms  %10.0f ops/ms  (sink %d)", workload.name,
+				elapsed / 1e6, operations / (elapsed / 1e6), workload.sink));
+		}
+	}
+}
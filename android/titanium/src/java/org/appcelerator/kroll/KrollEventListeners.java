@@ -0,0 +1,149 @@
+/**
+ * Appcelerator Titanium Mobile
+ * Copyright (c) 2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Apache Public License
+ * Please see the LICENSE included with this distribution for details.
+ */
+package org.appcelerator.kroll;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The Java event callbacks registered on a proxy.
+ *
+ * Each event maps to an immutable array of callbacks. Adding or removing a callback builds new
+ * arrays and publishes them with a single volatile write, so firing an event never takes a lock
+ * and always iterates a consistent snapshot, in the order the callbacks were added. A callback
+ * removed while an event is being fired may still receive that one event.
+ */
+public class KrollEventListeners
+{
+	private static final class Listener
+	{
+		final int id;
+		final KrollEventCallback callback;
+
+		Listener(int id, KrollEventCallback callback)
+		{
+			this.id = id;
+			this.callback = callback;
+		}
+	}
+
+	// never modified once published, replaced on every add and remove
+	private volatile Map<String, Listener[]> listeners = Collections.emptyMap();
+
+	// guarded by this
+	private int lastId = 0;
+
+	/**
+	 * Adds a callback for an event.
+	 * @param event the event name.
+	 * @param callback the callback to add.
+	 * @return the id to pass to {@link #remove(String, int)}.
+	 */
+	public synchronized int add(String event, KrollEventCallback callback)
+	{
+		int id = ++lastId;
+
+		Listener[] current = listeners.get(event);
+		Listener[] updated;
+		if (current == null) {
+			updated = new Listener[] { new Listener(id, callback) };
+
+		} else {
+			updated = new Listener[current.length + 1];
+			System.arraycopy(current, 0, updated, 0, current.length);
+			updated[current.length] = new Listener(id, callback);
+		}
+
+		publish(event, updated);
+		return id;
+	}
+
+	/**
+	 * Removes a callback.
+	 * @param event the event name the callback was added for.
+	 * @param id the id returned by {@link #add(String, KrollEventCallback)}.
+	 * @return whether a callback was removed.
+	 */
+	public synchronized boolean remove(String event, int id)
+	{
+		Listener[] current = listeners.get(event);
+		if (current == null) {
+			return false;
+		}
+
+		int index = -1;
+		for (int i = 0; i < current.length; i++) {
+			if (current[i].id == id) {
+				index = i;
+				break;
+			}
+		}
+		if (index < 0) {
+			return false;
+		}
+
+		Listener[] updated = null;
+		if (current.length > 1) {
+			updated = new Listener[current.length - 1];
+			System.arraycopy(current, 0, updated, 0, index);
+			System.arraycopy(current, index + 1, updated, index, current.length - index - 1);
+		}
+
+		publish(event, updated);
+		return true;
+	}
+
+	// must be called while holding the lock on this
+	private void publish(String event, Listener[] eventListeners)
+	{
+		Map<String, Listener[]> updated = new HashMap<String, Listener[]>(listeners);
+		if (eventListeners == null) {
+			updated.remove(event);
+
+		} else {
+			updated.put(event, eventListeners);
+		}
+		listeners = updated.isEmpty() ? Collections.<String, Listener[]>emptyMap() : updated;
+	}
+
+	/**
+	 * Calls every callback added for the event, without locking.
+	 * @param event the event name.
+	 * @param data the event data passed to each callback.
+	 * @return the number of callbacks called.
+	 */
+	public int fire(String event, Object data)
+	{
+		Listener[] eventListeners = listeners.get(event);
+		if (eventListeners == null) {
+			return 0;
+		}
+
+		for (Listener listener : eventListeners) {
+			listener.callback.call(data);
+		}
+		return eventListeners.length;
+	}
+
+	/**
+	 * @param event the event name.
+	 * @return whether any callback is registered for the event.
+	 */
+	public boolean hasListeners(String event)
+	{
+		return listeners.containsKey(event);
+	}
+
+	/**
+	 * @return whether no callbacks are registered for any event.
+	 */
+	public boolean isEmpty()
+	{
+		return listeners.isEmpty();
+	}
+}
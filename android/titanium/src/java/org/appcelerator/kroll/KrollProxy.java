@@ -9,10 +9,10 @@ package org.appcelerator.kroll;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.Constructor;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.Map;
+import java.util.LinkedHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.appcelerator.kroll.annotations.Kroll;
 import org.appcelerator.kroll.common.AsyncResult;
@@ -57,14 +57,16 @@ public class KrollProxy implements Handler.Callback, KrollProxySupport
 	protected static final int MSG_SET_PROPERTY = KrollObject.MSG_LAST_ID + 106;
 	protected static final int MSG_FIRE_EVENT = KrollObject.MSG_LAST_ID + 107;
 	protected static final int MSG_FIRE_SYNC_EVENT = KrollObject.MSG_LAST_ID + 108;
-	protected static final int MSG_LAST_ID = MSG_FIRE_SYNC_EVENT;
+	protected static final int MSG_FLUSH_PROPERTY_CHANGES = KrollObject.MSG_LAST_ID + 109;
+	protected static final int MSG_LAST_ID = MSG_FLUSH_PROPERTY_CHANGES;
 	protected static final String PROPERTY_NAME = "name";
 	protected static final String PROPERTY_HAS_JAVA_LISTENER = "_hasJavaListener";
 
 	protected static AtomicInteger proxyCounter = new AtomicInteger();
-	protected AtomicInteger listenerIdGenerator;
+	protected static AtomicLong propertyChangeCount = new AtomicLong();
+	protected static AtomicLong propertyChangeMessageCount = new AtomicLong();
 
-	protected Map<String, HashMap<Integer, KrollEventCallback>> eventListeners;
+	protected KrollEventListeners eventListeners;
 	protected KrollObject krollObject;
 	protected WeakReference<Activity> activity;
 	protected String proxyId;
@@ -77,6 +79,10 @@ public class KrollProxy implements Handler.Callback, KrollProxySupport
 	protected Handler mainHandler = null;
 	protected Handler runtimeHandler = null;
 
+	// property changes made off the UI thread, coalesced per property until delivered
+	protected LinkedHashMap<String, KrollPropertyChange> pendingPropertyChanges = null;
+	protected Object pendingPropertyChangesLock = new Object();
+
 	public static final String PROXY_ID_PREFIX = "proxy$";
 
 
@@ -102,8 +108,7 @@ public class KrollProxy implements Handler.Callback, KrollProxySupport
 	public KrollProxy(String baseCreationUrl)
 	{
 		creationUrl = new TiUrl(baseCreationUrl);
-		this.listenerIdGenerator = new AtomicInteger(0);
-		this.eventListeners = Collections.synchronizedMap(new HashMap<String, HashMap<Integer, KrollEventCallback>>());
+		this.eventListeners = new KrollEventListeners();
 	}
 
 	private void setupProxy(KrollObject object, Object[] creationArguments, TiUrl creationUrl)
@@ -265,6 +270,9 @@ public class KrollProxy implements Handler.Callback, KrollProxySupport
 	public void setKrollObject(KrollObject object)
 	{
 		this.krollObject = object;
+		if (object != null) {
+			object.setProxySupport(this);
+		}
 	}
 
 	/**
@@ -498,15 +506,84 @@ public class KrollProxy implements Handler.Callback, KrollProxySupport
 	{
 		if (modelListener != null) {
 			if (TiApplication.isUIThread()) {
+				// deliver earlier changes first so they can't overwrite this one
+				flushPropertyChanges();
 				modelListener.propertyChanged(name, oldValue, newValue, this);
 
 			} else {
-				KrollPropertyChange pch = new KrollPropertyChange(name, oldValue, newValue);
-				getMainHandler().obtainMessage(MSG_MODEL_PROPERTY_CHANGE, pch).sendToTarget();
+				queuePropertyChange(name, oldValue, newValue);
+			}
+		}
+	}
+
+	/**
+	 * Queues a property change for delivery to the model listener on the UI thread. The first change
+	 * posts a flush message to the UI thread right away, so the batch stays ordered before any UI
+	 * message sent afterwards (such as a blocking getSize or animate). Changes made until the UI thread
+	 * handles it are coalesced per property (last write wins) and delivered together through
+	 * {@link KrollProxyListener#propertiesChanged(java.util.List, KrollProxy)}.
+	 */
+	protected void queuePropertyChange(String name, Object oldValue, Object newValue)
+	{
+		boolean schedule = false;
+		propertyChangeCount.incrementAndGet();
+
+		synchronized (pendingPropertyChangesLock) {
+			if (pendingPropertyChanges == null) {
+				pendingPropertyChanges = new LinkedHashMap<String, KrollPropertyChange>();
+				schedule = true;
 			}
+
+			KrollPropertyChange pending = pendingPropertyChanges.get(name);
+			if (pending != null) {
+				// keep the value the listener last saw as the old value
+				oldValue = pending.getOldValue();
+			}
+			pendingPropertyChanges.put(name, new KrollPropertyChange(name, oldValue, newValue));
+		}
+
+		if (schedule) {
+			propertyChangeMessageCount.incrementAndGet();
+			getMainHandler().sendEmptyMessage(MSG_FLUSH_PROPERTY_CHANGES);
 		}
 	}
 
+	/**
+	 * Delivers all queued property changes to the model listener. Must be called on the UI thread.
+	 */
+	protected void flushPropertyChanges()
+	{
+		ArrayList<KrollPropertyChange> changes;
+		synchronized (pendingPropertyChangesLock) {
+			if (pendingPropertyChanges == null) {
+				return;
+			}
+
+			changes = new ArrayList<KrollPropertyChange>(pendingPropertyChanges.values());
+			pendingPropertyChanges = null;
+		}
+
+		if (modelListener != null) {
+			modelListener.propertiesChanged(changes, this);
+		}
+	}
+
+	/**
+	 * @return the number of property changes queued from off the UI thread.
+	 */
+	public static long getPropertyChangeCount()
+	{
+		return propertyChangeCount.get();
+	}
+
+	/**
+	 * @return the number of UI thread messages used to deliver queued property changes.
+	 */
+	public static long getPropertyChangeMessageCount()
+	{
+		return propertyChangeMessageCount.get();
+	}
+
 	public void onHasListenersChanged(String event, boolean hasListeners)
 	{
 		Message msg = getMainHandler().obtainMessage(hasListeners ? MSG_LISTENER_ADDED : MSG_LISTENER_REMOVED);
@@ -524,6 +601,16 @@ public class KrollProxy implements Handler.Callback, KrollProxySupport
 		return getKrollObject().hasListeners(event);
 	}
 
+	/**
+	 * @param event the event to check
+	 * @return whether a Java callback has been added for the passed in event with
+	 * {@link #addEventListener(String, KrollEventCallback)}.
+	 */
+	public boolean hasJavaListeners(String event)
+	{
+		return eventListeners.hasListeners(event);
+	}
+
 	protected boolean shouldFireChange(Object oldValue, Object newValue)
 	{
 		if (!(oldValue == null && newValue == null)) {
@@ -656,6 +743,11 @@ public class KrollProxy implements Handler.Callback, KrollProxySupport
 
 				return true;
 			}
+			case MSG_FLUSH_PROPERTY_CHANGES: {
+				flushPropertyChanges();
+
+				return true;
+			}
 			case MSG_INIT_KROLL_OBJECT: {
 				initKrollObject();
 				((AsyncResult) msg.obj).setResult(null);
@@ -752,22 +844,17 @@ public class KrollProxy implements Handler.Callback, KrollProxySupport
 			throw new IllegalStateException("addEventListener expects a non-null listener");
 		}
 
+		// writers lock the registry so the property follows its first add and last remove,
+		// firing doesn't lock at all
 		synchronized (eventListeners) {
 			if (eventListeners.isEmpty()) {
 				setProperty(PROPERTY_HAS_JAVA_LISTENER, true);
 			}
 
-			HashMap<Integer, KrollEventCallback> listeners = eventListeners.get(eventName);
-			if (listeners == null) {
-				listeners = new HashMap<Integer, KrollEventCallback>();
-				eventListeners.put(eventName, listeners);
-			}
-
+			listenerId = eventListeners.add(eventName, callback);
 			if (DBG) {
 				Log.d(TAG, "Added for eventName '" + eventName + "' with id " + listenerId);
 			}
-			listenerId = listenerIdGenerator.incrementAndGet();
-			listeners.put(listenerId, callback);
 		}
 
 		return listenerId;
@@ -780,35 +867,23 @@ public class KrollProxy implements Handler.Callback, KrollProxySupport
 		}
 
 		synchronized (eventListeners) {
-			HashMap<Integer, KrollEventCallback> listeners = eventListeners.get(eventName);
-			if (listeners != null) {
-				if (listeners.remove(listenerId) == null) {
-					if (DBG) {
-						Log.d(TAG, "listenerId " + listenerId + " not for eventName '" + eventName + "'");
-					}
-				}
-				if (listeners.isEmpty()) {
-					eventListeners.remove(eventName);
-				}
-				if (eventListeners.isEmpty()) {
-					// If we don't have any java listeners, we set the property to false
-					setProperty(PROPERTY_HAS_JAVA_LISTENER, false);
+			if (!eventListeners.remove(eventName, listenerId)) {
+				if (DBG) {
+					Log.d(TAG, "listenerId " + listenerId + " not for eventName '" + eventName + "'");
 				}
+				return;
+			}
+
+			if (eventListeners.isEmpty()) {
+				// If we don't have any java listeners, we set the property to false
+				setProperty(PROPERTY_HAS_JAVA_LISTENER, false);
 			}
 		}
 	}
 
 	public void onEventFired(String event, Object data)
 	{
-		HashMap<Integer, KrollEventCallback> listeners = eventListeners.get(event);
-		if (listeners != null) {
-			for (Integer listenerId : listeners.keySet()) {
-				KrollEventCallback callback = listeners.get(listenerId);
-				if (callback != null) {
-					callback.call(data);
-				}
-			}
-		}
+		eventListeners.fire(event, data);
 	}
 
 	/**
@@ -38,6 +38,7 @@ import org.appcelerator.titanium.analytics.TiAnalyticsEventFactory;
 import org.appcelerator.titanium.analytics.TiAnalyticsModel;
 import org.appcelerator.titanium.analytics.TiAnalyticsService;
 import org.appcelerator.titanium.util.TiPlatformHelper;
+import org.appcelerator.titanium.util.TiBitmapCache;
 import org.appcelerator.titanium.util.TiResponseCache;
 import org.appcelerator.titanium.util.TiUIHelper;
 import org.appcelerator.titanium.util.TiWeakList;
@@ -367,6 +368,14 @@ public abstract class TiApplication extends Application implements Handler.Callb
 		super.onTerminate();
 	}
 
+	@Override
+	public void onLowMemory()
+	{
+		// Decoded bitmaps can be decoded again, drop them before the system starts killing processes
+		TiBitmapCache.getInstance().evictAll();
+		super.onLowMemory();
+	}
+
 	public void postAppInfo()
 	{
 		TiPlatformHelper.initialize();
@@ -429,7 +438,7 @@ public abstract class TiApplication extends Application implements Handler.Callb
 
 		if (collectAnalytics()) {
 			analyticsIntent = new Intent(this, TiAnalyticsService.class);
-			analyticsModel = new TiAnalyticsModel(this);
+			analyticsModel = TiAnalyticsModel.getInstance(this);
 			needsEnrollEvent = analyticsModel.needsEnrollEvent();
 
 			if (needsEnrollEvent()) {
@@ -12,6 +12,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
 
 import org.apache.commons.codec.binary.Base64;
 import org.appcelerator.kroll.KrollProxy;
@@ -59,11 +60,25 @@ public class TiBlob extends KrollProxy
 	 */
 	public static final int TYPE_STRING = 3;
 
+	// appended data smaller than this is copied into the tail instead of becoming its own segment
+	private static final int SMALL_SEGMENT_SIZE = 4096;
+	private static final int TAIL_SIZE = 64 * 1024;
+
 	private int type;
 	private Object data;
 	private String mimetype;
 	private int width, height;
 
+	// Data appended to a data or image blob, kept as a list of byte[] and TiBaseFile segments
+	// and only concatenated into data when the bytes are requested. Small appends are copied into
+	// tail, which always comes after segments. Guarded by this.
+	private ArrayList<Object> segments;
+	private byte[] tail;
+	private int tailLength;
+	private int segmentsLength;
+	// whether data was allocated by this blob, rather than passed in by its creator who may still change it
+	private boolean dataOwned = false;
+
 	private TiBlob(int type, Object data, String mimetype)
 	{
 		super();
@@ -165,7 +180,7 @@ public class TiBlob extends KrollProxy
 	 * @return binary data.
 	 * @module.api
 	 */
-	public byte[] getBytes()
+	public synchronized byte[] getBytes()
 	{
 		byte[] bytes = new byte[0];
 
@@ -180,6 +195,7 @@ public class TiBlob extends KrollProxy
 			case TYPE_DATA:
 			case TYPE_IMAGE:
 				//TODO deal with mimetypes.
+				flatten();
 				bytes = (byte[]) data;
 				break;
 			case TYPE_FILE:	
@@ -204,20 +220,18 @@ public class TiBlob extends KrollProxy
 	}
 
 	@Kroll.getProperty @Kroll.method
-	public int getLength()
+	public synchronized int getLength()
 	{
 		switch (type) {
 			case TYPE_FILE:
-				long fileSize;
-				if (data instanceof TitaniumBlob) {
-					fileSize = ((TitaniumBlob) data).getFile().length();
-				} else {
-					fileSize = ((TiBaseFile) data).size();
-				}
-				return (int) fileSize;
+				return getFileLength((TiBaseFile) data);
 			case TYPE_DATA:
 			case TYPE_IMAGE:
-				return ((byte[])data).length;
+				int length = segmentsLength + tailLength;
+				if (data != null) {
+					length += ((byte[]) data).length;
+				}
+				return length;
 			default:
 				// this is probably overly expensive.. is there a better way?
 				return getBytes().length;
@@ -225,10 +239,11 @@ public class TiBlob extends KrollProxy
 	}
 
 	/**
-	 * @return An InputStream for reading the data of this blob.
+	 * @return An InputStream for reading the data of this blob. For a blob built by appending,
+	 * the stream reads each appended part in turn, without concatenating them first.
 	 * @module.api
 	 */
-	public InputStream getInputStream()
+	public synchronized InputStream getInputStream()
 	{
 		switch (type) {
 			case TYPE_FILE:
@@ -239,38 +254,223 @@ public class TiBlob extends KrollProxy
 				return null;
 			}
 			default:
+				if (segments != null) {
+					return new SegmentInputStream(getSegments());
+				}
 				return new ByteArrayInputStream(getBytes());
 		}
 	}
 
+	/**
+	 * Appends the contents of another blob. Appending to a data or image blob doesn't copy
+	 * the data already in this blob: the appended data is kept as a separate segment, and
+	 * segments are only concatenated when {@link #getBytes()} or {@link #getData()} is called.
+	 * Appended files are read when this blob is read. Appending to a file blob turns it into
+	 * a data blob.
+	 * @param blob the blob to append.
+	 */
 	@Kroll.method
 	public void append(TiBlob blob)
 	{
-		switch(type) {
-			case TYPE_STRING :
-				try {
-					String dataString = (String)data;
-					dataString += new String(blob.getBytes(), "utf-8");
-				} catch (UnsupportedEncodingException e) {
-					Log.w(LCAT, e.getMessage(), e);
-				}
+		// taken before locking this blob, so a blob can be appended to itself
+		ArrayList<Object> appended = blob.getSegmentsForAppend();
+
+		synchronized (this) {
+			switch(type) {
+				case TYPE_STRING :
+					try {
+						String dataString = (String)data;
+						dataString += new String(blob.getBytes(), "utf-8");
+						data = dataString;
+					} catch (UnsupportedEncodingException e) {
+						Log.w(LCAT, e.getMessage(), e);
+					}
+					break;
+				case TYPE_FILE :
+					if (DBG) {
+						Log.d(LCAT, "Appending to a file blob, converting it to a data blob");
+					}
+					segments = new ArrayList<Object>();
+					addSegment(data);
+					data = null;
+					type = TYPE_DATA;
+					// fall through
+				case TYPE_IMAGE:
+				case TYPE_DATA :
+					if (segments == null) {
+						segments = new ArrayList<Object>();
+						if (data != null && !dataOwned) {
+							// this blob outlives the array it was created from, which its creator may reuse
+							byte[] bytes = (byte[]) data;
+							byte[] copy = new byte[bytes.length];
+							System.arraycopy(bytes, 0, copy, 0, bytes.length);
+							data = copy;
+							dataOwned = true;
+						}
+					}
+					for (Object segment : appended) {
+						addSegment(segment);
+					}
+					break;
+				default :
+					throw new IllegalArgumentException("Unknown Blob type id " + type);
+			}
+		}
+	}
+
+	private void addSegment(Object segment)
+	{
+		if (segment instanceof TiBaseFile) {
+			sealTail();
+			segments.add(segment);
+			segmentsLength += getFileLength((TiBaseFile) segment);
+			return;
+		}
+
+		byte[] bytes = (byte[]) segment;
+		if (bytes.length == 0) {
+			return;
+		}
+		if (bytes.length >= SMALL_SEGMENT_SIZE) {
+			sealTail();
+			segments.add(bytes);
+			segmentsLength += bytes.length;
+			return;
+		}
+
+		if (tail != null && tailLength + bytes.length > tail.length) {
+			sealTail();
+		}
+		if (tail == null) {
+			tail = new byte[TAIL_SIZE];
+		}
+		System.arraycopy(bytes, 0, tail, tailLength, bytes.length);
+		tailLength += bytes.length;
+	}
+
+	private void sealTail()
+	{
+		if (tailLength == 0) {
+			return;
+		}
+
+		byte[] sealed = tail;
+		if (tailLength != tail.length) {
+			sealed = new byte[tailLength];
+			System.arraycopy(tail, 0, sealed, 0, tailLength);
+		}
+		segments.add(sealed);
+		segmentsLength += tailLength;
+		tail = null;
+		tailLength = 0;
+	}
+
+	/**
+	 * @return the contents of this blob as a list of byte[] and TiBaseFile segments. The byte arrays
+	 * are never modified afterwards, so the list stays valid when more data is appended.
+	 */
+	private synchronized ArrayList<Object> getSegments()
+	{
+		ArrayList<Object> list = new ArrayList<Object>();
+		switch (type) {
+			case TYPE_FILE:
+				list.add(data);
 				break;
+			case TYPE_DATA:
 			case TYPE_IMAGE:
-			case TYPE_DATA :
-				byte[] dataBytes = (byte[]) data;
-				byte[] appendBytes = blob.getBytes();
-				byte[] newData = new byte[dataBytes.length + appendBytes.length];
-				System.arraycopy(dataBytes, 0, newData, 0, dataBytes.length);
-				System.arraycopy(appendBytes, 0, newData, dataBytes.length, appendBytes.length);
-
-				data = newData;
+				if (data != null) {
+					list.add(data);
+				}
+				if (segments != null) {
+					list.addAll(segments);
+				}
+				if (tailLength > 0) {
+					byte[] tailCopy = new byte[tailLength];
+					System.arraycopy(tail, 0, tailCopy, 0, tailLength);
+					list.add(tailCopy);
+				}
 				break;
-			case TYPE_FILE :
-				throw new IllegalStateException("Not yet implemented. TYPE_FILE");
-				// break;
-			default :
-				throw new IllegalArgumentException("Unknown Blob type id " + type);
+			default:
+				list.add(getBytes());
+		}
+		return list;
+	}
+
+	/**
+	 * @return the segments of this blob, with the array it was created from copied, since its creator
+	 * may still change it. For example BufferProxy.toBlob() passes the buffer's own array.
+	 */
+	private synchronized ArrayList<Object> getSegmentsForAppend()
+	{
+		ArrayList<Object> list = getSegments();
+		if ((type == TYPE_DATA || type == TYPE_IMAGE) && data != null && !dataOwned) {
+			byte[] bytes = (byte[]) data;
+			// smaller arrays are copied into the tail of the blob they are appended to anyway
+			if (bytes.length >= SMALL_SEGMENT_SIZE) {
+				byte[] copy = new byte[bytes.length];
+				System.arraycopy(bytes, 0, copy, 0, bytes.length);
+				list.set(0, copy);
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Concatenates the appended segments into a single array, which replaces them.
+	 */
+	private void flatten()
+	{
+		if (segments == null) {
+			return;
+		}
+
+		int length = getLength();
+		if (DBG) {
+			Log.d(LCAT, "Concatenating " + (segments.size() + 1) + " segments, " + length + " bytes");
+		}
+
+		byte[] bytes = new byte[length];
+		int position = 0;
+		InputStream stream = new SegmentInputStream(getSegments());
+		try {
+			int count;
+			while (position < length && (count = stream.read(bytes, position, length - position)) != -1) {
+				position += count;
+			}
+		} catch (IOException e) {
+			Log.e(LCAT, "Unable to read appended data: " + e.getMessage(), e);
+		} finally {
+			try {
+				stream.close();
+			} catch (IOException e) {
+				Log.w(LCAT, e.getMessage(), e);
+			}
+		}
+
+		if (position < length) {
+			// a file segment was shorter than when it was appended
+			byte[] shortened = new byte[position];
+			System.arraycopy(bytes, 0, shortened, 0, position);
+			bytes = shortened;
+		}
+
+		data = bytes;
+		dataOwned = true;
+		segments = null;
+		tail = null;
+		tailLength = 0;
+		segmentsLength = 0;
+	}
+
+	private static int getFileLength(TiBaseFile file)
+	{
+		long fileSize;
+		if (file instanceof TitaniumBlob) {
+			fileSize = ((TitaniumBlob) file).getFile().length();
+		} else {
+			fileSize = file.size();
 		}
+		return (int) fileSize;
 	}
 
 	@Kroll.getProperty @Kroll.method
@@ -309,11 +509,13 @@ public class TiBlob extends KrollProxy
 	}
 
 	/**
-	 * @return the blob's data.
+	 * @return the blob's data. For a data or image blob with appended data, the appended
+	 * segments are concatenated first.
 	 * @module.api
 	 */
-	public Object getData()
+	public synchronized Object getData()
 	{
+		flatten();
 		return data;
 	}
 
@@ -404,4 +606,89 @@ public class TiBlob extends KrollProxy
 	{
 		return new String(Base64.encodeBase64(getBytes()));
 	}
+
+	/**
+	 * Reads a list of byte[] and TiBaseFile segments in order. File streams are opened when
+	 * they are reached and closed when they are exhausted.
+	 */
+	private static class SegmentInputStream extends InputStream
+	{
+		private final ArrayList<Object> segments;
+		private int index = 0;
+		private InputStream current;
+
+		SegmentInputStream(ArrayList<Object> segments)
+		{
+			this.segments = segments;
+		}
+
+		private InputStream nextStream() throws IOException
+		{
+			while (current == null) {
+				if (index == segments.size()) {
+					return null;
+				}
+				Object segment = segments.get(index);
+				segments.set(index++, null);
+				if (segment instanceof TiBaseFile) {
+					current = ((TiBaseFile) segment).getInputStream();
+				} else {
+					current = new ByteArrayInputStream((byte[]) segment);
+				}
+			}
+			return current;
+		}
+
+		@Override
+		public int read() throws IOException
+		{
+			InputStream stream;
+			while ((stream = nextStream()) != null) {
+				int b = stream.read();
+				if (b != -1) {
+					return b;
+				}
+				stream.close();
+				current = null;
+			}
+			return -1;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException
+		{
+			if (length == 0) {
+				return 0;
+			}
+
+			InputStream stream;
+			while ((stream = nextStream()) != null) {
+				int count = stream.read(buffer, offset, length);
+				if (count > 0) {
+					return count;
+				}
+				if (count == -1) {
+					stream.close();
+					current = null;
+				}
+			}
+			return -1;
+		}
+
+		@Override
+		public int available() throws IOException
+		{
+			return current == null ? 0 : current.available();
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			if (current != null) {
+				current.close();
+				current = null;
+			}
+			index = segments.size();
+		}
+	}
 }
@@ -9,6 +9,7 @@ package org.appcelerator.titanium.analytics;
 import java.util.HashMap;
 
 import org.appcelerator.kroll.common.Log;
+import org.appcelerator.kroll.common.TiConfig;
 import org.appcelerator.titanium.util.TiPlatformHelper;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -18,14 +19,64 @@ import android.database.Cursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
 
+/**
+ * Stores analytics events until TiAnalyticsService sends them.
+ *
+ * Events are queued in a fixed size ring buffer and written in batches on a background thread,
+ * one transaction per batch. The database connection is kept open for the life of the process,
+ * so there is a single instance shared by the application and the service, see {@link #getInstance(Context)}.
+ */
 public class TiAnalyticsModel extends SQLiteOpenHelper{
 
 	private static final String LCAT = "TiAnalyticsDb";
+	private static final boolean DBG = TiConfig.LOGD;
 
 	private static final String DB_NAME = "tianalytics.db";
 	private static final int DB_VERSION = 4;
 
+	private static final int MAX_PENDING_EVENTS = 128;
+	// write right away once this many events are waiting
+	private static final int FLUSH_THRESHOLD = 32;
+	private static final long FLUSH_DELAY = 1000;
+
+	private static TiAnalyticsModel instance;
+
+	// ring buffer of events waiting to be written
+	// guarded by pendingEvents
+	private final TiAnalyticsEvent[] pendingEvents = new TiAnalyticsEvent[MAX_PENDING_EVENTS];
+	private int pendingHead = 0;
+	private int pendingCount = 0;
+	private boolean flushScheduled = false;
+
+	private final Object flushLock = new Object();
+
+	// guarded by this
+	private Handler writeHandler;
+
+	private final Runnable flushRunnable = new Runnable() {
+		public void run()
+		{
+			flush();
+		}
+	};
+
+	/**
+	 * @param context any context, the application context is used.
+	 * @return the model shared by the whole process.
+	 */
+	public static synchronized TiAnalyticsModel getInstance(Context context)
+	{
+		if (instance == null) {
+			instance = new TiAnalyticsModel(context.getApplicationContext());
+		}
+		return instance;
+	}
+
 	public TiAnalyticsModel(Context context)
 	{
 		super(context, DB_NAME, null, DB_VERSION);
@@ -141,62 +192,160 @@ public class TiAnalyticsModel extends SQLiteOpenHelper{
 		db.execSQL(sql);
 	}
 
+	/**
+	 * Queues an event to be written. Events are kept in memory and written in a single transaction
+	 * on a background thread shortly after, so callers on the UI thread never wait on the disk.
+	 * @param event the event to store.
+	 */
 	public void addEvent(final TiAnalyticsEvent event)
 	{
-		SQLiteDatabase db = null;
+		boolean flushNow;
+		synchronized (pendingEvents) {
+			if (pendingCount == pendingEvents.length) {
+				// the writer is falling behind, drop the oldest event rather than grow
+				Log.w(LCAT, "Analytics event buffer is full, dropping oldest event");
+				pendingEvents[pendingHead] = null;
+				pendingHead = (pendingHead + 1) % pendingEvents.length;
+				pendingCount--;
+			}
+			pendingEvents[(pendingHead + pendingCount) % pendingEvents.length] = event;
+			pendingCount++;
+
+			flushNow = pendingCount >= FLUSH_THRESHOLD;
+			if (!flushNow && flushScheduled) {
+				return;
+			}
+			flushScheduled = true;
+		}
+
+		Handler handler = getWriteHandler();
+		handler.removeCallbacks(flushRunnable);
+		handler.postDelayed(flushRunnable, flushNow ? 0 : FLUSH_DELAY);
+	}
+
+	/**
+	 * Writes every queued event to the database on the calling thread.
+	 */
+	public void flush()
+	{
+		// keeps batches in the order they were queued when the service flushes too
+		synchronized (flushLock) {
+			writeEvents();
+		}
+	}
+
+	private void writeEvents()
+	{
+		TiAnalyticsEvent[] events;
+		synchronized (pendingEvents) {
+			flushScheduled = false;
+			if (pendingCount == 0) {
+				return;
+			}
+
+			events = new TiAnalyticsEvent[pendingCount];
+			for (int i = 0; i < pendingCount; i++) {
+				int index = (pendingHead + i) % pendingEvents.length;
+				events[i] = pendingEvents[index];
+				pendingEvents[index] = null;
+			}
+			pendingHead = 0;
+			pendingCount = 0;
+		}
+
+		SQLiteStatement insert = null;
 		try {
-			db = getWritableDatabase();
-			String sql =
-				"insert into Events(EventId, Type, Event, Timestamp, MID, SID, AppGUID, isJSON, Payload) values(?,?,?,?,?,?,?,?,?)"
-				;
-			Object[] args = {
-				TiPlatformHelper.createEventId(),
-				event.getEventType(),
-				event.getEventEvent(),
-				event.getEventTimestamp(),
-				event.getEventMid(),
-				event.getEventSid(),
-				event.getEventAppGuid(),
-				event.mustExpandPayload() ? 1 : 0,
-				event.getEventPayload()
-			};
-			db.execSQL(sql, args);
+			SQLiteDatabase db = getWritableDatabase();
+			insert = db.compileStatement(
+				"insert into Events(EventId, Type, Event, Timestamp, MID, SID, AppGUID, isJSON, Payload) values(?,?,?,?,?,?,?,?,?)");
+
+			db.beginTransaction();
+			try {
+				for (TiAnalyticsEvent event : events) {
+					bindString(insert, 1, TiPlatformHelper.createEventId());
+					bindString(insert, 2, event.getEventType());
+					bindString(insert, 3, event.getEventEvent());
+					bindString(insert, 4, event.getEventTimestamp());
+					bindString(insert, 5, event.getEventMid());
+					bindString(insert, 6, event.getEventSid());
+					bindString(insert, 7, event.getEventAppGuid());
+					insert.bindLong(8, event.mustExpandPayload() ? 1 : 0);
+					bindString(insert, 9, event.getEventPayload());
+					insert.executeInsert();
+				}
+				db.setTransactionSuccessful();
+
+			} finally {
+				db.endTransaction();
+			}
+
+			if (DBG) {
+				Log.d(LCAT, "Wrote " + events.length + " analytics events");
+			}
+
 		} catch (SQLException e) {
-			Log.e(LCAT, "Error adding event: " + e);
+			Log.e(LCAT, "Error adding events: " + e);
+
 		} finally {
-			if (db != null) {
-				db.close();
+			if (insert != null) {
+				insert.close();
 			}
 		}
 	}
 
+	private static void bindString(SQLiteStatement statement, int index, String value)
+	{
+		if (value == null) {
+			statement.bindNull(index);
+
+		} else {
+			statement.bindString(index, value);
+		}
+	}
+
+	private synchronized Handler getWriteHandler()
+	{
+		if (writeHandler == null) {
+			HandlerThread thread = new HandlerThread("TiAnalyticsWriter", Process.THREAD_PRIORITY_BACKGROUND);
+			thread.start();
+			writeHandler = new Handler(thread.getLooper());
+		}
+		return writeHandler;
+	}
+
 	public void deleteEvents(int records[])
 	{
 		if (records.length > 0) {
-			SQLiteDatabase db = null;
+			SQLiteStatement delete = null;
 			try {
-				db = getWritableDatabase();
-				StringBuilder sb = new StringBuilder(256);
-				sb.append("delete from Events where _id in (");
-				for (int i = 0; i < records.length; i++) {
-					if (i > 0) {
-						sb.append(",");
+				SQLiteDatabase db = getWritableDatabase();
+				delete = db.compileStatement("delete from Events where _id = ?");
+
+				db.beginTransaction();
+				try {
+					for (int record : records) {
+						delete.bindLong(1, record);
+						delete.execute();
 					}
-					sb.append(records[i]);
+					db.setTransactionSuccessful();
+
+				} finally {
+					db.endTransaction();
 				}
-				sb.append(")");
-				db.execSQL(sb.toString());
+
 			} catch (SQLException e) {
 				Log.e(LCAT, "Error deleting events :" + e);
+
 			} finally {
-				if (db != null) {
-					db.close();
+				if (delete != null) {
+					delete.close();
 				}
 			}
 		}
 	}
 
 	public boolean hasEvents() {
+		flush();
 		boolean result = false;
 
 		SQLiteDatabase db = null;
@@ -219,15 +368,13 @@ public class TiAnalyticsModel extends SQLiteOpenHelper{
 			if (c != null) {
 				c.close();
 			}
-			if (db != null) {
-				db.close();
-			}
 		}
 
 		return result;
 	}
 
 	public HashMap<Integer,JSONObject> getEventsAsJSON(int limit) {
+		flush();
 		HashMap<Integer, JSONObject> result = new HashMap<Integer,JSONObject>(limit);
 
 		SQLiteDatabase db = null;
@@ -272,9 +419,6 @@ public class TiAnalyticsModel extends SQLiteOpenHelper{
 			if (c != null) {
 				c.close();
 			}
-			if (db != null) {
-				db.close();
-			}
 		}
 
 		return result;
@@ -303,29 +447,30 @@ public class TiAnalyticsModel extends SQLiteOpenHelper{
 			if (c != null) {
 				c.close();
 			}
-			if (db != null) {
-				db.close();
-			}
 		}
 
 		return result;
 	}
 
+	/**
+	 * Records that the enroll event was sent. This is written on the background thread after
+	 * any events queued before it.
+	 */
 	public void markEnrolled() {
-		String sql =
-			"update Props set Value = '1' where Name = 'Enrolled'"
-			;
-
-		SQLiteDatabase db = null;
-		try {
-			db = getWritableDatabase();
-			db.execSQL(sql);
-		} catch (SQLException e) {
-			Log.e(LCAT, "Error marking enrolled :" + e);
-		} finally {
-			if (db != null) {
-				db.close();
+		getWriteHandler().post(new Runnable() {
+			public void run()
+			{
+				flush();
+				String sql =
+					"update Props set Value = '1' where Name = 'Enrolled'"
+					;
+
+				try {
+					getWritableDatabase().execSQL(sql);
+				} catch (SQLException e) {
+					Log.e(LCAT, "Error marking enrolled :" + e);
+				}
 			}
-		}
+		});
 	}
 }
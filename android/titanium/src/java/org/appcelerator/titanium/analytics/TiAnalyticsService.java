@@ -6,20 +6,36 @@
  */
 package org.appcelerator.titanium.analytics;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
 
+import org.apache.http.HttpEntity;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.HttpResponseException;
 import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.BasicResponseHandler;
 import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
 import org.apache.http.params.BasicHttpParams;
 import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.params.HttpParams;
 import org.appcelerator.kroll.common.Log;
+import org.appcelerator.titanium.TiApplication;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
@@ -30,6 +46,14 @@ import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
 import android.os.IBinder;
 
+/**
+ * Sends stored analytics events in batches.
+ *
+ * Sends run on a single background thread shared by every start of the service, and post through
+ * one pooled HTTP client so connections to the analytics server are reused. Batches are gzip
+ * compressed unless the ti.analytics.compress property is false. A failed post is retried with
+ * exponential backoff before the remaining events are left for the next send.
+ */
 public class TiAnalyticsService extends Service
 {
 	private final static String LCAT = "TiAnalyticsSvc";
@@ -39,15 +63,21 @@ public class TiAnalyticsService extends Service
 	private final static int BUCKET_SIZE_SLOW_NETWORK = 5;
 
 	private final static String ANALYTICS_URL = "https://api.appcelerator.net/p/v2/mobile-track";
+	private final static String PROPERTY_COMPRESS = "ti.analytics.compress";
+
+	private final static int CONNECTION_TIMEOUT = 5000;
+	private final static int MAX_CONNECTIONS = 2;
+	private final static int MAX_ATTEMPTS = 4;
+	private final static long INITIAL_RETRY_DELAY = 1000;
 
-	private static AtomicBoolean sending;
+	private static AtomicBoolean sending = new AtomicBoolean(false);
+
+	private static ExecutorService sendExecutor;
+	private static HttpClient httpClient;
 
 	private ConnectivityManager connectivityManager;
-	public TiAnalyticsService() {
-		if (sending == null) {
-			this.sending = new AtomicBoolean(false);
-		}
-	}
+	// The most recent start, stopped by the send running when it arrived if it didn't start its own
+	private volatile int latestStartId;
 
 	@Override
 	public void onCreate()
@@ -65,16 +95,19 @@ public class TiAnalyticsService extends Service
 	}
 
 	@Override
-	public void onStart(Intent intent, final int startId) {
+	public void onStart(Intent intent, int startId) {
 		super.onStart(intent, startId);
 
+		// set before checking whether a send is running, so the running send sees it when it stops
+		latestStartId = startId;
 		if (!sending.compareAndSet(false, true)) {
 			Log.i(LCAT, "Send already in progress, skipping intent");
+			return;
 		}
 
 		final TiAnalyticsService self = this;
 
-		Thread t = new Thread(new Runnable(){
+		getSendExecutor().execute(new Runnable(){
 
 			public void run() {
 				Log.w(LCAT, "Analytics Service Started");
@@ -82,13 +115,11 @@ public class TiAnalyticsService extends Service
 
 					if (connectivityManager == null) {
 						Log.w(LCAT, "Connectivity manager not available.");
-						stopSelf(startId);
 						return;
 					}
-					TiAnalyticsModel model = new TiAnalyticsModel(self);
+					TiAnalyticsModel model = TiAnalyticsModel.getInstance(self);
 					if (!model.hasEvents()) {
 						Log.i(LCAT, "No events to send.");
-						stopSelf(startId);
 						return;
 					}
 
@@ -110,41 +141,14 @@ public class TiAnalyticsService extends Service
 								eventIds[i] = id;
 								records.put(events.get(id));
 							}
-							boolean deleteEvents = true;
 							if (records.length() > 0) {
-								String jsonData = records.toString() + "\n";
-
 								Log.i(LCAT, "Sending " + records.length() + " analytics events.");
-						   		try {
-							   		HttpPost httpPost = new HttpPost(ANALYTICS_URL);
-							   		StringEntity entity = new StringEntity(jsonData);
-							   		entity.setContentType("text/json");
-							   		httpPost.setEntity(entity);
-
-							   		HttpParams httpParams = new BasicHttpParams();
-							   		HttpConnectionParams.setConnectionTimeout(httpParams, 5000); //TODO use property
-							   		//HttpConnectionParams.setSoTimeout(httpParams, 15000); //TODO use property
-							   		HttpClient client = new DefaultHttpClient(httpParams);
-
-							   		ResponseHandler<String> responseHandler = new BasicResponseHandler();
-							   		client.getParams().setBooleanParameter("http.protocol.expect-continue", false);
-
-						   			@SuppressWarnings("unused")
-									String response = client.execute(httpPost, responseHandler);
-						   		} catch (Throwable t) {
-						   			Log.e(LCAT, "Error posting events: " + t.getMessage(), t);
-						   			deleteEvents = false;
-						   			records = null;
-						   			break;
-						   		}
-							}
-
-							records = null;
-
-							if (deleteEvents) {
-								model.deleteEvents(eventIds);
+								if (!post(records.toString() + "\n")) {
+									break;
+								}
 							}
 
+							model.deleteEvents(eventIds);
 							events.clear();
 						} else {
 							Log.i(LCAT, "Network unavailable, can't send analytics");
@@ -154,19 +158,122 @@ public class TiAnalyticsService extends Service
 					}
 
 					Log.w(LCAT, "Stopping Analytics Service");
-					stopSelf(startId);
 				} catch (Throwable t) {
 					Log.e(LCAT, "Unhandle exception in analytics thread: ", t);
-					stopSelf(startId);
 				} finally {
 					if (!sending.compareAndSet(true, false)) {
 						Log.w(LCAT, "Expected to be in a sending state. Sending was already false.");
 					}
+					// Starts skipped while this send ran are covered by it, so stop the latest one.
+					// A start arriving from here on runs its own send and stops itself.
+					stopSelf(latestStartId);
 				}
 			}
 		});
-		t.setPriority(Thread.MIN_PRIORITY);
-		t.start();
+	}
+
+	/**
+	 * Posts a batch of events, retrying with exponential backoff while the network is available.
+	 * @return whether the batch was accepted.
+	 */
+	private boolean post(String jsonData)
+	{
+		long retryDelay = INITIAL_RETRY_DELAY;
+		for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+			try {
+				HttpPost httpPost = new HttpPost(ANALYTICS_URL);
+				httpPost.setEntity(createEntity(jsonData));
+
+				ResponseHandler<String> responseHandler = new BasicResponseHandler();
+				@SuppressWarnings("unused")
+				String response = getHttpClient().execute(httpPost, responseHandler);
+				return true;
+
+			} catch (HttpResponseException e) {
+				int status = e.getStatusCode();
+				if (status < 500) {
+					// the server won't take this batch no matter how often it is sent
+					Log.e(LCAT, "Error posting events, status " + status + ": " + e.getMessage());
+					return false;
+				}
+				Log.w(LCAT, "Error posting events, status " + status + ", attempt " + attempt);
+
+			} catch (IOException e) {
+				Log.w(LCAT, "Error posting events, attempt " + attempt + ": " + e.getMessage());
+
+			} catch (Throwable t) {
+				Log.e(LCAT, "Error posting events: " + t.getMessage(), t);
+				return false;
+			}
+
+			if (attempt == MAX_ATTEMPTS || !canSend()) {
+				break;
+			}
+
+			try {
+				Thread.sleep(retryDelay);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+			retryDelay *= 2;
+		}
+
+		return false;
+	}
+
+	private HttpEntity createEntity(String jsonData) throws IOException
+	{
+		TiApplication app = TiApplication.getInstance();
+		boolean compress = app == null || app.getSystemProperties().getBool(PROPERTY_COMPRESS, true);
+		if (!compress) {
+			StringEntity entity = new StringEntity(jsonData);
+			entity.setContentType("text/json");
+			return entity;
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(jsonData.length() / 4);
+		GZIPOutputStream gzip = new GZIPOutputStream(bytes);
+		gzip.write(jsonData.getBytes("UTF-8"));
+		gzip.close();
+
+		ByteArrayEntity entity = new ByteArrayEntity(bytes.toByteArray());
+		entity.setContentType("text/json");
+		entity.setContentEncoding("gzip");
+		return entity;
+	}
+
+	private static synchronized ExecutorService getSendExecutor()
+	{
+		if (sendExecutor == null) {
+			sendExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable runnable)
+				{
+					Thread thread = new Thread(runnable, LCAT);
+					thread.setPriority(Thread.MIN_PRIORITY);
+					return thread;
+				}
+			});
+		}
+		return sendExecutor;
+	}
+
+	private static synchronized HttpClient getHttpClient()
+	{
+		if (httpClient == null) {
+			HttpParams httpParams = new BasicHttpParams();
+			HttpConnectionParams.setConnectionTimeout(httpParams, CONNECTION_TIMEOUT); //TODO use property
+			//HttpConnectionParams.setSoTimeout(httpParams, 15000); //TODO use property
+			ConnManagerParams.setMaxTotalConnections(httpParams, MAX_CONNECTIONS);
+			httpParams.setBooleanParameter("http.protocol.expect-continue", false);
+
+			SchemeRegistry registry = new SchemeRegistry();
+			registry.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), 80));
+			registry.register(new Scheme("https", SSLSocketFactory.getSocketFactory(), 443));
+
+			httpClient = new DefaultHttpClient(new ThreadSafeClientConnManager(httpParams, registry), httpParams);
+		}
+		return httpClient;
 	}
 
 	private boolean canSend() {
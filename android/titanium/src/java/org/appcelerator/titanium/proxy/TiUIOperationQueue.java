@@ -0,0 +1,235 @@
+/**
+ * Appcelerator Titanium Mobile
+ * Copyright (c) 2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Apache Public License
+ * Please see the LICENSE included with this distribution for details.
+ */
+package org.appcelerator.titanium.proxy;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.appcelerator.kroll.common.AsyncResult;
+import org.appcelerator.kroll.common.Log;
+import org.appcelerator.kroll.common.TiConfig;
+import org.appcelerator.kroll.common.TiMessenger;
+import org.appcelerator.titanium.TiApplication;
+
+import android.os.Handler;
+import android.os.Message;
+
+/**
+ * Collects view operations (add, remove, layout updates) issued from the KrollRuntime thread
+ * and delivers them to the main thread as a single transaction, instead of one blocking round trip
+ * per operation.
+ *
+ * Batching is enabled in the application's <code>tiapp.xml</code> with the
+ * <code>ti.android.batchUIOperations</code> property. Pending operations are flushed once per frame,
+ * when {@link TiViewProxy#finishLayout()} is called, or explicitly through {@link #flush()}.
+ * Any operation that needs a result from the main thread (view creation, size queries, etc)
+ * flushes first so that ordering is preserved.
+ */
+public class TiUIOperationQueue implements Handler.Callback
+{
+	private static final String LCAT = "TiUIOperationQueue";
+	private static final boolean DBG = TiConfig.LOGD;
+
+	private static final int MSG_FLUSH = 100;
+	private static final long FRAME_INTERVAL = 16;
+
+	public static final String PROPERTY_BATCH_UI_OPERATIONS = "ti.android.batchUIOperations";
+
+	private static TiUIOperationQueue instance;
+
+	private ArrayList<Runnable> pendingOperations = new ArrayList<Runnable>();
+	private boolean flushScheduled = false;
+	private Boolean enabled;
+	private Handler mainHandler;
+
+	private AtomicLong operationCount = new AtomicLong();
+	private AtomicLong transactionCount = new AtomicLong();
+
+	private Runnable scheduledFlush = new Runnable() {
+		public void run()
+		{
+			synchronized (TiUIOperationQueue.this) {
+				flushScheduled = false;
+			}
+			flush(false);
+		}
+	};
+
+	public static synchronized TiUIOperationQueue getInstance()
+	{
+		if (instance == null) {
+			instance = new TiUIOperationQueue();
+		}
+
+		return instance;
+	}
+
+	private TiUIOperationQueue()
+	{
+	}
+
+	/**
+	 * @return true if view operations issued off the main thread should be batched.
+	 */
+	public boolean isEnabled()
+	{
+		if (enabled == null) {
+			TiApplication app = TiApplication.getInstance();
+			enabled = app != null && app.getSystemProperties().getBool(PROPERTY_BATCH_UI_OPERATIONS, false);
+		}
+
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled)
+	{
+		if (!enabled) {
+			flush();
+		}
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Queues an operation to run on the main thread with the next transaction. If batching is disabled
+	 * or the caller is already on the main thread, the operation runs immediately.
+	 * @param operation the operation to run.
+	 */
+	public void enqueue(Runnable operation)
+	{
+		if (TiApplication.isUIThread()) {
+			flush();
+			operation.run();
+			return;
+		}
+
+		boolean schedule = false;
+		synchronized (this) {
+			pendingOperations.add(operation);
+			if (!flushScheduled) {
+				flushScheduled = true;
+				schedule = true;
+			}
+		}
+
+		if (schedule) {
+			TiMessenger runtimeMessenger = TiMessenger.getRuntimeMessenger();
+			if (runtimeMessenger != null) {
+				runtimeMessenger.getHandler().postDelayed(scheduledFlush, FRAME_INTERVAL);
+
+			} else {
+				scheduledFlush.run();
+			}
+		}
+	}
+
+	/**
+	 * @return true if there are queued operations that have not been sent to the main thread.
+	 */
+	public synchronized boolean hasPendingOperations()
+	{
+		return !pendingOperations.isEmpty();
+	}
+
+	/**
+	 * Sends all pending operations to the main thread as one transaction and waits for them to complete.
+	 * Callers that need the result of previously queued operations should call this first.
+	 */
+	public void flush()
+	{
+		flush(true);
+	}
+
+	/**
+	 * Sends all pending operations to the main thread as one transaction.
+	 * @param wait whether to block until the main thread has run the transaction.
+	 */
+	public void flush(boolean wait)
+	{
+		ArrayList<Runnable> operations;
+		synchronized (this) {
+			if (pendingOperations.isEmpty()) {
+				return;
+			}
+
+			operations = pendingOperations;
+			pendingOperations = new ArrayList<Runnable>();
+		}
+
+		operationCount.addAndGet(operations.size());
+		transactionCount.incrementAndGet();
+
+		if (DBG) {
+			Log.d(LCAT, "flushing " + operations.size() + " operations to the main thread");
+		}
+
+		if (TiApplication.isUIThread()) {
+			runOperations(operations);
+
+		} else if (wait) {
+			TiMessenger.sendBlockingMainMessage(getMainHandler().obtainMessage(MSG_FLUSH), operations);
+
+		} else {
+			getMainHandler().obtainMessage(MSG_FLUSH, operations).sendToTarget();
+		}
+	}
+
+	/**
+	 * @return the number of operations delivered to the main thread so far.
+	 */
+	public long getOperationCount()
+	{
+		return operationCount.get();
+	}
+
+	/**
+	 * @return the number of transactions (main thread messages) used to deliver operations so far.
+	 */
+	public long getTransactionCount()
+	{
+		return transactionCount.get();
+	}
+
+	private Handler getMainHandler()
+	{
+		if (mainHandler == null) {
+			mainHandler = new Handler(TiMessenger.getMainMessenger().getLooper(), this);
+		}
+
+		return mainHandler;
+	}
+
+	private void runOperations(ArrayList<Runnable> operations)
+	{
+		for (Runnable operation : operations) {
+			try {
+				operation.run();
+
+			} catch (Throwable t) {
+				Log.e(LCAT, "error running queued UI operation", t);
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	public boolean handleMessage(Message msg)
+	{
+		if (msg.what == MSG_FLUSH) {
+			if (msg.obj instanceof AsyncResult) {
+				AsyncResult result = (AsyncResult) msg.obj;
+				runOperations((ArrayList<Runnable>) result.getArg());
+				result.setResult(null);
+
+			} else {
+				runOperations((ArrayList<Runnable>) msg.obj);
+			}
+
+			return true;
+		}
+
+		return false;
+	}
+}
@@ -12,7 +12,10 @@ import java.util.ArrayList;
 import java.util.ConcurrentModificationException;
 import java.util.HashMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.appcelerator.kroll.KrollDict;
 import org.appcelerator.kroll.KrollFunction;
@@ -79,10 +82,14 @@ public abstract class TiViewProxy extends KrollProxy implements Handler.Callback
 	private static final int MSG_GETRECT = MSG_FIRST_ID + 111;
 	private static final int MSG_FINISH_LAYOUT = MSG_FIRST_ID + 112;
 	private static final int MSG_UPDATE_LAYOUT = MSG_FIRST_ID + 113;
+	private static final int MSG_FIRE_BUBBLED_EVENT = MSG_FIRST_ID + 114;
 
 	protected static final int MSG_LAST_ID = MSG_FIRST_ID + 999;
 
-	protected ArrayList<TiViewProxy> children;
+	// Replaced with an updated copy rather than modified, so the runtime thread can add and remove
+	// children while the UI thread iterates them. Writes are guarded by childrenLock.
+	protected volatile ArrayList<TiViewProxy> children;
+	private final Object childrenLock = new Object();
 	protected WeakReference<TiViewProxy> parent;
 
 	protected TiUIView view;
@@ -91,6 +98,76 @@ public abstract class TiViewProxy extends KrollProxy implements Handler.Callback
 	private KrollDict langConversionTable;
 	private boolean isDecorView = false;
 	private AtomicBoolean layoutStarted = new AtomicBoolean();
+
+	private static AtomicLong bubbledEventCount = new AtomicLong();
+	private static AtomicLong bubbledEventMessageCount = new AtomicLong();
+	private static AtomicLong bubbledEventDispatchCount = new AtomicLong();
+	private static AtomicLong bubbledEventAllocationCount = new AtomicLong();
+
+	// Each event type gets one bit in the listener flags, up to 64 types
+	private static final int MAX_LISTENER_EVENT_BITS = 64;
+	private static final ConcurrentHashMap<String, Long> listenerEventBits = new ConcurrentHashMap<String, Long>();
+	// Bumped whenever a listener flag or a parent changes, invalidating every cached hierarchy flag
+	private static final AtomicInteger listenerGeneration = new AtomicInteger();
+
+	private volatile long listenerBits = 0;
+	private volatile HierarchyListenerFlags hierarchyListenerFlags;
+
+	/**
+	 * The listener flags of a proxy and all of its ancestors, valid for one listener generation.
+	 */
+	private static class HierarchyListenerFlags
+	{
+		final long bits;
+		final int generation;
+
+		HierarchyListenerFlags(long bits, int generation)
+		{
+			this.bits = bits;
+			this.generation = generation;
+		}
+	}
+
+	/**
+	 * An event on its way up the view hierarchy, holding only the proxies that listen for it.
+	 */
+	private static class BubbledEvent
+	{
+		private String name;
+		private ArrayList<TiViewProxy> targets = new ArrayList<TiViewProxy>(2);
+		private ArrayList<Object> data = new ArrayList<Object>(2);
+		private Object originalData;
+		private boolean handled = false;
+		private boolean hasJavaListeners = false;
+
+		BubbledEvent(String name, Object originalData)
+		{
+			this.name = name;
+			this.originalData = originalData;
+		}
+
+		void add(TiViewProxy target, Object targetData, boolean hasListeners, boolean hasJavaListeners)
+		{
+			targets.add(target);
+			data.add(targetData);
+			this.handled = this.handled || hasListeners;
+			this.hasJavaListeners = this.hasJavaListeners || hasJavaListeners;
+		}
+
+		void dispatch()
+		{
+			int size = targets.size();
+			for (int i = 0; i < size; i++) {
+				targets.get(i).doFireEvent(name, data.get(i));
+			}
+			bubbledEventDispatchCount.addAndGet(size);
+
+			// Java callbacks may hold on to the data, JS has its own copy by now
+			if (!hasJavaListeners) {
+				TiUIView.recycleEventData(originalData);
+			}
+		}
+	}
 	
 	/**
 	 * Constructs a new TiViewProxy instance.
@@ -393,6 +470,10 @@ public abstract class TiViewProxy extends KrollProxy implements Handler.Callback
 				handleUpdateLayout((HashMap) msg.obj);
 				return true;
 			}
+			case MSG_FIRE_BUBBLED_EVENT : {
+				((BubbledEvent) msg.obj).dispatch();
+				return true;
+			}
 		}
 		return super.handleMessage(msg);
 	}
@@ -407,12 +488,14 @@ public abstract class TiViewProxy extends KrollProxy implements Handler.Callback
 	@Kroll.getProperty @Kroll.method
 	public KrollDict getRect()
 	{
+		flushPendingOperations(true);
 		return (KrollDict) TiMessenger.sendBlockingMainMessage(getMainHandler().obtainMessage(MSG_GETRECT), getActivity());
 	}
 
 	@Kroll.getProperty @Kroll.method
 	public KrollDict getSize()
 	{
+		flushPendingOperations(true);
 		return (KrollDict) TiMessenger.sendBlockingMainMessage(getMainHandler().obtainMessage(MSG_GETSIZE), getActivity());
 	}
 
@@ -502,6 +585,7 @@ public abstract class TiViewProxy extends KrollProxy implements Handler.Callback
 			return handleGetView();
 		}
 
+		flushPendingOperations(true);
 		return (TiUIView) TiMessenger.sendBlockingMainMessage(getMainHandler().obtainMessage(MSG_GETVIEW), 0);
 	}
 	
@@ -533,6 +617,7 @@ public abstract class TiViewProxy extends KrollProxy implements Handler.Callback
 
 		// Use a copy so bundle can be modified as it passes up the inheritance
 		// tree. Allows defaults to be added and keys removed.
+		ArrayList<TiViewProxy> children = this.children;
 		if (children != null) {
 			try {
 				for (TiViewProxy p : children) {
@@ -554,6 +639,7 @@ public abstract class TiViewProxy extends KrollProxy implements Handler.Callback
 	public void releaseViews()
 	{
 		if (view != null) {
+			ArrayList<TiViewProxy> children = this.children;
 			if  (children != null) {
 				for (TiViewProxy p : children) {
 					p.releaseViews();
@@ -580,36 +666,75 @@ public abstract class TiViewProxy extends KrollProxy implements Handler.Callback
 	 * @module.api
 	 */
 	@Kroll.method
-	public void add(TiViewProxy child)
+	public void add(final TiViewProxy child)
 	{
 		if (child == null) {
 			Log.w(LCAT, "add called with null child");
 			return;
 		}
 
-		if (children == null) {
-			children = new ArrayList<TiViewProxy>();
-		}
-
 		if (peekView() != null) {
 			if (TiApplication.isUIThread()) {
 				handleAdd(child);
 				return;
 			}
 
+			TiUIOperationQueue operationQueue = TiUIOperationQueue.getInstance();
+			if (operationQueue.isEnabled()) {
+				// update the model now so getParent(), bubbling and children see the child right away,
+				// and only queue the native view work
+				addToChildren(child);
+				child.setParent(this);
+				operationQueue.enqueue(new Runnable() {
+					public void run()
+					{
+						addChildView(child);
+					}
+				});
+				return;
+			}
+
 			TiMessenger.sendBlockingMainMessage(getMainHandler().obtainMessage(MSG_ADD_CHILD), child);
 
 		} else {
-			children.add(child);
-			child.parent = new WeakReference<TiViewProxy>(this);
+			addToChildren(child);
+			child.setParent(this);
 		}
 		//TODO zOrder
 	}
 
 	public void handleAdd(TiViewProxy child)
 	{
-		children.add(child);
-		child.parent = new WeakReference<TiViewProxy>(this);
+		addToChildren(child);
+		child.setParent(this);
+		addChildView(child);
+	}
+
+	private void addToChildren(TiViewProxy child)
+	{
+		synchronized (childrenLock) {
+			ArrayList<TiViewProxy> updated = children == null ? new ArrayList<TiViewProxy>()
+				: new ArrayList<TiViewProxy>(children);
+			updated.add(child);
+			children = updated;
+		}
+	}
+
+	private boolean removeFromChildren(TiViewProxy child)
+	{
+		synchronized (childrenLock) {
+			if (children == null || !children.contains(child)) {
+				return false;
+			}
+			ArrayList<TiViewProxy> updated = new ArrayList<TiViewProxy>(children);
+			updated.remove(child);
+			children = updated;
+			return true;
+		}
+	}
+
+	private void addChildView(TiViewProxy child)
+	{
 		if (view != null) {
 			child.setActivity(getActivity());
 			if (this instanceof DecorViewProxy) {
@@ -627,7 +752,7 @@ public abstract class TiViewProxy extends KrollProxy implements Handler.Callback
 	 * @module.api
 	 */
 	@Kroll.method
-	public void remove(TiViewProxy child)
+	public void remove(final TiViewProxy child)
 	{
 		if (child == null) {
 			Log.w(LCAT, "add called with null child");
@@ -641,13 +766,24 @@ public abstract class TiViewProxy extends KrollProxy implements Handler.Callback
 				return;
 			}
 
+			TiUIOperationQueue operationQueue = TiUIOperationQueue.getInstance();
+			if (operationQueue.isEnabled()) {
+				removeFromChildren(child);
+				operationQueue.enqueue(new Runnable() {
+					public void run()
+					{
+						removeChildView(child);
+					}
+				});
+				return;
+			}
+
 			TiMessenger.sendBlockingMainMessage(getMainHandler().obtainMessage(MSG_REMOVE_CHILD), child);
 
 		} else {
-			if (children != null) {
-				children.remove(child);
+			if (removeFromChildren(child)) {
 				if (child.parent != null && child.parent.get() == this) {
-					child.parent = null;
+					child.setParent(null);
 				}
 			}
 		}
@@ -656,14 +792,17 @@ public abstract class TiViewProxy extends KrollProxy implements Handler.Callback
 	public void handleRemove(TiViewProxy child)
 	{
 		if (children != null) {
-			children.remove(child);
-			if (view != null) {
-				view.remove(child.peekView());
-			}
-			if (child != null) {
-				child.releaseViews();
-			}
+			removeFromChildren(child);
+			removeChildView(child);
+		}
+	}
+
+	private void removeChildView(TiViewProxy child)
+	{
+		if (view != null) {
+			view.remove(child.peekView());
 		}
+		child.releaseViews();
 	}
 
 	@Kroll.method
@@ -672,6 +811,7 @@ public abstract class TiViewProxy extends KrollProxy implements Handler.Callback
 		if (TiApplication.isUIThread()) {
 			handleShow(options);
 		} else {
+			flushPendingOperations(false);
 			getMainHandler().obtainMessage(MSG_SHOW, options).sendToTarget();
 		}
 	}
@@ -690,6 +830,7 @@ public abstract class TiViewProxy extends KrollProxy implements Handler.Callback
 		if (TiApplication.isUIThread()) {
 			handleHide(options);
 		} else {
+			flushPendingOperations(false);
 			getMainHandler().obtainMessage(MSG_HIDE, options).sendToTarget();
 		}
 
@@ -735,6 +876,7 @@ public abstract class TiViewProxy extends KrollProxy implements Handler.Callback
 	{
 		if (pendingAnimation != null && peekView() != null) {
 			if (forceQueue || !(TiApplication.isUIThread())) {
+				flushPendingOperations(false);
 				getMainHandler().obtainMessage(MSG_ANIMATE).sendToTarget();
 			} else {
 				handleAnimate();
@@ -757,6 +899,7 @@ public abstract class TiViewProxy extends KrollProxy implements Handler.Callback
 		if (TiApplication.isUIThread()) {
 			handleBlur();
 		} else {
+			flushPendingOperations(false);
 			getMainHandler().sendEmptyMessage(MSG_BLUR);
 		}
 	}
@@ -774,6 +917,7 @@ public abstract class TiViewProxy extends KrollProxy implements Handler.Callback
 		if (TiApplication.isUIThread()) {
 			handleFocus();
 		} else {
+			flushPendingOperations(false);
 			getMainHandler().sendEmptyMessage(MSG_FOCUS);
 		}
 	}
@@ -792,6 +936,7 @@ public abstract class TiViewProxy extends KrollProxy implements Handler.Callback
 			return handleToImage();
 
 		} else {
+			flushPendingOperations(true);
 			return (KrollDict) TiMessenger.sendBlockingMainMessage(getMainHandler().obtainMessage(MSG_TOIMAGE), getActivity());
 		}
 	}
@@ -806,22 +951,104 @@ public abstract class TiViewProxy extends KrollProxy implements Handler.Callback
 		return view.toImage();
 	}
 
+	/**
+	 * Fires an event on this proxy and bubbles it up to its ancestors. The ancestor chain is walked
+	 * once here, and a single runtime thread message then delivers the event to only those proxies
+	 * that have listeners for it. No message is sent when nobody in the hierarchy is listening.
+	 * @param eventName the event to be fired.
+	 * @param data the data to be sent.
+	 * @return whether this proxy or any of its ancestors has an event listener for this event.
+	 */
 	@Override
+	@SuppressWarnings({ "rawtypes", "unchecked" })
 	public boolean fireEvent(String eventName, Object data)
 	{
 		if (data == null) {
 			data = new KrollDict();
 		}
 
-		boolean handled = super.fireEvent(eventName, data);
+		// Proxies without listeners are skipped, so the source can't be left to doFireEvent
+		if (data instanceof HashMap) {
+			HashMap<String, Object> dict = (HashMap) data;
+			if (dict.get(TiC.EVENT_PROPERTY_SOURCE) == null) {
+				dict.put(TiC.EVENT_PROPERTY_SOURCE, this);
+			}
+		}
+
+		bubbledEventCount.incrementAndGet();
+
+		Object originalData = data;
+		BubbledEvent event = null;
+		for (TiViewProxy proxy = this; proxy != null; proxy = proxy.getParent()) {
+			data = proxy.prepareEventData(eventName, data);
 
-		TiViewProxy parentView = getParent();
-		if (parentView != null) {
-			boolean parentHandled = parentView.fireEvent(eventName, data);
-			handled = handled || parentHandled;
+			boolean hasListeners = proxy.hasListeners(eventName);
+			boolean hasJavaListeners = proxy.hasJavaListeners(eventName);
+			if (hasListeners || hasJavaListeners) {
+				if (event == null) {
+					event = new BubbledEvent(eventName, originalData);
+					bubbledEventAllocationCount.incrementAndGet();
+				}
+				event.add(proxy, data, hasListeners, hasJavaListeners);
+			}
+		}
+
+		if (event == null) {
+			// nobody will see the data
+			TiUIView.recycleEventData(originalData);
+			return false;
 		}
 
-		return handled;
+		bubbledEventMessageCount.incrementAndGet();
+		getRuntimeHandler().obtainMessage(MSG_FIRE_BUBBLED_EVENT, event).sendToTarget();
+
+		return event.handled;
+	}
+
+	/**
+	 * Called for this proxy and each of its ancestors while an event bubbles, whether or not the
+	 * proxy listens for the event. Subclasses can return different data for themselves and the
+	 * ancestors above them. The data may already be in use by the runtime thread, so it should be
+	 * copied rather than modified.
+	 * @param eventName the event being fired.
+	 * @param data the data the event was fired with.
+	 * @return the data to deliver to this proxy and its ancestors.
+	 */
+	protected Object prepareEventData(String eventName, Object data)
+	{
+		return data;
+	}
+
+	/**
+	 * @return the number of events fired through {@link #fireEvent(String, Object)} on view proxies.
+	 */
+	public static long getBubbledEventCount()
+	{
+		return bubbledEventCount.get();
+	}
+
+	/**
+	 * @return the number of runtime thread messages used to deliver bubbled events.
+	 */
+	public static long getBubbledEventMessageCount()
+	{
+		return bubbledEventMessageCount.get();
+	}
+
+	/**
+	 * @return the number of proxies bubbled events were delivered to.
+	 */
+	public static long getBubbledEventDispatchCount()
+	{
+		return bubbledEventDispatchCount.get();
+	}
+
+	/**
+	 * @return the number of objects allocated to carry bubbled events to the runtime thread.
+	 */
+	public static long getBubbledEventAllocationCount()
+	{
+		return bubbledEventAllocationCount.get();
 	}
 
 	/**
@@ -840,13 +1067,15 @@ public abstract class TiViewProxy extends KrollProxy implements Handler.Callback
 
 	public void setParent(TiViewProxy parent)
 	{
-		this.parent = new WeakReference<TiViewProxy>(parent);
+		this.parent = parent == null ? null : new WeakReference<TiViewProxy>(parent);
+		listenerGeneration.incrementAndGet();
 	}
 
 	@Override
 	public void setActivity(Activity activity)
 	{
 		super.setActivity(activity);
+		ArrayList<TiViewProxy> children = this.children;
 		if (children != null) {
 			for (TiViewProxy child : children) {
 				child.setActivity(activity);
@@ -861,6 +1090,7 @@ public abstract class TiViewProxy extends KrollProxy implements Handler.Callback
 	@Kroll.getProperty @Kroll.method
 	public TiViewProxy[] getChildren()
 	{
+		ArrayList<TiViewProxy> children = this.children;
 		if (children == null) return new TiViewProxy[0];
 		return children.toArray(new TiViewProxy[children.size()]);
 	}
@@ -889,10 +1119,35 @@ public abstract class TiViewProxy extends KrollProxy implements Handler.Callback
 		}
 	}
 
+	@Override
+	public void onHasListenersChanged(String event, boolean hasListeners)
+	{
+		long bit = getListenerEventBit(event);
+		if (bit != 0) {
+			// only ever changed on the runtime thread
+			listenerBits = hasListeners ? (listenerBits | bit) : (listenerBits & ~bit);
+			listenerGeneration.incrementAndGet();
+		}
+
+		super.onHasListenersChanged(event, hasListeners);
+	}
+
 	/**
 	 * Return true if any view in the hierarchy has the event listener.
+	 * This reads flags cached per proxy, so it doesn't walk the hierarchy unless a listener
+	 * or a parent has changed since the last call.
 	 */
 	public boolean hierarchyHasListener(String eventName)
+	{
+		long bit = getListenerEventBit(eventName);
+		if (bit == 0) {
+			return hierarchyHasListenerUncached(eventName);
+		}
+
+		return (getHierarchyListenerBits() & bit) != 0;
+	}
+
+	private boolean hierarchyHasListenerUncached(String eventName)
 	{
 		boolean hasListener = hasListeners(eventName);
 
@@ -900,7 +1155,7 @@ public abstract class TiViewProxy extends KrollProxy implements Handler.Callback
 		if (!hasListener) {
 			TiViewProxy parent = getParent();
 			if (parent != null) {
-				boolean parentHasListener = parent.hierarchyHasListener(eventName);
+				boolean parentHasListener = parent.hierarchyHasListenerUncached(eventName);
 				hasListener = hasListener || parentHasListener;
 				if (hasListener) {
 					return hasListener;
@@ -911,6 +1166,49 @@ public abstract class TiViewProxy extends KrollProxy implements Handler.Callback
 		return hasListener;
 	}
 
+	private long getHierarchyListenerBits()
+	{
+		int generation = listenerGeneration.get();
+		HierarchyListenerFlags flags = hierarchyListenerFlags;
+		if (flags != null && flags.generation == generation) {
+			return flags.bits;
+		}
+
+		long bits = listenerBits;
+		TiViewProxy parent = getParent();
+		if (parent != null) {
+			bits |= parent.getHierarchyListenerBits();
+		}
+		hierarchyListenerFlags = new HierarchyListenerFlags(bits, generation);
+
+		return bits;
+	}
+
+	/**
+	 * @return the bit for the event type in the listener flags, or 0 once all bits are taken.
+	 */
+	private static long getListenerEventBit(String eventName)
+	{
+		Long bit = listenerEventBits.get(eventName);
+		if (bit != null) {
+			return bit;
+		}
+
+		synchronized (listenerEventBits) {
+			bit = listenerEventBits.get(eventName);
+			if (bit == null) {
+				int size = listenerEventBits.size();
+				if (size >= MAX_LISTENER_EVENT_BITS) {
+					return 0;
+				}
+				bit = 1L << size;
+				listenerEventBits.put(eventName, bit);
+			}
+		}
+
+		return bit;
+	}
+
 	public void setClickable(boolean clickable)
 	{
 		TiUIView v = peekView();
@@ -1061,7 +1359,20 @@ public abstract class TiViewProxy extends KrollProxy implements Handler.Callback
 		if (TiApplication.isUIThread()) {
 			handleFinishLayout();
 		} else {
-			getMainHandler().sendEmptyMessage(MSG_FINISH_LAYOUT);
+			TiUIOperationQueue operationQueue = TiUIOperationQueue.getInstance();
+			if (operationQueue.isEnabled()) {
+				// deliver everything queued since startLayout() as one transaction
+				operationQueue.enqueue(new Runnable() {
+					public void run()
+					{
+						handleFinishLayout();
+					}
+				});
+				operationQueue.flush(false);
+
+			} else {
+				getMainHandler().sendEmptyMessage(MSG_FINISH_LAYOUT);
+			}
 		}
 		layoutStarted.set(false);
 	}
@@ -1069,7 +1380,7 @@ public abstract class TiViewProxy extends KrollProxy implements Handler.Callback
 	@Kroll.method
 	public void updateLayout(Object params)
 	{
-		HashMap<String, Object> paramsMap;
+		final HashMap<String, Object> paramsMap;
 
 		if (!(params instanceof HashMap)) {
 			Log.e(LCAT, "argument for updateLayout must be a dictionary");
@@ -1081,7 +1392,18 @@ public abstract class TiViewProxy extends KrollProxy implements Handler.Callback
 		if (TiApplication.isUIThread()) {
 			handleUpdateLayout(paramsMap);
 		} else {
-			getMainHandler().obtainMessage(MSG_UPDATE_LAYOUT, paramsMap).sendToTarget();
+			TiUIOperationQueue operationQueue = TiUIOperationQueue.getInstance();
+			if (operationQueue.isEnabled()) {
+				operationQueue.enqueue(new Runnable() {
+					public void run()
+					{
+						handleUpdateLayout(paramsMap);
+					}
+				});
+
+			} else {
+				getMainHandler().obtainMessage(MSG_UPDATE_LAYOUT, paramsMap).sendToTarget();
+			}
 		}
 		layoutStarted.set(false);
 	}
@@ -1104,6 +1426,19 @@ public abstract class TiViewProxy extends KrollProxy implements Handler.Callback
 		handleFinishLayout();
 	}
 
+	/**
+	 * Delivers any view operations batched by {@link TiUIOperationQueue} to the main thread so that
+	 * work sent after this call observes them.
+	 * @param wait whether to block until the main thread has applied the operations.
+	 */
+	protected void flushPendingOperations(boolean wait)
+	{
+		TiUIOperationQueue operationQueue = TiUIOperationQueue.getInstance();
+		if (operationQueue.hasPendingOperations()) {
+			operationQueue.flush(wait);
+		}
+	}
+
 	// This is used to check if the user has called startLayout(). We mainly use this to perform a check before running
 	// deprecated behavior. (i.e. performing layout when a property has changed, and the user didn't call startLayout)
 	public boolean isLayoutStarted()
@@ -0,0 +1,509 @@
+/**
+ * Appcelerator Titanium Mobile
+ * Copyright (c) 2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Apache Public License
+ * Please see the LICENSE included with this distribution for details.
+ */
+package org.appcelerator.titanium.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.appcelerator.kroll.KrollDict;
+import org.appcelerator.kroll.common.Log;
+import org.appcelerator.kroll.common.TiConfig;
+import org.appcelerator.kroll.util.TiTempFileHelper;
+import org.appcelerator.titanium.TiApplication;
+
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.CompressFormat;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+
+/**
+ * A two-tier cache of decoded bitmaps shared by image views, backgrounds and drawables.
+ *
+ * The first tier is an LRU of decoded bitmaps bounded by their size in memory. The second tier keeps
+ * downsampled copies on disk, so an image that has been scaled once can be decoded directly at its
+ * final size later, even after a restart. Limits are read from the application's <code>tiapp.xml</code>:
+ * <pre>
+ * &lt;property name="ti.android.bitmapcache.size.max" type="int"&gt;4096&lt;/property&gt;
+ * &lt;property name="ti.android.bitmapcache.disk.size.max" type="int"&gt;10240&lt;/property&gt;
+ * </pre>
+ * Both sizes are in KB. The memory tier defaults to an eighth of the heap.
+ *
+ * Bitmaps handed out by the cache may be displayed by several views at once and must never be recycled.
+ * Use {@link #isShared(Bitmap)} before recycling a bitmap.
+ */
+public class TiBitmapCache
+{
+	private static final String LCAT = "TiBitmapCache";
+	private static final boolean DBG = TiConfig.LOGD;
+
+	private static final String PROPERTY_MEMORY_SIZE = "ti.android.bitmapcache.size.max";
+	private static final String PROPERTY_DISK_SIZE = "ti.android.bitmapcache.disk.size.max";
+	private static final int DEFAULT_DISK_SIZE = 10 * 1024; // 10MB
+	private static final String DISK_CACHE_DIR = "bitmap-cache";
+	private static final String IMAGE_SUFFIX = ".img";
+	private static final String TEMP_SUFFIX = ".tmp";
+	private static final int JPEG_QUALITY = 90;
+
+	private static TiBitmapCache instance;
+
+	private final long maxMemorySize;
+	private final long maxDiskSize;
+
+	// guarded by this, ordered from least to most recently used
+	private final LinkedHashMap<String, Bitmap> memoryCache = new LinkedHashMap<String, Bitmap>(32, 0.75f, true);
+	private final WeakHashMap<Bitmap, Boolean> sharedBitmaps = new WeakHashMap<Bitmap, Boolean>();
+	private long memorySize = 0;
+
+	// guarded by diskLock
+	private final Object diskLock = new Object();
+	private LinkedHashMap<String, Long> diskIndex;
+	private File diskCacheDir;
+	private long diskSize = 0;
+	private String diskKeyPrefix = "";
+	private ExecutorService diskWriter;
+
+	private long memoryHitCount = 0;
+	private long diskHitCount = 0;
+	private long missCount = 0;
+	private long evictionCount = 0;
+
+	public static synchronized TiBitmapCache getInstance()
+	{
+		if (instance == null) {
+			long maxMemory = Runtime.getRuntime().maxMemory() / 8;
+			long maxDisk = DEFAULT_DISK_SIZE * 1024L;
+
+			TiApplication app = TiApplication.getInstance();
+			if (app != null) {
+				maxMemory = app.getSystemProperties().getInt(PROPERTY_MEMORY_SIZE, (int) (maxMemory / 1024)) * 1024L;
+				maxDisk = app.getSystemProperties().getInt(PROPERTY_DISK_SIZE, DEFAULT_DISK_SIZE) * 1024L;
+			}
+
+			instance = new TiBitmapCache(maxMemory, maxDisk);
+		}
+
+		return instance;
+	}
+
+	private TiBitmapCache(long maxMemorySize, long maxDiskSize)
+	{
+		this.maxMemorySize = maxMemorySize;
+		this.maxDiskSize = maxDiskSize;
+		if (DBG) {
+			Log.d(LCAT, "max memory size: " + maxMemorySize + ", max disk size: " + maxDiskSize);
+		}
+	}
+
+	/**
+	 * Builds a cache key for an image loaded from a url and decoded to the given size.
+	 * Local files include their modification time so an overwritten file is decoded again.
+	 * @param url the image url.
+	 * @param width the decoded width, or a negative value for the original size.
+	 * @param height the decoded height, or a negative value for the original size.
+	 * @return the key, or null if the url can not be cached.
+	 */
+	public static String keyForUrl(String url, int width, int height)
+	{
+		if (url == null) {
+			return null;
+		}
+
+		String source = url;
+		if (url.startsWith("file://")) {
+			String path = Uri.parse(url).getPath();
+			if (path == null) {
+				return null;
+			}
+			File file = new File(path);
+			source = url + '@' + file.lastModified() + ':' + file.length();
+		}
+
+		return keyForSource(source, width, height);
+	}
+
+	/**
+	 * @param source a string identifying the image source.
+	 * @param width the decoded width, or a negative value for the original size.
+	 * @param height the decoded height, or a negative value for the original size.
+	 * @return the cache key.
+	 */
+	public static String keyForSource(String source, int width, int height)
+	{
+		if (width < 0 || height < 0) {
+			return source;
+		}
+
+		return source + '#' + width + 'x' + height;
+	}
+
+	/**
+	 * Looks up a decoded bitmap in memory.
+	 * @param key the cache key.
+	 * @return the bitmap, or null if it is not in memory.
+	 */
+	public Bitmap get(String key)
+	{
+		if (key == null) {
+			return null;
+		}
+
+		synchronized (this) {
+			Bitmap bitmap = memoryCache.get(key);
+			if (bitmap != null) {
+				if (!bitmap.isRecycled()) {
+					memoryHitCount++;
+					return bitmap;
+				}
+				memoryCache.remove(key);
+				memorySize -= getBitmapSize(bitmap);
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Looks up a decoded bitmap in memory and then in the disk tier.
+	 * @param key the cache key.
+	 * @return the bitmap, or null if neither tier holds it.
+	 */
+	public Bitmap getOrLoad(String key)
+	{
+		Bitmap bitmap = get(key);
+		if (bitmap != null || key == null) {
+			return bitmap;
+		}
+
+		bitmap = loadFromDisk(key);
+		synchronized (this) {
+			if (bitmap != null) {
+				diskHitCount++;
+				putInMemory(key, bitmap);
+
+			} else {
+				missCount++;
+			}
+		}
+
+		return bitmap;
+	}
+
+	/**
+	 * Adds a decoded bitmap to the memory tier.
+	 * @param key the cache key.
+	 * @param bitmap the bitmap. It must not be recycled by the caller afterwards.
+	 */
+	public void put(String key, Bitmap bitmap)
+	{
+		put(key, bitmap, false);
+	}
+
+	/**
+	 * Adds a decoded bitmap to the memory tier, and optionally writes it to the disk tier in the background.
+	 * Only downsampled images are worth writing to disk, full size images are decoded from their source.
+	 * @param key the cache key.
+	 * @param bitmap the bitmap. It must not be recycled by the caller afterwards.
+	 * @param persist whether to write the bitmap to the disk tier.
+	 */
+	public void put(String key, Bitmap bitmap, boolean persist)
+	{
+		if (key == null || bitmap == null || bitmap.isRecycled()) {
+			return;
+		}
+
+		synchronized (this) {
+			putInMemory(key, bitmap);
+		}
+
+		// nine-patch chunks do not survive compression
+		if (persist && maxDiskSize > 0 && bitmap.getNinePatchChunk() == null) {
+			writeToDisk(key, bitmap);
+		}
+	}
+
+	/**
+	 * @param bitmap a bitmap.
+	 * @return true if the bitmap was handed out by the cache and may be in use elsewhere.
+	 */
+	public synchronized boolean isShared(Bitmap bitmap)
+	{
+		return bitmap != null && sharedBitmaps.containsKey(bitmap);
+	}
+
+	/**
+	 * Drops every bitmap from the memory tier. Bitmaps still displayed stay valid.
+	 */
+	public synchronized void evictAll()
+	{
+		evictionCount += memoryCache.size();
+		memoryCache.clear();
+		memorySize = 0;
+	}
+
+	/**
+	 * @return hit, miss and eviction counters along with the size of both tiers in bytes.
+	 */
+	public KrollDict getStats()
+	{
+		KrollDict stats = new KrollDict();
+		synchronized (this) {
+			long hits = memoryHitCount + diskHitCount;
+			long requests = hits + missCount;
+			stats.put("memoryHitCount", memoryHitCount);
+			stats.put("diskHitCount", diskHitCount);
+			stats.put("missCount", missCount);
+			stats.put("evictionCount", evictionCount);
+			stats.put("hitRate", requests > 0 ? hits / (double) requests : 0);
+			stats.put("memoryEntryCount", memoryCache.size());
+			stats.put("memorySize", memorySize);
+			stats.put("maxMemorySize", maxMemorySize);
+		}
+		synchronized (diskLock) {
+			stats.put("diskSize", diskSize);
+			stats.put("maxDiskSize", maxDiskSize);
+		}
+
+		return stats;
+	}
+
+	// must be called while holding the lock on this
+	private void putInMemory(String key, Bitmap bitmap)
+	{
+		sharedBitmaps.put(bitmap, Boolean.TRUE);
+
+		long size = getBitmapSize(bitmap);
+		if (size > maxMemorySize) {
+			return;
+		}
+
+		Bitmap previous = memoryCache.put(key, bitmap);
+		if (previous != null) {
+			memorySize -= getBitmapSize(previous);
+		}
+		memorySize += size;
+
+		// Evicted bitmaps are not recycled, they may still be attached to a view.
+		Iterator<Map.Entry<String, Bitmap>> i = memoryCache.entrySet().iterator();
+		while (memorySize > maxMemorySize && i.hasNext()) {
+			Map.Entry<String, Bitmap> eldest = i.next();
+			i.remove();
+			memorySize -= getBitmapSize(eldest.getValue());
+			evictionCount++;
+		}
+	}
+
+	private static long getBitmapSize(Bitmap bitmap)
+	{
+		return (long) bitmap.getRowBytes() * bitmap.getHeight();
+	}
+
+	private Bitmap loadFromDisk(String key)
+	{
+		if (maxDiskSize <= 0) {
+			return null;
+		}
+
+		File file;
+		String hash;
+		synchronized (diskLock) {
+			LinkedHashMap<String, Long> index = getDiskIndex();
+			hash = getDiskHash(key);
+			if (index == null || index.get(hash) == null) {
+				return null;
+			}
+			file = new File(diskCacheDir, hash + IMAGE_SUFFIX);
+			file.setLastModified(System.currentTimeMillis());
+		}
+
+		BitmapFactory.Options opts = new BitmapFactory.Options();
+		opts.inInputShareable = true;
+		opts.inPurgeable = true;
+		Bitmap bitmap = null;
+		try {
+			bitmap = BitmapFactory.decodeFile(file.getAbsolutePath(), opts);
+		} catch (OutOfMemoryError e) {
+			Log.e(LCAT, "Unable to load cached bitmap. Not enough memory: " + e.getMessage(), e);
+			return null;
+		}
+
+		if (bitmap == null) {
+			synchronized (diskLock) {
+				removeFromDisk(hash);
+			}
+		}
+
+		return bitmap;
+	}
+
+	private void writeToDisk(final String key, final Bitmap bitmap)
+	{
+		synchronized (diskLock) {
+			if (diskWriter == null) {
+				diskWriter = Executors.newSingleThreadExecutor(new ThreadFactory() {
+					public Thread newThread(Runnable runnable)
+					{
+						Thread thread = new Thread(runnable, LCAT);
+						thread.setPriority(Thread.MIN_PRIORITY);
+						return thread;
+					}
+				});
+			}
+		}
+
+		diskWriter.execute(new Runnable() {
+			public void run()
+			{
+				String hash;
+				File dir;
+				synchronized (diskLock) {
+					LinkedHashMap<String, Long> index = getDiskIndex();
+					hash = getDiskHash(key);
+					if (index == null || index.containsKey(hash)) {
+						return;
+					}
+					dir = diskCacheDir;
+				}
+
+				File tempFile = new File(dir, hash + IMAGE_SUFFIX + TEMP_SUFFIX);
+				File file = new File(dir, hash + IMAGE_SUFFIX);
+				OutputStream out = null;
+				boolean written = false;
+				try {
+					out = new FileOutputStream(tempFile);
+					if (bitmap.hasAlpha()) {
+						written = bitmap.compress(CompressFormat.PNG, 100, out);
+					} else {
+						written = bitmap.compress(CompressFormat.JPEG, JPEG_QUALITY, out);
+					}
+
+				} catch (IOException e) {
+					Log.w(LCAT, "Unable to write bitmap to the disk cache", e);
+
+				} catch (IllegalStateException e) {
+					// the bitmap was recycled in the meantime
+					written = false;
+
+				} finally {
+					if (out != null) {
+						try {
+							out.close();
+						} catch (IOException e) {
+							written = false;
+						}
+					}
+				}
+
+				synchronized (diskLock) {
+					if (!written || !tempFile.renameTo(file)) {
+						tempFile.delete();
+						return;
+					}
+
+					long size = file.length();
+					diskIndex.put(hash, size);
+					diskSize += size;
+					trimDisk();
+				}
+			}
+		});
+	}
+
+	// must be called while holding diskLock
+	private String getDiskHash(String key)
+	{
+		return DigestUtils.shaHex(diskKeyPrefix + key);
+	}
+
+	// must be called while holding diskLock
+	private void removeFromDisk(String hash)
+	{
+		Long size = diskIndex.remove(hash);
+		if (size != null) {
+			diskSize -= size;
+		}
+		new File(diskCacheDir, hash + IMAGE_SUFFIX).delete();
+	}
+
+	// must be called while holding diskLock
+	private void trimDisk()
+	{
+		Iterator<Map.Entry<String, Long>> i = diskIndex.entrySet().iterator();
+		while (diskSize > maxDiskSize && i.hasNext()) {
+			Map.Entry<String, Long> eldest = i.next();
+			i.remove();
+			diskSize -= eldest.getValue();
+			new File(diskCacheDir, eldest.getKey() + IMAGE_SUFFIX).delete();
+		}
+	}
+
+	/**
+	 * Returns the disk index, building it from the cache directory (oldest access first) on first use.
+	 * Must be called while holding diskLock.
+	 */
+	private LinkedHashMap<String, Long> getDiskIndex()
+	{
+		if (diskIndex != null) {
+			return diskIndex;
+		}
+
+		TiApplication app = TiApplication.getInstance();
+		if (app == null || app.getTempFileHelper() == null) {
+			return null;
+		}
+
+		TiTempFileHelper tempFileHelper = app.getTempFileHelper();
+		diskCacheDir = new File(tempFileHelper.getTempDirectory(), DISK_CACHE_DIR);
+		if (!diskCacheDir.exists()) {
+			diskCacheDir.mkdirs();
+		}
+		tempFileHelper.excludeFileOnCleanup(diskCacheDir);
+
+		// Entries written by a previous install may refer to resources that have since changed
+		diskKeyPrefix = new File(app.getApplicationInfo().sourceDir).lastModified() + ":";
+
+		diskIndex = new LinkedHashMap<String, Long>(32, 0.75f, true);
+		diskSize = 0;
+
+		File[] files = diskCacheDir.listFiles();
+		if (files != null) {
+			Arrays.sort(files, new Comparator<File>() {
+				public int compare(File a, File b)
+				{
+					long diff = a.lastModified() - b.lastModified();
+					return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+				}
+			});
+
+			for (File file : files) {
+				String name = file.getName();
+				if (!name.endsWith(IMAGE_SUFFIX)) {
+					// left over from an interrupted write
+					file.delete();
+					continue;
+				}
+				long size = file.length();
+				diskIndex.put(name.substring(0, name.length() - IMAGE_SUFFIX.length()), size);
+				diskSize += size;
+			}
+		}
+
+		trimDisk();
+		return diskIndex;
+	}
+}
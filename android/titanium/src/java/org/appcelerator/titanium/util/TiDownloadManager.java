@@ -1,40 +1,66 @@
 /**
  * Appcelerator Titanium Mobile
- * Copyright (c) 2009-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2009-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the Apache Public License
  * Please see the LICENSE included with this distribution for details.
  */
 package org.appcelerator.titanium.util;
 
 import java.io.InputStream;
-import java.lang.ref.SoftReference;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import org.apache.commons.codec.digest.DigestUtils;
 import org.appcelerator.kroll.common.Log;
+import org.appcelerator.kroll.common.TiConfig;
 import org.appcelerator.kroll.util.KrollStreamHelper;
+import org.appcelerator.titanium.TiApplication;
 
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
 import android.os.Handler;
 import android.os.Message;
+import android.telephony.TelephonyManager;
 
 /**
  * Manages the asynchronous opening of InputStreams from URIs so that
  * the resources get put into our TiResponseCache.
+ *
+ * Requests for a URI that is already queued or downloading share one download. Queued downloads
+ * are started most recent first, so the images a user is currently looking at win over ones
+ * requested earlier and scrolled away. Listeners are held until their download finishes, and a
+ * queued download is dropped once all of its listeners have been cancelled. The number of concurrent downloads follows the active network type.
  */
 public class TiDownloadManager implements Handler.Callback
 {
 	private static final String TAG = "TiDownloadManager";
+	private static final boolean DBG = TiConfig.LOGD;
 	private static final int MSG_FIRE_DOWNLOAD_FINISHED = 1000;
 	private static final int MSG_FIRE_DOWNLOAD_FAILED = 1001;
+	private static final long NETWORK_CHECK_INTERVAL = 5000;
+	private static final long KEEP_ALIVE_SECONDS = 30;
 	protected static TiDownloadManager _instance;
 	public static final int THREAD_POOL_SIZE = 2;
+	public static final int THREAD_POOL_SIZE_WIFI = 4;
+	public static final int THREAD_POOL_SIZE_FAST_MOBILE = 3;
+	public static final int THREAD_POOL_SIZE_SLOW_MOBILE = 1;
+
+	// guarded by jobs
+	protected HashMap<URI, DownloadJob> jobs = new HashMap<URI, DownloadJob>();
+	protected LinkedList<DownloadJob> pendingJobs = new LinkedList<DownloadJob>();
+	protected int runningWorkers = 0;
+	private int poolSize = THREAD_POOL_SIZE;
+	private long lastNetworkCheck = 0;
 
-	protected HashMap<String, ArrayList<SoftReference<TiDownloadListener>>> listeners = new HashMap<String, ArrayList<SoftReference<TiDownloadListener>>>();
-	protected ArrayList<String> downloadingURIs = new ArrayList<String>();
 	protected ExecutorService threadPool;
 	protected Handler handler;
 
@@ -49,79 +75,196 @@ public class TiDownloadManager implements Handler.Callback
 	protected TiDownloadManager()
 	{
 		handler = new Handler(this);
-		threadPool = Executors.newFixedThreadPool(THREAD_POOL_SIZE);
+
+		// Concurrency is bounded by the number of workers we start, see schedule()
+		threadPool = new ThreadPoolExecutor(0, Integer.MAX_VALUE, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+			new SynchronousQueue<Runnable>(), new ThreadFactory() {
+				private final AtomicInteger threadCounter = new AtomicInteger();
+
+				public Thread newThread(Runnable runnable)
+				{
+					return new Thread(runnable, TAG + "-" + threadCounter.incrementAndGet());
+				}
+			});
 	}
 
 	public void download(URI uri, TiDownloadListener listener)
 	{
 		if (TiResponseCache.peek(uri)) {
-			fireDownloadFinished(uri);
+			DownloadJob job = new DownloadJob(uri);
+			job.addListener(listener);
+			sendMessage(job, MSG_FIRE_DOWNLOAD_FINISHED);
 		} else {
 			startDownload(uri, listener);
 		}
 	}
 
-	protected void fireDownloadFinished(URI uri)
+	/**
+	 * Removes a listener from a pending download. If no listeners remain and the download has not
+	 * started yet, it is dropped from the queue.
+	 * @param uri the URI passed to {@link #download(URI, TiDownloadListener)}.
+	 * @param listener the listener to remove.
+	 */
+	public void cancel(URI uri, TiDownloadListener listener)
 	{
-		sendMessage(uri, MSG_FIRE_DOWNLOAD_FINISHED);
-	}
+		if (uri == null) {
+			return;
+		}
 
-	protected void fireDownloadFailed(URI uri)
-	{
-		sendMessage(uri, MSG_FIRE_DOWNLOAD_FAILED);
+		synchronized (jobs) {
+			DownloadJob job = jobs.get(uri);
+			if (job == null) {
+				return;
+			}
+
+			job.removeListener(listener);
+			if (!job.started && !job.hasListeners()) {
+				jobs.remove(uri);
+				pendingJobs.remove(job);
+			}
+		}
 	}
 
-	private void sendMessage(URI uri, int what)
+	private void sendMessage(DownloadJob job, int what)
 	{
 		Message msg = handler.obtainMessage(what);
-		msg.obj = uri;
+		msg.obj = job;
 		msg.sendToTarget();
 	}
 
 	protected void startDownload(URI uri, TiDownloadListener listener)
 	{
-		String hash = DigestUtils.shaHex(uri.toString());
-		ArrayList<SoftReference<TiDownloadListener>> listenerList = null;
-		synchronized (listeners) {
-			if (!listeners.containsKey(hash)) {
-				listenerList = new ArrayList<SoftReference<TiDownloadListener>>();
-				listeners.put(hash, listenerList);
-			} else {
-				listenerList = listeners.get(hash);
-			}
-			// We only allow a listener once per URI
-			for (SoftReference<TiDownloadListener> l : listenerList) {
-				if (l.get() == listener) {
-					return;
-				}
+		synchronized (jobs) {
+			DownloadJob job = jobs.get(uri);
+			if (job == null) {
+				job = new DownloadJob(uri);
+				jobs.put(uri, job);
+				pendingJobs.addFirst(job);
+
+			} else if (!job.started) {
+				// requested again, move it to the front of the queue
+				pendingJobs.remove(job);
+				pendingJobs.addFirst(job);
 			}
-			listenerList.add(new SoftReference<TiDownloadListener>(listener));
+
+			job.addListener(listener);
 		}
-		synchronized (downloadingURIs) {
-			if (!downloadingURIs.contains(hash)) {
-				downloadingURIs.add(hash);
-				threadPool.execute(new DownloadJob(uri));
-			}
+
+		schedule();
+	}
+
+	/**
+	 * Starts workers until the queue is drained or the pool size for the current network is reached.
+	 */
+	private void schedule()
+	{
+		int toStart;
+		synchronized (jobs) {
+			toStart = Math.max(0, Math.min(getPoolSize() - runningWorkers, pendingJobs.size()));
+			runningWorkers += toStart;
+		}
+
+		for (int i = 0; i < toStart; i++) {
+			threadPool.execute(new Worker());
 		}
 	}
 
-	protected void handleFireDownloadMessage(URI uri, int what)
+	/**
+	 * Takes the next download off the queue, or returns null if the worker should stop.
+	 */
+	private DownloadJob nextJob()
 	{
-		ArrayList<SoftReference<TiDownloadListener>> toRemove = new ArrayList<SoftReference<TiDownloadListener>>();
-		synchronized (listeners) {
-			String hash = DigestUtils.shaHex(uri.toString());
-			for (SoftReference<TiDownloadListener> listener : listeners.get(hash)) {
-				if (listener.get() != null) {
-					if (what == MSG_FIRE_DOWNLOAD_FINISHED) {
-						fireDownloadFinished(uri, listener.get());
-					} else if (what == MSG_FIRE_DOWNLOAD_FAILED) {
-						fireDownloadFailed(listener.get());
+		synchronized (jobs) {
+			if (runningWorkers > getPoolSize()) {
+				// the network got slower, let this worker go
+				runningWorkers--;
+				return null;
+			}
+
+			while (!pendingJobs.isEmpty()) {
+				DownloadJob job = pendingJobs.removeFirst();
+				if (!job.hasListeners()) {
+					// nobody is waiting for this any more
+					jobs.remove(job.uri);
+					if (DBG) {
+						Log.d(TAG, "Dropping download with no listeners: " + job.uri);
 					}
-					toRemove.add(listener);
+					continue;
 				}
+
+				job.started = true;
+				return job;
+			}
+
+			runningWorkers--;
+			return null;
+		}
+	}
+
+	// must be called while holding the lock on jobs
+	private int getPoolSize()
+	{
+		long now = System.currentTimeMillis();
+		if (now - lastNetworkCheck < NETWORK_CHECK_INTERVAL) {
+			return poolSize;
+		}
+		lastNetworkCheck = now;
+
+		poolSize = THREAD_POOL_SIZE;
+		TiApplication app = TiApplication.getInstance();
+		if (app == null) {
+			return poolSize;
+		}
+
+		try {
+			ConnectivityManager cm = (ConnectivityManager) app.getSystemService(Context.CONNECTIVITY_SERVICE);
+			NetworkInfo info = cm == null ? null : cm.getActiveNetworkInfo();
+			if (info == null) {
+				return poolSize;
 			}
-			for (SoftReference<TiDownloadListener> listener : toRemove) {
-				listeners.get(hash).remove(listener);
+
+			if (info.getType() == ConnectivityManager.TYPE_WIFI) {
+				poolSize = THREAD_POOL_SIZE_WIFI;
+
+			} else if (info.getType() == ConnectivityManager.TYPE_MOBILE) {
+				switch (info.getSubtype()) {
+					case TelephonyManager.NETWORK_TYPE_GPRS:
+					case TelephonyManager.NETWORK_TYPE_EDGE:
+					case TelephonyManager.NETWORK_TYPE_CDMA:
+					case TelephonyManager.NETWORK_TYPE_1xRTT:
+					case TelephonyManager.NETWORK_TYPE_IDEN:
+						poolSize = THREAD_POOL_SIZE_SLOW_MOBILE;
+						break;
+					case TelephonyManager.NETWORK_TYPE_UNKNOWN:
+						break;
+					default:
+						poolSize = THREAD_POOL_SIZE_FAST_MOBILE;
+						break;
+				}
+			}
+
+		} catch (SecurityException e) {
+			// ACCESS_NETWORK_STATE is not granted, stay with the default
+		}
+
+		return poolSize;
+	}
+
+	private void finished(DownloadJob job, int what)
+	{
+		synchronized (jobs) {
+			jobs.remove(job.uri);
+		}
+		sendMessage(job, what);
+	}
+
+	protected void handleFireDownloadMessage(DownloadJob job, int what)
+	{
+		for (TiDownloadListener listener : job.takeListeners()) {
+			if (what == MSG_FIRE_DOWNLOAD_FINISHED) {
+				fireDownloadFinished(job.uri, listener);
+			} else if (what == MSG_FIRE_DOWNLOAD_FAILED) {
+				fireDownloadFailed(listener);
 			}
 		}
 	}
@@ -140,15 +283,63 @@ public class TiDownloadManager implements Handler.Callback
 		}
 	}
 
+	private class Worker implements Runnable
+	{
+		public void run()
+		{
+			DownloadJob job;
+			while ((job = nextJob()) != null) {
+				job.run();
+			}
+		}
+	}
+
 	protected class DownloadJob implements Runnable
 	{
 		protected URI uri;
+		protected boolean started = false;
+
+		// guarded by this
+		private ArrayList<TiDownloadListener> listeners = new ArrayList<TiDownloadListener>(1);
 
 		public DownloadJob(URI uri)
 		{
 			this.uri = uri;
 		}
 
+		public synchronized void addListener(TiDownloadListener listener)
+		{
+			// We only allow a listener once per URI
+			for (TiDownloadListener l : listeners) {
+				if (l == listener) {
+					return;
+				}
+			}
+			listeners.add(listener);
+		}
+
+		public synchronized void removeListener(TiDownloadListener listener)
+		{
+			Iterator<TiDownloadListener> i = listeners.iterator();
+			while (i.hasNext()) {
+				if (i.next() == listener) {
+					i.remove();
+				}
+			}
+		}
+
+		public synchronized boolean hasListeners()
+		{
+			return !listeners.isEmpty();
+		}
+
+		public synchronized ArrayList<TiDownloadListener> takeListeners()
+		{
+			ArrayList<TiDownloadListener> result = listeners;
+			listeners = new ArrayList<TiDownloadListener>(1);
+			return result;
+		}
+
 		public void run()
 		{
 			try {
@@ -158,14 +349,10 @@ public class TiDownloadManager implements Handler.Callback
 				KrollStreamHelper.pump(stream, null);
 				stream.close();
 
-				synchronized (downloadingURIs) {
-					downloadingURIs.remove(DigestUtils.shaHex(uri.toString()));
-				}
-
-				fireDownloadFinished(uri);
+				finished(this, MSG_FIRE_DOWNLOAD_FINISHED);
 			} catch (Exception e) {
 				// fire a download fail event if we are unable to download
-				fireDownloadFailed(uri);
+				finished(this, MSG_FIRE_DOWNLOAD_FAILED);
 				Log.e(TAG, "Exception downloading " + uri, e);
 			}
 		}
@@ -175,10 +362,10 @@ public class TiDownloadManager implements Handler.Callback
 	{
 		switch (msg.what) {
 			case MSG_FIRE_DOWNLOAD_FINISHED:
-				handleFireDownloadMessage((URI) msg.obj, MSG_FIRE_DOWNLOAD_FINISHED);
+				handleFireDownloadMessage((DownloadJob) msg.obj, MSG_FIRE_DOWNLOAD_FINISHED);
 				return true;
 			case MSG_FIRE_DOWNLOAD_FAILED:
-				handleFireDownloadMessage((URI) msg.obj, MSG_FIRE_DOWNLOAD_FAILED);
+				handleFireDownloadMessage((DownloadJob) msg.obj, MSG_FIRE_DOWNLOAD_FAILED);
 				return true;
 		}
 		return false;
@@ -32,6 +32,7 @@ import java.util.zip.ZipInputStream;
 
 import org.appcelerator.kroll.common.Log;
 import org.appcelerator.kroll.common.TiConfig;
+import org.appcelerator.kroll.common.TiFastDev;
 import org.appcelerator.titanium.TiApplication;
 
 import android.content.Context;
@@ -281,6 +282,7 @@ public class TiFileHelper
 			return d;
 		}
 
+		TiBitmapCache bitmapCache = TiBitmapCache.getInstance();
 		try
 		{
 			if (checkForNinePatch && path != null && !URLUtil.isNetworkUrl(path)) {
@@ -289,6 +291,10 @@ public class TiFileHelper
 						String apath = null;
 						// First See if it's in the root dir
 						apath = path.substring(0, path.lastIndexOf(".")) + ".9.png";
+						Bitmap cached = bitmapCache.get(getBitmapCacheKey(apath));
+						if (cached != null) {
+							return nph.process(cached);
+						}
 						try {
 							is = openInputStream(apath, false);
 							if (is != null) {
@@ -301,14 +307,24 @@ public class TiFileHelper
 						}
 					}
 				}
-				if (is == null) {
-					is = openInputStream(path, report);
+				String key = getBitmapCacheKey(path);
+				Bitmap b = bitmapCache.getOrLoad(key);
+				if (b == null) {
+					if (is == null) {
+						is = openInputStream(path, report);
+					}
+					b = TiUIHelper.createBitmap(is);
+					bitmapCache.put(key, b);
 				}
-				Bitmap b = TiUIHelper.createBitmap(is);
 				d = nph.process(b);
 			} else {
-				is = openInputStream(path, report);
-				Bitmap b = TiUIHelper.createBitmap(is);
+				String key = getBitmapCacheKey(path);
+				Bitmap b = bitmapCache.getOrLoad(key);
+				if (b == null) {
+					is = openInputStream(path, report);
+					b = TiUIHelper.createBitmap(is);
+					bitmapCache.put(key, b);
+				}
 				if (b != null) {
 					d = new BitmapDrawable(b);
 				}
@@ -328,6 +344,14 @@ public class TiFileHelper
 		return d;
 	}
 
+	private String getBitmapCacheKey(String path)
+	{
+		if (path == null || TiFastDev.isFastDevEnabled()) {
+			return null;
+		}
+		return TiBitmapCache.keyForUrl(path, -1, -1);
+	}
+
 	public boolean isTitaniumResource(String s) {
 		boolean result = false;
 		if (s != null && s.startsWith(TI_RESOURCE_PREFIX)) {
@@ -1,6 +1,7 @@
 package org.appcelerator.titanium.util;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -11,6 +12,7 @@ import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.Writer;
 import java.net.CacheRequest;
 import java.net.CacheResponse;
 import java.net.ResponseCache;
@@ -18,19 +20,28 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URLConnection;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.codec.digest.DigestUtils;
+import org.appcelerator.kroll.KrollDict;
 import org.appcelerator.kroll.common.Log;
 import org.appcelerator.kroll.common.TiConfig;
 import org.appcelerator.titanium.TiApplication;
 
+/**
+ * A disk backed response cache bounded by the <code>ti.android.cache.size.max</code> property (in KB).
+ *
+ * Entries are tracked in an in-memory LRU index that is persisted as an append-only journal in the
+ * cache directory, so lookups never touch the file system and eviction happens as each entry is added.
+ * Headers and bodies are written to temporary files and only moved into place once complete.
+ */
 public class TiResponseCache extends ResponseCache
 {
 	private static final boolean DBG = TiConfig.LOGD;
@@ -38,67 +49,42 @@ public class TiResponseCache extends ResponseCache
 
 	private static final String HEADER_SUFFIX = ".hdr";
 	private static final String BODY_SUFFIX   = ".bdy";
+	private static final String TEMP_SUFFIX   = ".tmp";
+	private static final String JOURNAL_FILE = "journal";
+	private static final String JOURNAL_TEMP_FILE = "journal.tmp";
+	private static final String JOURNAL_MAGIC = "TiResponseCache";
+	private static final String JOURNAL_VERSION = "1";
+	private static final String CLEAN = "CLEAN";
+	private static final String READ = "READ";
+	private static final String REMOVE = "REMOVE";
+	private static final int REDUNDANT_OP_COMPACT_THRESHOLD = 2000;
 	private static final String CACHE_SIZE_KEY = "ti.android.cache.size.max";
 	private static final int DEFAULT_CACHE_SIZE = 25 * 1024 * 1024; // 25MB
-	private static final int INITIAL_DELAY = 10000;
-	private static final int CLEANUP_DELAY = 60000;
 	private static final String LCAT = "TiResponseCache"; 
 	private static HashMap<String, ArrayList<CompleteListener>> completeListeners = new HashMap<String, ArrayList<CompleteListener>>();
 	private static long maxCacheSize = 0;
 
-	private static ScheduledExecutorService cleanupExecutor = null;
-	
 	public static interface CompleteListener
 	{
 		public void cacheCompleted(URI uri);
 	}
 
-	private static class TiCacheCleanup implements Runnable
+	/**
+	 * An entry in the in-memory index. Headers are parsed from disk on the first hit and kept afterwards.
+	 */
+	private static class CacheEntry
 	{
-		private File cacheDir;
-		private long maxSize;
-		public TiCacheCleanup(File cacheDir, long maxSize)
-		{
-			this.cacheDir  = cacheDir;
-			this.maxSize = maxSize;
-		}
+		private String hash;
+		private long size;
+		private Map<String, List<String>> headers;
 
-		// TODO @Override
-		public void run()
+		public CacheEntry(String hash, long size)
 		{
-			// Build up a list of access times
-			HashMap<Long, File> lastTime = new HashMap<Long, File>();
-			for (File hdrFile : cacheDir.listFiles(new FilenameFilter() {
-					// TODO @Override
-					public boolean accept(File dir, String name) {
-						return name.endsWith(HEADER_SUFFIX);
-					}
-				}))
-			{
-				lastTime.put(hdrFile.lastModified(), hdrFile);
-			}
-			
-			// Ensure that the cache is under the required size
-			List<Long> sz = new ArrayList<Long>(lastTime.keySet());
-			Collections.sort(sz);
-			Collections.reverse(sz);
-			long cacheSize = 0;
-			for (Long last : sz) {
-				File hdrFile = lastTime.get(last);
-				String h = hdrFile.getName().substring(0, hdrFile.getName().lastIndexOf('.')); // Hash
-				File bdyFile = new File(cacheDir, h + BODY_SUFFIX);
-				
-				cacheSize += hdrFile.length();
-				cacheSize += bdyFile.length();
-				if (cacheSize > this.maxSize) {
-					hdrFile.delete();
-					bdyFile.delete();
-				}
-			}
+			this.hash = hash;
+			this.size = size;
 		}
-		
 	}
-	
+
 	private static class TiCacheResponse extends CacheResponse {
 		private Map<String, List<String>> headers;
 		private InputStream istream;
@@ -126,35 +112,76 @@ public class TiResponseCache extends ResponseCache
 
 	private static class TiCacheOutputStream extends FileOutputStream
 	{
-		private URI uri;
-		public TiCacheOutputStream(URI uri, File file)
+		private TiCacheRequest request;
+		private boolean closed = false;
+
+		public TiCacheOutputStream(TiCacheRequest request)
 			throws FileNotFoundException
 		{
-			super(file);
-			this.uri = uri;
+			super(request.bTempFile);
+			this.request = request;
+		}
+
+		@Override
+		public void write(int b)
+			throws IOException
+		{
+			try {
+				super.write(b);
+			} catch (IOException e) {
+				request.discard();
+				throw e;
+			}
+		}
+
+		@Override
+		public void write(byte[] buffer, int offset, int count)
+			throws IOException
+		{
+			try {
+				super.write(buffer, offset, count);
+			} catch (IOException e) {
+				request.discard();
+				throw e;
+			}
 		}
 
 		@Override
 		public void close()
 			throws IOException
 		{
-			super.close();
-			fireCacheCompleted(uri);
+			try {
+				super.close();
+			} finally {
+				if (!closed) {
+					closed = true;
+					// a body that failed to flush fails the length check and is discarded
+					request.complete();
+					fireCacheCompleted(request.uri);
+				}
+			}
 		}
 	}
 
-	private static class TiCacheRequest extends CacheRequest
+	/**
+	 * Writes the header and body into temporary files. They are renamed into place and added
+	 * to the index only once the whole body has been written, so readers never see a partial entry.
+	 */
+	private class TiCacheRequest extends CacheRequest
 	{
 		private URI uri;
-		private File bFile, hFile;
+		private String hash;
+		private File bTempFile, hTempFile;
 		private long contentLength;
+		private boolean done = false;
 
-		public TiCacheRequest(URI uri, File bFile, File hFile, long contentLength)
+		public TiCacheRequest(URI uri, String hash, File bTempFile, File hTempFile, long contentLength)
 		{
 			super();
 			this.uri = uri;
-			this.bFile = bFile;
-			this.hFile = hFile;
+			this.hash = hash;
+			this.bTempFile = bTempFile;
+			this.hTempFile = hTempFile;
 			this.contentLength = contentLength;
 		}
 
@@ -162,19 +189,63 @@ public class TiResponseCache extends ResponseCache
 		public OutputStream getBody()
 			throws IOException
 		{
-			return new TiCacheOutputStream(uri, bFile);
+			try {
+				return new TiCacheOutputStream(this);
+			} catch (IOException e) {
+				discard();
+				throw e;
+			}
 		}
 
 		@Override
 		public void abort()
 		{
-			// Only truly abort if we didn't write the whole length
-			// This works around a bug where Android calls abort()
-			// whenever the file is closed, successful writes or not
-			if (bFile.length() != this.contentLength) {
+			// Android calls abort() whenever the file is closed, successful writes or not,
+			// so a body written to its full length is still committed. Anything else is
+			// discarded, which also releases the hash for later writers.
+			synchronized (TiResponseCache.this) {
+				if (done) {
+					return;
+				}
+				if (contentLength > 0 && bTempFile.length() == contentLength) {
+					complete();
+					return;
+				}
 				Log.e(LCAT, "Failed to add item to the cache!");
-				if (bFile.exists()) bFile.delete();
-				if (hFile.exists()) hFile.delete();
+				discard();
+			}
+		}
+
+		private void complete()
+		{
+			synchronized (TiResponseCache.this) {
+				if (done) {
+					return;
+				}
+				if (contentLength > 0 && bTempFile.length() != contentLength) {
+					Log.e(LCAT, "Failed to add item to the cache!");
+					discard();
+					return;
+				}
+
+				done = true;
+				commitEntry(hash, bTempFile, hTempFile);
+			}
+		}
+
+		/**
+		 * Deletes the temporary files and releases the hash. Does nothing once the entry is committed.
+		 */
+		private void discard()
+		{
+			synchronized (TiResponseCache.this) {
+				if (done) {
+					return;
+				}
+				done = true;
+				bTempFile.delete();
+				hTempFile.delete();
+				editing.remove(hash);
 			}
 		}
 	}
@@ -186,10 +257,9 @@ public class TiResponseCache extends ResponseCache
 		if (rc.cacheDir == null) return false;
 		
 		String hash = DigestUtils.shaHex(uri.toString());
-		File hFile = new File(rc.cacheDir, hash + HEADER_SUFFIX);
-		File bFile = new File(rc.cacheDir, hash + BODY_SUFFIX);
-		if (!bFile.exists() || !hFile.exists()) return false;
-		return true;
+		synchronized (rc) {
+			return rc.getIndex().containsKey(hash);
+		}
 	}
 
 	public static InputStream openCachedStream(URI uri)
@@ -204,19 +274,45 @@ public class TiResponseCache extends ResponseCache
 		}
 		
 		String hash = DigestUtils.shaHex(uri.toString());
-		File hFile = new File(rc.cacheDir, hash + HEADER_SUFFIX);
-		File bFile = new File(rc.cacheDir, hash + BODY_SUFFIX);
+		synchronized (rc) {
+			CacheEntry entry = rc.lookup(hash);
+			if (entry == null) {
+				return null;
+			}
 
-		if (!bFile.exists() || !hFile.exists()) {
-			return null;
+			try {
+				return new FileInputStream(rc.getBodyFile(hash));
+			} catch (FileNotFoundException e) {
+				// Fallback to URL download?
+				rc.removeEntry(entry, false);
+				return null;
+			}
 		}
+	}
 
-		try {
-			return new FileInputStream(bFile);
-		} catch (FileNotFoundException e) {
-			// Fallback to URL download?
+	/**
+	 * @return hit, miss, store and eviction counters along with the current and maximum cache size in bytes,
+	 * or null if no response cache is installed.
+	 */
+	public static KrollDict getStats()
+	{
+		TiResponseCache rc = (TiResponseCache) TiResponseCache.getDefault();
+		if (rc == null) {
 			return null;
 		}
+
+		KrollDict stats = new KrollDict();
+		synchronized (rc) {
+			stats.put("entryCount", rc.cacheDir == null ? 0 : rc.getIndex().size());
+			stats.put("size", rc.size);
+			stats.put("hitCount", rc.hitCount);
+			stats.put("missCount", rc.missCount);
+			stats.put("putCount", rc.putCount);
+			stats.put("evictionCount", rc.evictionCount);
+		}
+		stats.put("maxSize", maxCacheSize);
+
+		return stats;
 	}
 
 	public static void addCompleteListener(URI uri, CompleteListener listener)
@@ -232,6 +328,17 @@ public class TiResponseCache extends ResponseCache
 
 	private File cacheDir = null;
 
+	// guarded by this. The index is ordered from least to most recently used.
+	private LinkedHashMap<String, CacheEntry> index;
+	private HashSet<String> editing = new HashSet<String>();
+	private Writer journalWriter;
+	private int redundantOpCount = 0;
+	private long size = 0;
+	private long hitCount = 0;
+	private long missCount = 0;
+	private long putCount = 0;
+	private long evictionCount = 0;
+
 	public TiResponseCache(File cachedir, TiApplication tiApp) {
 		super();
 		assert cachedir.isDirectory() : "cachedir MUST be a directory";
@@ -241,10 +348,6 @@ public class TiResponseCache extends ResponseCache
 		if(DBG) {
 			Log.d(LCAT, "max cache size is:" + maxCacheSize);
 		}
-
-		cleanupExecutor = Executors.newSingleThreadScheduledExecutor();
-		TiCacheCleanup command = new TiCacheCleanup(cacheDir, maxCacheSize);
-		cleanupExecutor.scheduleWithFixedDelay(command, INITIAL_DELAY, CLEANUP_DELAY, TimeUnit.MILLISECONDS);
 	}
 
 	@Override
@@ -255,32 +358,52 @@ public class TiResponseCache extends ResponseCache
 		
 		// Get our key, which is a hash of the URI
 		String hash = DigestUtils.shaHex(uri.toString());
-		
-		// Make our cache files
-		File hFile = new File(cacheDir, hash + HEADER_SUFFIX);
-		File bFile = new File(cacheDir, hash + BODY_SUFFIX);
-		
-		if (!bFile.exists() || !hFile.exists()) {
-			return null;
+
+		synchronized (this) {
+			CacheEntry entry = lookup(hash);
+			if (entry == null) {
+				missCount++;
+				return null;
+			}
+
+			InputStream body;
+			try {
+				if (entry.headers == null) {
+					entry.headers = readHeaders(getHeaderFile(hash));
+				}
+				body = new FileInputStream(getBodyFile(hash));
+
+			} catch (IOException e) {
+				// The files were removed behind our back, e.g. the user cleared the cache
+				removeEntry(entry, false);
+				missCount++;
+				return null;
+			}
+
+			hitCount++;
+			return new TiCacheResponse(entry.headers, body);
 		}
+	}
 
-		// Read in the headers
+	private Map<String, List<String>> readHeaders(File hFile) throws IOException
+	{
 		Map<String, List<String>> headers = new HashMap<String, List<String>>();
 		BufferedReader rdr = new BufferedReader(new FileReader(hFile), 1024);
-		for (String line=rdr.readLine() ; line != null ; line=rdr.readLine()) {
-			String keyval[] = line.split("=", 2);
-			if (!headers.containsKey(keyval[0])) {
-				headers.put(keyval[0], new ArrayList<String>());
+		try {
+			for (String line=rdr.readLine() ; line != null ; line=rdr.readLine()) {
+				String keyval[] = line.split("=", 2);
+				if (keyval.length < 2) {
+					continue;
+				}
+				if (!headers.containsKey(keyval[0])) {
+					headers.put(keyval[0], new ArrayList<String>());
+				}
+				headers.get(keyval[0]).add(keyval[1]);
 			}
-			headers.get(keyval[0]).add(keyval[1]);
+		} finally {
+			rdr.close();
 		}
-		rdr.close();
-		
-		// Update the access log
-		hFile.setLastModified(System.currentTimeMillis());
-		
-		// Respond with the cache
-		return new TiCacheResponse(headers, new FileInputStream(bFile));
+		return headers;
 	}
 
 	protected String getHeader(Map<String, List<String>> headers, String header)
@@ -366,30 +489,371 @@ public class TiResponseCache extends ResponseCache
 		// Get our key, which is a hash of the URI
 		String hash = DigestUtils.shaHex(uri.toString());
 		
-		// Make our cache files
-		File hFile = new File(cacheDir, hash + HEADER_SUFFIX); 
-		File bFile = new File(cacheDir, hash + BODY_SUFFIX);
+		synchronized (this) {
+			// Don't add it to the cache if its already being written
+			getIndex();
+			if (!editing.add(hash)) {
+				return null;
+			}
+		}
 
-		// Write headers synchronously
-		FileWriter hWriter = new FileWriter(hFile);
+		// Write headers to a temporary file, they are moved into place with the body
+		File hTempFile = new File(cacheDir, hash + HEADER_SUFFIX + TEMP_SUFFIX);
+		File bTempFile = new File(cacheDir, hash + BODY_SUFFIX + TEMP_SUFFIX);
+		FileWriter hWriter = null;
+		boolean written = false;
 		try {
+			hWriter = new FileWriter(hTempFile);
 			hWriter.write(sb.toString());
-		} finally { 
-			hWriter.close();
-		}
+			written = true;
 
-		synchronized (this) {
-			// Don't add it to the cache if its already being written
-			if (!bFile.createNewFile()) {
-				return null;
+		} finally {
+			if (hWriter != null) {
+				hWriter.close();
+			}
+			if (!written) {
+				synchronized (this) {
+					editing.remove(hash);
+				}
+				hTempFile.delete();
 			}
-			return new TiCacheRequest(uri, bFile, hFile, contentLength);
 		}
+
+		return new TiCacheRequest(uri, hash, bTempFile, hTempFile, contentLength);
 	}
 	
 	public void setCacheDir(File dir)
 	{
-		cacheDir = dir;
+		synchronized (this) {
+			closeJournal();
+			cacheDir = dir;
+			index = null;
+			size = 0;
+		}
+	}
+
+	private File getHeaderFile(String hash)
+	{
+		return new File(cacheDir, hash + HEADER_SUFFIX);
+	}
+
+	private File getBodyFile(String hash)
+	{
+		return new File(cacheDir, hash + BODY_SUFFIX);
+	}
+
+	/**
+	 * Looks up an entry and marks it as most recently used. Must be called while holding the lock on this.
+	 */
+	private CacheEntry lookup(String hash)
+	{
+		CacheEntry entry = getIndex().get(hash);
+		if (entry != null) {
+			journal(READ + ' ' + hash, false);
+			redundantOpCount++;
+			// a read-heavy cache may go a long time without a commit, so compact here as well
+			compactJournalIfNeeded();
+		}
+		return entry;
+	}
+
+	/**
+	 * Moves a finished entry into place, records it in the journal and evicts least recently used
+	 * entries until the cache is under its maximum size. Must be called while holding the lock on this.
+	 */
+	private void commitEntry(String hash, File bTempFile, File hTempFile)
+	{
+		editing.remove(hash);
+		LinkedHashMap<String, CacheEntry> entries = getIndex();
+
+		CacheEntry previous = entries.remove(hash);
+		if (previous != null) {
+			size -= previous.size;
+			redundantOpCount++;
+		}
+
+		File hFile = getHeaderFile(hash);
+		File bFile = getBodyFile(hash);
+		if (!bTempFile.renameTo(bFile) || !hTempFile.renameTo(hFile)) {
+			Log.e(LCAT, "Failed to add item to the cache!");
+			bTempFile.delete();
+			hTempFile.delete();
+			bFile.delete();
+			hFile.delete();
+			if (previous != null) {
+				journal(REMOVE + ' ' + hash, true);
+			}
+			return;
+		}
+
+		CacheEntry entry = new CacheEntry(hash, bFile.length() + hFile.length());
+		entries.put(hash, entry);
+		size += entry.size;
+		putCount++;
+		journal(CLEAN + ' ' + hash + ' ' + entry.size, true);
+
+		trimToSize();
+		compactJournalIfNeeded();
+	}
+
+	// must be called while holding the lock on this
+	private void trimToSize()
+	{
+		LinkedHashMap<String, CacheEntry> entries = getIndex();
+		while (size > maxCacheSize && !entries.isEmpty()) {
+			CacheEntry eldest = entries.values().iterator().next();
+			if (DBG) {
+				Log.d(LCAT, "evicting " + eldest.hash + " (" + eldest.size + " bytes)");
+			}
+			removeEntry(eldest, true);
+			evictionCount++;
+		}
+	}
+
+	// must be called while holding the lock on this
+	private void removeEntry(CacheEntry entry, boolean deleteFiles)
+	{
+		if (index.remove(entry.hash) == null) {
+			return;
+		}
+
+		size -= entry.size;
+		if (deleteFiles) {
+			getHeaderFile(entry.hash).delete();
+			getBodyFile(entry.hash).delete();
+		}
+		journal(REMOVE + ' ' + entry.hash, true);
+		redundantOpCount++;
+	}
+
+	/**
+	 * Returns the index, reading it from the journal the first time. If there is no usable journal
+	 * the index is rebuilt from the cache directory. Must be called while holding the lock on this.
+	 */
+	private LinkedHashMap<String, CacheEntry> getIndex()
+	{
+		if (index != null) {
+			return index;
+		}
+
+		index = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true);
+		size = 0;
+		redundantOpCount = 0;
+
+		if (!cacheDir.exists()) {
+			cacheDir.mkdirs();
+		}
+
+		File journalFile = new File(cacheDir, JOURNAL_FILE);
+		if (!journalFile.exists() || !readJournal(journalFile)) {
+			index.clear();
+			rebuildIndex();
+		}
+
+		// Drop entries whose files have gone missing and anything left over from interrupted writes
+		HashSet<String> known = new HashSet<String>();
+		Iterator<CacheEntry> i = index.values().iterator();
+		while (i.hasNext()) {
+			CacheEntry entry = i.next();
+			if (!getHeaderFile(entry.hash).exists() || !getBodyFile(entry.hash).exists()) {
+				i.remove();
+				size -= entry.size;
+				continue;
+			}
+			known.add(entry.hash);
+		}
+
+		File[] files = cacheDir.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				String name = file.getName();
+				int dot = name.indexOf('.');
+				String hash = dot > 0 ? name.substring(0, dot) : null;
+				if (hash != null && !known.contains(hash) && !editing.contains(hash)) {
+					file.delete();
+				}
+			}
+		}
+
+		rewriteJournal();
+		trimToSize();
+
+		if (DBG) {
+			Log.d(LCAT, "loaded cache index with " + index.size() + " entries, " + size + " bytes");
+		}
+
+		return index;
+	}
+
+	// must be called while holding the lock on this
+	private boolean readJournal(File journalFile)
+	{
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new FileReader(journalFile), 8192);
+			if (!JOURNAL_MAGIC.equals(reader.readLine()) || !JOURNAL_VERSION.equals(reader.readLine())) {
+				return false;
+			}
+
+			for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+				String[] parts = line.split(" ");
+				if (parts.length < 2) {
+					continue;
+				}
+
+				String hash = parts[1];
+				if (CLEAN.equals(parts[0]) && parts.length == 3) {
+					CacheEntry previous = index.remove(hash);
+					if (previous != null) {
+						size -= previous.size;
+					}
+					CacheEntry entry = new CacheEntry(hash, Long.parseLong(parts[2]));
+					index.put(hash, entry);
+					size += entry.size;
+
+				} else if (READ.equals(parts[0])) {
+					// touching the entry moves it to the most recently used end
+					index.get(hash);
+
+				} else if (REMOVE.equals(parts[0])) {
+					CacheEntry previous = index.remove(hash);
+					if (previous != null) {
+						size -= previous.size;
+					}
+				}
+			}
+			return true;
+
+		} catch (IOException e) {
+			Log.w(LCAT, "Unable to read cache journal, rebuilding", e);
+			return false;
+
+		} catch (NumberFormatException e) {
+			Log.w(LCAT, "Corrupt cache journal, rebuilding", e);
+			return false;
+
+		} finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+	}
+
+	/**
+	 * Rebuilds the index from the files on disk, oldest access first. Used when there is no journal yet.
+	 */
+	private void rebuildIndex()
+	{
+		File[] hdrFiles = cacheDir.listFiles(new FilenameFilter() {
+			public boolean accept(File dir, String name) {
+				return name.endsWith(HEADER_SUFFIX);
+			}
+		});
+		if (hdrFiles == null) {
+			return;
+		}
+
+		Arrays.sort(hdrFiles, new Comparator<File>() {
+			public int compare(File a, File b) {
+				long diff = a.lastModified() - b.lastModified();
+				return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+			}
+		});
+
+		for (File hdrFile : hdrFiles) {
+			String hash = hdrFile.getName().substring(0, hdrFile.getName().length() - HEADER_SUFFIX.length());
+			File bdyFile = getBodyFile(hash);
+			if (bdyFile.exists()) {
+				CacheEntry entry = new CacheEntry(hash, hdrFile.length() + bdyFile.length());
+				index.put(hash, entry);
+				size += entry.size;
+			}
+		}
+	}
+
+	// must be called while holding the lock on this
+	private void compactJournalIfNeeded()
+	{
+		if (redundantOpCount >= REDUNDANT_OP_COMPACT_THRESHOLD && redundantOpCount >= index.size()) {
+			rewriteJournal();
+		}
+	}
+
+	/**
+	 * Writes a journal containing only the current entries, then swaps it in with a rename.
+	 * Must be called while holding the lock on this.
+	 */
+	private void rewriteJournal()
+	{
+		closeJournal();
+
+		File tempFile = new File(cacheDir, JOURNAL_TEMP_FILE);
+		Writer writer = null;
+		try {
+			writer = new BufferedWriter(new FileWriter(tempFile), 8192);
+			writer.write(JOURNAL_MAGIC + "\n" + JOURNAL_VERSION + "\n");
+			for (CacheEntry entry : index.values()) {
+				writer.write(CLEAN + ' ' + entry.hash + ' ' + entry.size + '\n');
+			}
+			writer.close();
+			writer = null;
+
+			if (!tempFile.renameTo(new File(cacheDir, JOURNAL_FILE))) {
+				Log.w(LCAT, "Unable to replace the cache journal");
+			}
+			redundantOpCount = 0;
+
+		} catch (IOException e) {
+			Log.w(LCAT, "Unable to write the cache journal", e);
+
+		} finally {
+			if (writer != null) {
+				try {
+					writer.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+	}
+
+	/**
+	 * Appends a line to the journal. Reads are not flushed right away, losing one only affects LRU order.
+	 * Must be called while holding the lock on this.
+	 */
+	private void journal(String line, boolean flush)
+	{
+		try {
+			if (journalWriter == null) {
+				journalWriter = new BufferedWriter(new FileWriter(new File(cacheDir, JOURNAL_FILE), true), 8192);
+			}
+			journalWriter.write(line);
+			journalWriter.write('\n');
+			if (flush) {
+				journalWriter.flush();
+			}
+
+		} catch (IOException e) {
+			Log.w(LCAT, "Unable to write to the cache journal", e);
+			closeJournal();
+		}
+	}
+
+	// must be called while holding the lock on this
+	private void closeJournal()
+	{
+		if (journalWriter != null) {
+			try {
+				journalWriter.close();
+			} catch (IOException e) {
+				// ignore
+			}
+			journalWriter = null;
+		}
 	}
 
 	private static final void fireCacheCompleted(URI uri)
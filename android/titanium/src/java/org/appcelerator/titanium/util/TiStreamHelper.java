@@ -10,6 +10,7 @@ package org.appcelerator.titanium.util;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 import ti.modules.titanium.BufferProxy;
 
@@ -18,24 +19,24 @@ public class TiStreamHelper
 
 	public static int read(InputStream inputStream, BufferProxy bufferProxy, int offset, int length) throws IOException
 	{
-		byte[] buffer = bufferProxy.getBuffer();
+		ByteBuffer buffer = bufferProxy.getByteBuffer();
 
-		if ((offset + length) > buffer.length) {
-			length = buffer.length - offset;
+		if ((offset + length) > buffer.limit()) {
+			length = buffer.limit() - offset;
 		}
 
-		return inputStream.read(buffer, offset, length);
+		return inputStream.read(buffer.array(), buffer.arrayOffset() + offset, length);
 	}
 
 	public static int write(OutputStream outputStream, BufferProxy bufferProxy, int offset, int length) throws IOException
 	{
-		byte[] buffer = bufferProxy.getBuffer();
+		ByteBuffer buffer = bufferProxy.getByteBuffer();
 
-		if ((offset + length) > buffer.length) {
-			length = buffer.length - offset;
+		if ((offset + length) > buffer.limit()) {
+			length = buffer.limit() - offset;
 		}
 
-		outputStream.write(buffer, offset, length);
+		outputStream.write(buffer.array(), buffer.arrayOffset() + offset, length);
 		outputStream.flush();
 
 		return length;
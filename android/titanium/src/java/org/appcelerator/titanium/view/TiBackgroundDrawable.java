@@ -9,6 +9,7 @@ package org.appcelerator.titanium.view;
 import java.io.IOException;
 import java.util.Arrays;
 
+import org.appcelerator.titanium.util.TiBitmapCache;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
@@ -214,7 +215,10 @@ public class TiBackgroundDrawable extends StateListDrawable {
 	public void releaseDelegate() {
 		if (background != null) {
 			if (background instanceof BitmapDrawable) {
-				((BitmapDrawable)background).getBitmap().recycle();
+				Bitmap bitmap = ((BitmapDrawable)background).getBitmap();
+				if (bitmap != null && !TiBitmapCache.getInstance().isShared(bitmap)) {
+					bitmap.recycle();
+				}
 			}
 			background.setCallback(null);
 			background = null;
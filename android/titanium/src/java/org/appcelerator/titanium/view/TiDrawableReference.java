@@ -7,6 +7,7 @@
 
 package org.appcelerator.titanium.view;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.ref.SoftReference;
@@ -14,6 +15,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.appcelerator.kroll.KrollDict;
@@ -26,8 +28,10 @@ import org.appcelerator.titanium.TiBlob;
 import org.appcelerator.titanium.TiC;
 import org.appcelerator.titanium.TiDimension;
 import org.appcelerator.titanium.io.TiBaseFile;
+import org.appcelerator.titanium.io.TiFile;
 import org.appcelerator.titanium.io.TiFileFactory;
 import org.appcelerator.titanium.util.TiBackgroundImageLoadTask;
+import org.appcelerator.titanium.util.TiBitmapCache;
 import org.appcelerator.titanium.util.TiConvert;
 import org.appcelerator.titanium.util.TiDownloadListener;
 import org.appcelerator.titanium.util.TiDownloadManager;
@@ -51,10 +55,17 @@ import android.webkit.URLUtil;
  */
 public class TiDrawableReference
 {
+	private static final int MAX_BOUNDS_CACHE_SIZE = 256;
 	private static Map<Integer, Bounds> boundsCache;
 	static
 	{
-		boundsCache = Collections.synchronizedMap(new HashMap<Integer, Bounds>());
+		boundsCache = Collections.synchronizedMap(new LinkedHashMap<Integer, Bounds>(32, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, Bounds> eldest)
+			{
+				return size() > MAX_BOUNDS_CACHE_SIZE;
+			}
+		});
 	}
 
 	public enum DrawableReferenceType
@@ -268,6 +279,12 @@ public class TiDrawableReference
 	 */
 	public Bitmap getBitmap()
 	{
+		String cacheKey = getCacheKey(UNKNOWN, UNKNOWN);
+		Bitmap cached = TiBitmapCache.getInstance().getOrLoad(cacheKey);
+		if (cached != null) {
+			return cached;
+		}
+
 		InputStream is = getInputStream();
 		if (is == null) {
 			Log.w(LCAT, "Could not open stream to get bitmap");
@@ -296,9 +313,49 @@ public class TiDrawableReference
 				Log.e(LCAT, "Problem closing stream: " + e.getMessage(), e);
 			}
 		}
+
+		TiBitmapCache.getInstance().put(cacheKey, b);
 		return b;
 	}
 
+	/**
+	 * Builds the key this image is cached under once decoded to the given size. Blobs are not cached
+	 * since their contents can not be identified, and nothing is cached while fastdev serves assets.
+	 * @param width the decoded width, or UNKNOWN for the original size.
+	 * @param height the decoded height, or UNKNOWN for the original size.
+	 * @return the key, or null if this reference can not be cached.
+	 */
+	private String getCacheKey(int width, int height)
+	{
+		if (TiFastDev.isFastDevEnabled()) {
+			return null;
+		}
+
+		if (isTypeUrl() && url != null) {
+			return TiBitmapCache.keyForUrl(url, width, height);
+
+		} else if (isTypeFile() && file != null) {
+			String source = file.nativePath();
+			if (source == null) {
+				return null;
+			}
+			if (file instanceof TiFile) {
+				File nativeFile = ((TiFile) file).getNativeFile();
+				source = "file:" + source + '@' + nativeFile.lastModified() + ':' + nativeFile.length();
+			}
+			return TiBitmapCache.keyForSource(source, width, height);
+
+		} else if (isTypeResourceId() && resourceId != UNKNOWN) {
+			try {
+				return TiBitmapCache.keyForSource("res:" + getResources().getResourceName(resourceId), width, height);
+			} catch (Resources.NotFoundException e) {
+				return null;
+			}
+		}
+
+		return null;
+	}
+
 	private Resources getResources()
 	{
 		return TiApplication.getInstance().getResources();
@@ -522,6 +579,13 @@ public class TiDrawableReference
 			return getBitmap();
 		}
 
+		String cacheKey = getCacheKey(destWidth, destHeight);
+		TiBitmapCache bitmapCache = TiBitmapCache.getInstance();
+		Bitmap cached = bitmapCache.getOrLoad(cacheKey);
+		if (cached != null) {
+			return cached;
+		}
+
 		InputStream is = getInputStream();
 		if (is == null) {
 			Log.w(LCAT, "Could not open stream to get bitmap");
@@ -606,6 +670,9 @@ public class TiDrawableReference
 				Log.e(LCAT, "Problem closing stream: " + e.getMessage(), e);
 			}
 		}
+		if (b == null) {
+			return null;
+		}
 		if (DBG) {
 			StringBuilder sb = new StringBuilder();
 			sb.append("Details of returned bitmap: .getWidth()=" + b.getWidth());
@@ -613,6 +680,10 @@ public class TiDrawableReference
 			sb.append("; getDensity()=" + b.getDensity());
 			Log.d(LCAT, sb.toString());
 		}
+
+		// Downsampled images are also kept on disk so they can be decoded at their final size next time
+		boolean downsampled = b.getWidth() < srcWidth || b.getHeight() < srcHeight;
+		bitmapCache.put(cacheKey, b, downsampled);
 		return b;
 	}
 
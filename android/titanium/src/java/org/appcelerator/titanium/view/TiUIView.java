@@ -14,11 +14,13 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.appcelerator.kroll.KrollDict;
 import org.appcelerator.kroll.KrollPropertyChange;
 import org.appcelerator.kroll.KrollProxy;
 import org.appcelerator.kroll.KrollProxyListener;
+import org.appcelerator.kroll.KrollRuntime;
 import org.appcelerator.kroll.common.Log;
 import org.appcelerator.kroll.common.TiConfig;
 import org.appcelerator.titanium.TiApplication;
@@ -36,6 +38,7 @@ import android.graphics.Paint;
 import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
+import android.os.SystemClock;
 import android.view.GestureDetector;
 import android.view.GestureDetector.SimpleOnGestureListener;
 import android.view.ScaleGestureDetector;
@@ -49,6 +52,7 @@ import android.view.View.OnKeyListener;
 import android.view.View.OnLongClickListener;
 import android.view.View.OnTouchListener;
 import android.view.ViewGroup;
+import android.view.WindowManager;
 import android.view.animation.Animation;
 import android.view.animation.AnimationSet;
 import android.view.inputmethod.InputMethodManager;
@@ -73,6 +77,25 @@ public abstract class TiUIView
 	public static final int SOFT_KEYBOARD_HIDE_ON_FOCUS = 1;
 	public static final int SOFT_KEYBOARD_SHOW_ON_FOCUS = 2;
 
+	/**
+	 * Value of the touchMoveRate property that delivers at most one touchmove event per display frame.
+	 */
+	public static final int TOUCH_MOVE_RATE_FRAME = -1;
+
+	private static final String PROPERTY_TOUCH_MOVE_RATE = "touchMoveRate";
+	private static final long DEFAULT_FRAME_INTERVAL = 16;
+	private static final int MAX_POOLED_EVENT_DICTS = 16;
+
+	private static long frameInterval = 0;
+	private static Boolean eventDictPoolingEnabled;
+	private static ArrayList<PooledEventDict> eventDictPool = new ArrayList<PooledEventDict>(MAX_POOLED_EVENT_DICTS);
+	private static AtomicLong eventDictAllocationCount = new AtomicLong();
+	private static AtomicLong eventDictReuseCount = new AtomicLong();
+	private static AtomicLong touchMoveCount = new AtomicLong();
+	private static AtomicLong touchMoveFiredCount = new AtomicLong();
+	private static AtomicLong touchMoveCoalescedCount = new AtomicLong();
+	private static AtomicLong touchMoveDroppedCount = new AtomicLong();
+
 	protected View nativeView; // Native View object
 
 	protected TiViewProxy proxy;
@@ -93,6 +116,38 @@ public abstract class TiUIView
 
 	private boolean zIndexChanged = false;
 
+	// While a batch of property changes is being applied, layout requests are collapsed into one
+	private boolean batchingPropertyChanges = false;
+	private boolean layoutPending = false;
+
+	// Minimum time between touchmove events in milliseconds, 0 to deliver every one.
+	// While a move is held back only the latest position is kept.
+	private long touchMoveInterval = 0;
+	private boolean touchMovePending = false;
+	private float pendingTouchMoveX, pendingTouchMoveY;
+	private long lastTouchMoveTime = 0;
+	private Runnable touchMoveFlusher = new Runnable() {
+		public void run()
+		{
+			flushTouchMove();
+		}
+	};
+
+	/**
+	 * Event data handed out by {@link #obtainEventDict()}, which goes back to the pool once delivered.
+	 */
+	private static class PooledEventDict extends KrollDict
+	{
+		private static final long serialVersionUID = 1L;
+
+		private boolean pooled = false;
+
+		PooledEventDict()
+		{
+			super(4);
+		}
+	}
+
 	/**
 	 * Constructs a TiUIView object with the associated proxy.
 	 * @param proxy the associated proxy.
@@ -305,6 +360,10 @@ public abstract class TiUIView
 	protected void layoutNativeView()
 	{
 		if (!this.proxy.isLayoutStarted()) {
+			if (batchingPropertyChanges) {
+				layoutPending = true;
+				return;
+			}
 			layoutNativeView(false);
 		}
 	}
@@ -431,6 +490,8 @@ public abstract class TiUIView
 			}
 		} else if (key.equals(TiC.PROPERTY_TOUCH_ENABLED)) {
 			doSetClickable(TiConvert.toBoolean(newValue));
+		} else if (key.equals(PROPERTY_TOUCH_MOVE_RATE)) {
+			setTouchMoveRate(newValue);
 		} else if (key.equals(TiC.PROPERTY_VISIBLE)) {
 			nativeView.setVisibility(TiConvert.toBoolean(newValue) ? View.VISIBLE : View.INVISIBLE);
 		} else if (key.equals(TiC.PROPERTY_ENABLED)) {
@@ -604,13 +665,28 @@ public abstract class TiUIView
 			nativeView.setKeepScreenOn(TiConvert.toBoolean(d, TiC.PROPERTY_KEEP_SCREEN_ON));
 			
 		}
+
+		if (d.containsKey(PROPERTY_TOUCH_MOVE_RATE)) {
+			setTouchMoveRate(d.get(PROPERTY_TOUCH_MOVE_RATE));
+		}
 	}
 
 	// TODO @Override
 	public void propertiesChanged(List<KrollPropertyChange> changes, KrollProxy proxy)
 	{
-		for (KrollPropertyChange change : changes) {
-			propertyChanged(change.getName(), change.getOldValue(), change.getNewValue(), proxy);
+		batchingPropertyChanges = true;
+		try {
+			for (KrollPropertyChange change : changes) {
+				propertyChanged(change.getName(), change.getOldValue(), change.getNewValue(), proxy);
+			}
+
+		} finally {
+			batchingPropertyChanges = false;
+		}
+
+		if (layoutPending) {
+			layoutPending = false;
+			layoutNativeView(false);
 		}
 	}
 	
@@ -691,6 +767,7 @@ public abstract class TiUIView
 		if (DBG) {
 			Log.d(LCAT, "Releasing: " + this);
 		}
+		cancelTouchMove();
 		View nv = getNativeView();
 		if (nv != null) {
 			if (nv instanceof ViewGroup) {
@@ -872,13 +949,191 @@ public abstract class TiUIView
 
 	protected KrollDict dictFromEvent(MotionEvent e)
 	{
-		KrollDict data = new KrollDict();
-		data.put(TiC.EVENT_PROPERTY_X, (double)e.getX());
-		data.put(TiC.EVENT_PROPERTY_Y, (double)e.getY());
+		return dictFromPosition(e.getX(), e.getY());
+	}
+
+	private KrollDict dictFromPosition(float x, float y)
+	{
+		KrollDict data = obtainEventDict();
+		data.put(TiC.EVENT_PROPERTY_X, (double)x);
+		data.put(TiC.EVENT_PROPERTY_Y, (double)y);
 		data.put(TiC.EVENT_PROPERTY_SOURCE, proxy);
 		return data;
 	}
 
+	/**
+	 * Returns an empty dictionary for event data, reusing one from an earlier event when possible.
+	 * It is returned to the pool by {@link TiViewProxy#fireEvent(String, Object)} once the event
+	 * has been delivered, so it must not be kept or fired more than once.
+	 * @return an empty dictionary.
+	 */
+	protected static KrollDict obtainEventDict()
+	{
+		if (!isEventDictPoolingEnabled()) {
+			return new KrollDict();
+		}
+
+		synchronized (eventDictPool) {
+			int size = eventDictPool.size();
+			if (size > 0) {
+				PooledEventDict dict = eventDictPool.remove(size - 1);
+				dict.pooled = false;
+				eventDictReuseCount.incrementAndGet();
+				return dict;
+			}
+		}
+
+		eventDictAllocationCount.incrementAndGet();
+		return new PooledEventDict();
+	}
+
+	/**
+	 * Returns event data obtained from {@link #obtainEventDict()} to the pool. Any other object is ignored.
+	 * @param data the event data, which must no longer be in use.
+	 */
+	public static void recycleEventData(Object data)
+	{
+		if (!(data instanceof PooledEventDict)) {
+			return;
+		}
+
+		PooledEventDict dict = (PooledEventDict) data;
+		synchronized (eventDictPool) {
+			if (dict.pooled || eventDictPool.size() >= MAX_POOLED_EVENT_DICTS) {
+				return;
+			}
+			dict.clear();
+			dict.pooled = true;
+			eventDictPool.add(dict);
+		}
+	}
+
+	// Rhino hands a map to JS as a live wrapper, so event data can only be reused when the runtime copies it
+	private static boolean isEventDictPoolingEnabled()
+	{
+		if (eventDictPoolingEnabled == null) {
+			KrollRuntime runtime = KrollRuntime.getInstance();
+			if (runtime == null) {
+				return false;
+			}
+			eventDictPoolingEnabled = "v8".equals(runtime.getRuntimeName());
+		}
+
+		return eventDictPoolingEnabled;
+	}
+
+	/**
+	 * @return counts of touchmove events received and delivered by views with a touchMoveRate,
+	 * and of event dictionaries allocated and reused.
+	 */
+	public static KrollDict getTouchEventStats()
+	{
+		KrollDict stats = new KrollDict();
+		stats.put("touchMoveCount", touchMoveCount.get());
+		stats.put("touchMoveFiredCount", touchMoveFiredCount.get());
+		stats.put("touchMoveCoalescedCount", touchMoveCoalescedCount.get());
+		stats.put("touchMoveDroppedCount", touchMoveDroppedCount.get());
+		stats.put("eventDictAllocationCount", eventDictAllocationCount.get());
+		stats.put("eventDictReuseCount", eventDictReuseCount.get());
+		synchronized (eventDictPool) {
+			stats.put("eventDictPoolSize", eventDictPool.size());
+		}
+
+		return stats;
+	}
+
+	private void setTouchMoveRate(Object value)
+	{
+		int rate = value == null ? 0 : TiConvert.toInt(value);
+
+		// deliver anything held back under the old rate
+		flushTouchMove();
+		if (rate == TOUCH_MOVE_RATE_FRAME) {
+			touchMoveInterval = getFrameInterval();
+
+		} else if (rate > 0) {
+			touchMoveInterval = Math.max(1, 1000 / rate);
+
+		} else {
+			touchMoveInterval = 0;
+		}
+	}
+
+	// Choreographer is API 16, so frames are approximated from the display's refresh rate
+	private static long getFrameInterval()
+	{
+		if (frameInterval == 0) {
+			frameInterval = DEFAULT_FRAME_INTERVAL;
+			TiApplication app = TiApplication.getInstance();
+			if (app != null) {
+				WindowManager wm = (WindowManager) app.getSystemService(Context.WINDOW_SERVICE);
+				float refreshRate = wm == null ? 0 : wm.getDefaultDisplay().getRefreshRate();
+				if (refreshRate > 0) {
+					frameInterval = Math.max(1, (long) (1000 / refreshRate));
+				}
+			}
+		}
+
+		return frameInterval;
+	}
+
+	private void queueTouchMove(float x, float y)
+	{
+		touchMoveCount.incrementAndGet();
+		pendingTouchMoveX = x;
+		pendingTouchMoveY = y;
+		if (touchMovePending) {
+			touchMoveCoalescedCount.incrementAndGet();
+			return;
+		}
+
+		touchMovePending = true;
+		long delay = lastTouchMoveTime + touchMoveInterval - SystemClock.uptimeMillis();
+		View v = touchView == null ? null : touchView.get();
+		if (delay <= 0 || v == null) {
+			flushTouchMove();
+
+		} else {
+			v.postDelayed(touchMoveFlusher, delay);
+		}
+	}
+
+	private void flushTouchMove()
+	{
+		if (!touchMovePending) {
+			return;
+		}
+
+		touchMovePending = false;
+		View v = touchView == null ? null : touchView.get();
+		if (v != null) {
+			v.removeCallbacks(touchMoveFlusher);
+		}
+
+		lastTouchMoveTime = SystemClock.uptimeMillis();
+		if (proxy != null && proxy.hierarchyHasListener(TiC.EVENT_TOUCH_MOVE)) {
+			touchMoveFiredCount.incrementAndGet();
+			proxy.fireEvent(TiC.EVENT_TOUCH_MOVE, dictFromPosition(pendingTouchMoveX, pendingTouchMoveY));
+
+		} else {
+			touchMoveDroppedCount.incrementAndGet();
+		}
+	}
+
+	private void cancelTouchMove()
+	{
+		if (!touchMovePending) {
+			return;
+		}
+
+		touchMovePending = false;
+		touchMoveDroppedCount.incrementAndGet();
+		View v = touchView == null ? null : touchView.get();
+		if (v != null) {
+			v.removeCallbacks(touchMoveFlusher);
+		}
+	}
+
 	private KrollDict dictFromEvent(KrollDict dictToCopy){
 		KrollDict data = new KrollDict();
 		if (dictToCopy.containsKey(TiC.EVENT_PROPERTY_X)){
@@ -1020,7 +1275,14 @@ public abstract class TiUIView
 
 				String motionEvent = motionEvents.get(event.getAction());
 				if (motionEvent != null) {
-					if (event.getAction() == MotionEvent.ACTION_UP) {
+					if (event.getAction() == MotionEvent.ACTION_MOVE && touchMoveInterval > 0) {
+						if (proxy.hierarchyHasListener(motionEvent)) {
+							queueTouchMove(event.getX(), event.getY());
+						}
+
+					} else if (event.getAction() == MotionEvent.ACTION_UP) {
+						// a held back move goes out before the touch ends
+						flushTouchMove();
 						Rect r = new Rect(0, 0, view.getWidth(), view.getHeight());
 						int actualAction = r.contains((int) event.getX(), (int) event.getY()) ? MotionEvent.ACTION_UP
 							: MotionEvent.ACTION_CANCEL;
@@ -1030,6 +1292,7 @@ public abstract class TiUIView
 							proxy.fireEvent(actualEvent, dictFromEvent(event));
 						}
 					} else {
+						flushTouchMove();
 						if (proxy.hierarchyHasListener(motionEvent)) {
 							proxy.fireEvent(motionEvent, dictFromEvent(event));
 						}
@@ -1,6 +1,6 @@
 /**
  * Appcelerator Titanium Mobile
- * Copyright (c) 2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2011-2012 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the Apache Public License
  * Please see the LICENSE included with this distribution for details.
  */
@@ -8,6 +8,7 @@
 package ti.modules.titanium;
 
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import org.appcelerator.kroll.KrollDict;
@@ -23,7 +24,12 @@ import org.appcelerator.titanium.util.TiConvert;
 import ti.modules.titanium.codec.CodecModule;
 
 /**
- * A proxy that wraps a primitive byte array buffer
+ * A proxy that wraps a byte buffer.
+ *
+ * The contents are held in a {@link ByteBuffer} whose capacity can be larger than the buffer's
+ * length, and which grows geometrically, so appending and resizing take amortized constant time
+ * per byte. Slices share storage with the buffer they were taken from until either of them
+ * grows past its capacity.
  */
 @Kroll.proxy(creatableInModule=TitaniumModule.class, propertyAccessors = {
 	TiC.PROPERTY_BYTE_ORDER,
@@ -35,20 +41,37 @@ public class BufferProxy extends KrollProxy
 	private static final String LCAT = "BufferProxy";
 	private static final boolean DBG = TiConfig.LOGD;
 
-	private byte[] buffer;
+	private static final int MIN_GROWTH = 16;
+
+	// bytes [0, length) of data are the contents, data's capacity is the allocated space
+	private ByteBuffer data;
+	private int length;
+	// the allocation data is a view of, shared by all slices of the same storage
+	private ByteBuffer storage;
 
 	public BufferProxy()
 	{
+		this(0);
 	}
 
 	public BufferProxy(int bufferSize)
 	{
-		buffer = new byte[bufferSize];
+		setStorage(ByteBuffer.allocate(bufferSize));
+		length = bufferSize;
 	}
 
 	public BufferProxy(byte[] existingBuffer)
 	{
-		buffer = existingBuffer;
+		setStorage(ByteBuffer.wrap(existingBuffer));
+		length = existingBuffer.length;
+	}
+
+	// a slice sharing storage with another buffer
+	private BufferProxy(ByteBuffer view, ByteBuffer storage)
+	{
+		this.data = view;
+		this.storage = storage;
+		length = view.capacity();
 	}
 
 	@Override
@@ -56,7 +79,8 @@ public class BufferProxy extends KrollProxy
 	{
 		// If no arguments are provided in create, allocate an empty buffer.
 		if (args.length == 0) {
-			buffer = new byte[0];
+			setStorage(ByteBuffer.allocate(0));
+			length = 0;
 		} else {
 			super.handleCreationArgs(createdInModule, args);
 		}
@@ -79,7 +103,9 @@ public class BufferProxy extends KrollProxy
 			setProperty(TiC.PROPERTY_BYTE_ORDER, CodecModule.getByteOrder(null));
 		}
 
-		buffer = new byte[length];
+		setStorage(ByteBuffer.allocate(length));
+		this.length = length;
+
 		Object value = dict.get(TiC.PROPERTY_VALUE);
 		if (value instanceof Number) {
 			encodeNumber((Number) value, dict);
@@ -95,12 +121,12 @@ public class BufferProxy extends KrollProxy
 			throw new IllegalArgumentException("data is a Number, but no type was given");
 		}
 
-		if (buffer.length == 0) {
-			buffer = new byte[CodecModule.getWidth(type)];
+		if (length == 0) {
+			resize(CodecModule.getWidth(type));
 		}
 
 		int byteOrder = CodecModule.getByteOrder(dict.get(TiC.PROPERTY_BYTE_ORDER));
-		CodecModule.encodeNumber(value, type, buffer, 0, byteOrder);
+		CodecModule.encodeNumber(value, type, getByteBuffer(), 0, byteOrder);
 	}
 
 	protected void encodeString(String value, KrollDict dict)
@@ -113,10 +139,14 @@ public class BufferProxy extends KrollProxy
 		String charset = CodecModule.getCharset(type);
 		try {
 			byte bytes[] = value.getBytes(charset);
-			if (buffer.length == 0) {
-				buffer = bytes;
+			if (length == 0) {
+				setStorage(ByteBuffer.wrap(bytes));
+				length = bytes.length;
 			} else {
-				System.arraycopy(bytes, 0, buffer, 0, bytes.length);
+				if (length == 0) {
+					resize(bytes.length);
+				}
+				put(0, bytes, 0, bytes.length);
 			}
 		} catch (UnsupportedEncodingException e) {
 			Log.w(LCAT, e.getMessage(), e);
@@ -124,48 +154,74 @@ public class BufferProxy extends KrollProxy
 		}
 	}
 
+	private void setStorage(ByteBuffer buffer)
+	{
+		data = buffer;
+		storage = buffer;
+	}
+
 	/**
+	 * Returns the contents as an array of exactly {@link #getLength()} bytes. Writes to the array
+	 * change the buffer. If the buffer has spare capacity or is a slice, its contents are
+	 * first moved into an array of their own, which detaches it from any slices; prefer
+	 * {@link #getByteBuffer()} where a ByteBuffer will do.
 	 * @return The native buffer for this proxy
 	 * @module.api
 	 */
 	public byte[] getBuffer()
 	{
-		return buffer;
+		if (!data.hasArray() || data.arrayOffset() != 0 || data.array().length != length) {
+			if (DBG) {
+				Log.d(LCAT, "Copying " + length + " bytes for getBuffer()");
+			}
+			byte[] exact = copyBytes(0, length);
+			setStorage(ByteBuffer.wrap(exact));
+		}
+		return data.array();
+	}
+
+	/**
+	 * @return a view of the contents, from position 0 to a limit of {@link #getLength()}. The view
+	 * shares storage with this buffer until the buffer grows past its capacity.
+	 * @module.api
+	 */
+	public ByteBuffer getByteBuffer()
+	{
+		ByteBuffer view = data.duplicate();
+		view.limit(length);
+		return view.slice();
 	}
 
 	@Override
 	public Object getIndexedProperty(int index)
 	{
-		return buffer[index] & 0xFF;
+		checkIndex(index);
+		return data.get(index) & 0xFF;
 	}
 
 	@Override
 	public void setIndexedProperty(int index, Object value)
 	{
 		if (value instanceof Number) {
-			buffer[index] = ((Number)value).byteValue();
+			checkIndex(index);
+			data.put(index, ((Number)value).byteValue());
 		} else {
 			super.setIndexedProperty(index, value);
 		}
 	}
 
-	protected byte[] copyOf(byte[] array, int newLength)
+	private void checkIndex(int index)
 	{
-		byte newArray[] = new byte[newLength];
-		int length = newLength;
-		if (length > array.length) {
-			length = array.length;
+		if (index < 0 || index >= length) {
+			throw new IndexOutOfBoundsException("index " + index + " is outside of the buffer length: " + length);
 		}
-		System.arraycopy(array, 0, newArray, 0, length);
-		return newArray;
 	}
 
-	protected byte[] copyOfRange(byte[] array, int from, int to)
+	private static void checkRange(int offset, int count, int length)
 	{
-		int length = to - from;
-		byte newArray[] = new byte[length];
-		System.arraycopy(array, from, newArray, 0, length);
-		return newArray;
+		if (offset < 0 || count < 0 || offset + count > length) {
+			throw new IndexOutOfBoundsException("offset of " + offset + " and length of " + count + " is outside of the buffer length: " + length);
+		}
 	}
 
 	protected void validateOffsetAndLength(int offset, int length, int bufferLength)
@@ -175,6 +231,110 @@ public class BufferProxy extends KrollProxy
 		}
 	}
 
+	/**
+	 * Makes room for at least minCapacity bytes, growing by half again the current capacity so
+	 * repeated appends copy each byte a constant number of times on average.
+	 */
+	private void ensureCapacity(int minCapacity)
+	{
+		int capacity = data.capacity();
+		if (minCapacity <= capacity) {
+			return;
+		}
+
+		int newCapacity = Math.max(minCapacity, Math.max(capacity + (capacity >> 1), MIN_GROWTH));
+		ByteBuffer grown = ByteBuffer.allocate(newCapacity);
+		ByteBuffer contents = data.duplicate();
+		contents.clear().limit(length);
+		grown.put(contents);
+		grown.clear();
+
+		// slices keep the old storage
+		setStorage(grown);
+	}
+
+	// Moves count bytes within this buffer, the ranges may overlap
+	private void move(int from, int to, int count)
+	{
+		if (count == 0 || from == to) {
+			return;
+		}
+
+		if (data.hasArray()) {
+			int base = data.arrayOffset();
+			System.arraycopy(data.array(), base + from, data.array(), base + to, count);
+		} else {
+			put(to, copyBytes(from, count), 0, count);
+		}
+	}
+
+	// Copies bytes into [position, position + count), which must be within the capacity
+	private void put(int position, byte[] source, int sourceOffset, int count)
+	{
+		if (data.hasArray()) {
+			System.arraycopy(source, sourceOffset, data.array(), data.arrayOffset() + position, count);
+		} else {
+			ByteBuffer target = data.duplicate();
+			target.clear().position(position);
+			target.put(source, sourceOffset, count);
+		}
+	}
+
+	// Copies count bytes from another buffer into [position, position + count) of this one
+	private void put(int position, BufferProxy source, int sourceOffset, int count)
+	{
+		if (count == 0) {
+			return;
+		}
+
+		if (data.hasArray() && source.data.hasArray()) {
+			// arraycopy handles overlapping ranges when both share an array
+			System.arraycopy(source.data.array(), source.data.arrayOffset() + sourceOffset,
+				data.array(), data.arrayOffset() + position, count);
+
+		} else if (source.storage == storage) {
+			put(position, source.copyBytes(sourceOffset, count), 0, count);
+
+		} else {
+			ByteBuffer from = source.data.duplicate();
+			from.clear().position(sourceOffset);
+			from.limit(sourceOffset + count);
+			ByteBuffer target = data.duplicate();
+			target.clear().position(position);
+			target.put(from);
+		}
+	}
+
+	private byte[] copyBytes(int offset, int count)
+	{
+		byte[] bytes = new byte[count];
+		if (data.hasArray()) {
+			System.arraycopy(data.array(), data.arrayOffset() + offset, bytes, 0, count);
+		} else {
+			ByteBuffer from = data.duplicate();
+			from.clear().position(offset);
+			from.get(bytes, 0, count);
+		}
+		return bytes;
+	}
+
+	private void zero(int offset, int count)
+	{
+		fillRange(offset, count, (byte) 0);
+	}
+
+	private void fillRange(int offset, int count, byte value)
+	{
+		if (data.hasArray()) {
+			int start = data.arrayOffset() + offset;
+			Arrays.fill(data.array(), start, start + count, value);
+		} else {
+			for (int i = offset; i < offset + count; i++) {
+				data.put(i, value);
+			}
+		}
+	}
+
 	/**
 	 * Writes data from sourceBuffer into this.
 	 * @param position the offset position of this buffer.
@@ -186,11 +346,32 @@ public class BufferProxy extends KrollProxy
 	 */
 	public int write(int position, byte[] sourceBuffer, int sourceOffset, int sourceLength)
 	{
-		if ((position + sourceLength) > buffer.length) {
-			buffer = copyOf(buffer, (position + sourceLength));
+		if ((position + sourceLength) > length) {
+			resize(position + sourceLength);
 		}
 
-		System.arraycopy(sourceBuffer, sourceOffset, buffer, position, sourceLength);
+		put(position, sourceBuffer, sourceOffset, sourceLength);
+
+		return sourceLength;
+	}
+
+	/**
+	 * Writes data from another buffer into this, growing this buffer if needed.
+	 * @param position the offset position of this buffer.
+	 * @param source the buffer to write from.
+	 * @param sourceOffset the offset position in source.
+	 * @param sourceLength the number of bytes to write.
+	 * @return number of bytes written.
+	 * @module.api
+	 */
+	public int write(int position, BufferProxy source, int sourceOffset, int sourceLength)
+	{
+		checkRange(sourceOffset, sourceLength, source.length);
+		if ((position + sourceLength) > length) {
+			resize(position + sourceLength);
+		}
+
+		put(position, source, sourceOffset, sourceLength);
 
 		return sourceLength;
 	}
@@ -198,24 +379,24 @@ public class BufferProxy extends KrollProxy
 	@Kroll.method
 	public int append(Object[] args)
 	{
-		int destLength = buffer.length;
+		int destLength = length;
 		BufferProxy src = (BufferProxy) args[0];
-		byte[] sourceBuffer = src.getBuffer();
 
 		int offset = 0;
 		if (args.length > 1 && args[1] != null) {
 			offset = TiConvert.toInt(args[1]);
 		}
 
-		int sourceLength = sourceBuffer.length;
+		int sourceLength = src.length;
 		if (args.length > 2 && args[2] != null) {
 			sourceLength = TiConvert.toInt(args[2]);
 		}
 
-		validateOffsetAndLength(offset, sourceLength, sourceBuffer.length);
+		validateOffsetAndLength(offset, sourceLength, src.length);
+		checkRange(offset, sourceLength, src.length);
 
-		buffer = copyOf(buffer, (destLength + sourceLength));
-		System.arraycopy(sourceBuffer, offset, buffer, destLength, sourceLength);
+		resize(destLength + sourceLength);
+		put(destLength, src, offset, sourceLength);
 		return sourceLength;
 	}
 
@@ -226,7 +407,6 @@ public class BufferProxy extends KrollProxy
 			throw new IllegalArgumentException("At least 2 arguments required for insert: src, offset");
 		}
 		BufferProxy sourceBufferProxy = (BufferProxy) args[0];
-		byte[] sourceBuffer = sourceBufferProxy.getBuffer();
 		int offset = TiConvert.toInt(args[1]);
 
 		int sourceOffset = 0;
@@ -234,20 +414,30 @@ public class BufferProxy extends KrollProxy
 			sourceOffset = TiConvert.toInt(args[2]);
 		}
 
-		int sourceLength = sourceBuffer.length;
+		int sourceLength = sourceBufferProxy.length;
 		if (args.length > 3 && args[3] != null) {
 			sourceLength = TiConvert.toInt(args[3]);
 		}
 
-		validateOffsetAndLength(sourceOffset, sourceLength, sourceBuffer.length);
+		validateOffsetAndLength(sourceOffset, sourceLength, sourceBufferProxy.length);
+		checkRange(sourceOffset, sourceLength, sourceBufferProxy.length);
+		checkRange(offset, 0, length);
+
+		// the source may share storage with this buffer, take its bytes before moving ours
+		byte[] sourceBytes = null;
+		if (sourceBufferProxy.storage == storage) {
+			sourceBytes = sourceBufferProxy.copyBytes(sourceOffset, sourceLength);
+		}
 
-		byte[] preInsertBuffer = copyOf(buffer, offset);
-		byte[] postInsertBuffer = copyOfRange(buffer, offset, buffer.length);
+		int oldLength = length;
+		resize(oldLength + sourceLength);
+		move(offset, offset + sourceLength, oldLength - offset);
 
-		buffer = new byte[(preInsertBuffer.length + sourceLength + postInsertBuffer.length)];
-		System.arraycopy(preInsertBuffer, 0, buffer, 0, preInsertBuffer.length);
-		System.arraycopy(sourceBuffer, sourceOffset, buffer, preInsertBuffer.length, sourceLength);
-		System.arraycopy(postInsertBuffer, 0, buffer, (preInsertBuffer.length + sourceLength), postInsertBuffer.length);
+		if (sourceBytes != null) {
+			put(offset, sourceBytes, 0, sourceLength);
+		} else {
+			put(offset, sourceBufferProxy, sourceOffset, sourceLength);
+		}
 
 		return sourceLength;
 	}
@@ -260,7 +450,6 @@ public class BufferProxy extends KrollProxy
 		}
 
 		BufferProxy sourceBufferProxy = (BufferProxy) args[0];
-		byte[] sourceBuffer = sourceBufferProxy.getBuffer();
 
 		int offset = 0;
 		if (args.length > 1 && args[1] != null) {
@@ -272,14 +461,16 @@ public class BufferProxy extends KrollProxy
 			sourceOffset = TiConvert.toInt(args[2]);
 		}
 
-		int sourceLength = sourceBuffer.length;
+		int sourceLength = sourceBufferProxy.length;
 		if (args.length > 3 && args[3] != null) {
 			sourceLength = TiConvert.toInt(args[3]);
 		}
 
-		validateOffsetAndLength(sourceOffset, sourceLength, sourceBuffer.length);
+		validateOffsetAndLength(sourceOffset, sourceLength, sourceBufferProxy.length);
+		checkRange(sourceOffset, sourceLength, sourceBufferProxy.length);
+		checkRange(offset, sourceLength, length);
 
-		System.arraycopy(sourceBuffer, sourceOffset, buffer, offset, sourceLength);
+		put(offset, sourceBufferProxy, sourceOffset, sourceLength);
 		return sourceLength;
 	}
 
@@ -291,14 +482,48 @@ public class BufferProxy extends KrollProxy
 			offset = TiConvert.toInt(args[0]);
 		}
 
-		int length = buffer.length;
+		int length = this.length;
+		if (args.length > 1 && args[1] != null) {
+			length = TiConvert.toInt(args[1]);
+		}
+
+		validateOffsetAndLength(offset, length, this.length);
+		checkRange(offset, length, this.length);
+
+		BufferProxy clone = new BufferProxy(length);
+		clone.put(0, this, offset, length);
+		return clone;
+	}
+
+	/**
+	 * Returns a buffer sharing storage with this one, so changes to either are seen by both.
+	 * A slice can't grow into the rest of this buffer: growing it, or growing this buffer past
+	 * its capacity, moves it to storage of its own.
+	 */
+	@Kroll.method
+	public BufferProxy slice(Object[] args)
+	{
+		int offset = 0;
+		if (args.length > 0 && args[0] != null) {
+			offset = TiConvert.toInt(args[0]);
+		}
+
+		int length = this.length - offset;
 		if (args.length > 1 && args[1] != null) {
 			length = TiConvert.toInt(args[1]);
 		}
 
-		validateOffsetAndLength(offset, length, buffer.length);
+		checkRange(offset, length, this.length);
+
+		ByteBuffer view = data.duplicate();
+		view.clear().position(offset);
+		view.limit(offset + length);
 
-		return new BufferProxy(copyOfRange(buffer, offset, offset+length));
+		BufferProxy slice = new BufferProxy(view.slice(), storage);
+		if (hasProperty(TiC.PROPERTY_BYTE_ORDER)) {
+			slice.setProperty(TiC.PROPERTY_BYTE_ORDER, getProperty(TiC.PROPERTY_BYTE_ORDER));
+		}
+		return slice;
 	}
 
 	@Kroll.method
@@ -314,38 +539,43 @@ public class BufferProxy extends KrollProxy
 			offset = TiConvert.toInt(args[1]);
 		}
 
-		int length = buffer.length;
+		int length = this.length;
 		if (args.length > 2 && args[2] != null) {
 			length = TiConvert.toInt(args[2]);
 		}
 
-		validateOffsetAndLength(offset, length, buffer.length);
+		validateOffsetAndLength(offset, length, this.length);
+		checkRange(offset, length, this.length);
 
-		Arrays.fill(buffer, offset, (offset + length), (byte)fillByte);
+		fillRange(offset, length, (byte)fillByte);
 	}
 
 	@Kroll.method
 	public void clear()
 	{
-		Arrays.fill(buffer, (byte)0);
+		zero(0, length);
 	}
 
 	@Kroll.method
 	public void release()
 	{
-		buffer = new byte[0];
+		setStorage(ByteBuffer.allocate(0));
+		length = 0;
 	}
 
 	@Kroll.method
 	public String toString()
 	{
-		return new String(buffer);
+		if (data.hasArray()) {
+			return new String(data.array(), data.arrayOffset(), length);
+		}
+		return new String(copyBytes(0, length));
 	}
 
 	@Kroll.method
 	public TiBlob toBlob()
 	{
-		return TiBlob.blobFromData(buffer);
+		return TiBlob.blobFromData(getBuffer());
 	}
 
 	/**
@@ -355,7 +585,7 @@ public class BufferProxy extends KrollProxy
 	@Kroll.getProperty @Kroll.method
 	public int getLength()
 	{
-		return buffer.length;
+		return length;
 	}
 
 	/**
@@ -370,9 +600,23 @@ public class BufferProxy extends KrollProxy
 		resize(length);
 	}
 
+	/**
+	 * Changes the length of the buffer. Shrinking keeps the allocated space for later growth,
+	 * growing only allocates once the capacity is used up. New bytes are zero.
+	 * @param length the new length in bytes.
+	 * @module.api
+	 */
 	public void resize(int length)
 	{
-		buffer = copyOf(buffer, length);
+		if (length < 0) {
+			throw new IllegalArgumentException("length can't be negative: " + length);
+		}
+
+		if (length > this.length) {
+			ensureCapacity(length);
+			// bytes past the old length may be left over from before a shrink
+			zero(this.length, length - this.length);
+		}
+		this.length = length;
 	}
 }
-
@@ -7,7 +7,9 @@
 package ti.modules.titanium.codec;
 
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.HashMap;
 
 import org.appcelerator.kroll.KrollDict;
 import org.appcelerator.kroll.KrollModule;
@@ -38,6 +40,14 @@ public class CodecModule extends KrollModule
 	@Kroll.constant public static final String TYPE_LONG = "long";
 	@Kroll.constant public static final String TYPE_DOUBLE = "double";
 
+	// Type codes resolved once per decodeStruct field, so records aren't dispatched on type strings
+	private static final int CODE_BYTE = 0;
+	private static final int CODE_SHORT = 1;
+	private static final int CODE_INT = 2;
+	private static final int CODE_FLOAT = 3;
+	private static final int CODE_LONG = 4;
+	private static final int CODE_DOUBLE = 5;
+
 	@Kroll.constant public static final int BIG_ENDIAN = 0;
 	@Kroll.constant public static final int LITTLE_ENDIAN = 1;
 
@@ -64,42 +74,38 @@ public class CodecModule extends KrollModule
 			position = TiConvert.toInt(args, TiC.PROPERTY_POSITION);
 		}
 
-		byte buffer[] = dest.getBuffer();
-		return encodeNumber(src, type, buffer, position, byteOrder);
+		return encodeNumber(src, type, dest.getByteBuffer(), position, byteOrder);
 	}
 
 	public static int encodeNumber(Number src, String type, byte dest[], int position, int byteOrder)
 	{
-		long l = src.longValue();
+		return encodeNumber(src, type, ByteBuffer.wrap(dest), position, byteOrder);
+	}
+
+	/**
+	 * Encodes a number at an absolute position, without changing the buffer's position.
+	 * @return the position after the encoded number.
+	 */
+	public static int encodeNumber(Number src, String type, ByteBuffer dest, int position, int byteOrder)
+	{
+		dest.order(toByteOrder(byteOrder));
 		if (type.equals(TYPE_BYTE)) {
-			dest[position] = (byte)(l & 0xFF);
+			dest.put(position, (byte) src.longValue());
 			return position+1;
 		} else if (type.equals(TYPE_SHORT)) {
-			int bits = byteOrder == BIG_ENDIAN ? 8 : 0;
-			int step = byteOrder == BIG_ENDIAN ? -8 : 8;
-			for (int i = position; i < position+2; i++, bits += step) {
-				dest[i] = (byte)((l >>> bits) & 0xFF);
-			}
+			dest.putShort(position, (short) src.longValue());
 			return position+2;
-		} else if (type.equals(TYPE_INT) || type.equals(TYPE_FLOAT)) {
-			if (type.equals(TYPE_FLOAT)) {
-				l = Float.floatToIntBits(src.floatValue());
-			}
-			int bits = byteOrder == BIG_ENDIAN ? 24 : 0;
-			int step = byteOrder == BIG_ENDIAN ? -8 : 8;
-			for (int j = position; j < position+4; j++, bits += step) {
-				dest[j] = (byte)((l >>> bits) & 0xFF);
-			}
+		} else if (type.equals(TYPE_INT)) {
+			dest.putInt(position, (int) src.longValue());
 			return position+4;
-		} else if (type.equals(TYPE_LONG) || type.equals(TYPE_DOUBLE)) {
-			if (type.equals(TYPE_DOUBLE)) {
-				l = Double.doubleToLongBits(src.doubleValue());
-			}
-			int bits = byteOrder == BIG_ENDIAN ? 56 : 0;
-			int step = byteOrder == BIG_ENDIAN ? -8 : 8;
-			for (int i = position; i < position+8; i++, bits += step) {
-				dest[i] = (byte)((l >>> bits) & 0xFF);
-			}
+		} else if (type.equals(TYPE_FLOAT)) {
+			dest.putFloat(position, src.floatValue());
+			return position+4;
+		} else if (type.equals(TYPE_LONG)) {
+			dest.putLong(position, src.longValue());
+			return position+8;
+		} else if (type.equals(TYPE_DOUBLE)) {
+			dest.putDouble(position, src.doubleValue());
 			return position+8;
 		}
 		return position;
@@ -124,45 +130,319 @@ public class CodecModule extends KrollModule
 			position = TiConvert.toInt(args, TiC.PROPERTY_POSITION);
 		}
 
-		byte src[] = buffer.getBuffer();
+		return decodeNumber(buffer.getByteBuffer(), type, position, byteOrder);
+	}
+
+	/**
+	 * Decodes a number at an absolute position, without changing the buffer's position.
+	 * Bytes are signed and shorts unsigned.
+	 */
+	public static Object decodeNumber(ByteBuffer src, String type, int position, int byteOrder)
+	{
+		src.order(toByteOrder(byteOrder));
 		if (type.equals(TYPE_BYTE)) {
-			return src[position];
-		}
-		else if (type.equals(TYPE_SHORT)) {
-			short s1 = (short) (src[position] & 0xFF);
-			short s2 = (short) (src[position + 1] & 0xFF);
-			switch (byteOrder) {
-				case BIG_ENDIAN:
-					return ((s1 << 8) + s2);
-				case LITTLE_ENDIAN:
-					return ((s2 << 8) + s1);
+			return src.get(position);
+		} else if (type.equals(TYPE_SHORT)) {
+			return src.getShort(position) & 0xFFFF;
+		} else if (type.equals(TYPE_INT)) {
+			return src.getInt(position);
+		} else if (type.equals(TYPE_FLOAT)) {
+			return src.getFloat(position);
+		} else if (type.equals(TYPE_LONG)) {
+			return src.getLong(position);
+		} else if (type.equals(TYPE_DOUBLE)) {
+			return src.getDouble(position);
+		}
+		return 0;
+	}
+
+	/**
+	 * Encodes an array of numbers of the same type in one call, instead of one encodeNumber call per value.
+	 * @return the position after the last encoded number.
+	 */
+	@Kroll.method
+	public int encodeNumbers(KrollDict args)
+	{
+		if (!args.containsKey(TiC.PROPERTY_DEST)) {
+			throw new IllegalArgumentException("dest was not specified for encodeNumbers");
+		}
+		if (!(args.get(TiC.PROPERTY_SOURCE) instanceof Object[])) {
+			throw new IllegalArgumentException("src array was not specified for encodeNumbers");
+		}
+		if (!args.containsKey(TiC.PROPERTY_TYPE)) {
+			throw new IllegalArgumentException("type was not specified for encodeNumbers");
+		}
+
+		BufferProxy dest = (BufferProxy) args.get(TiC.PROPERTY_DEST);
+		Object[] src = (Object[]) args.get(TiC.PROPERTY_SOURCE);
+		String type = TiConvert.toString(args, TiC.PROPERTY_TYPE);
+		int byteOrder = getByteOrder(args.get(TiC.PROPERTY_BYTE_ORDER));
+
+		int position = 0;
+		if (args.containsKey(TiC.PROPERTY_POSITION)) {
+			position = TiConvert.toInt(args, TiC.PROPERTY_POSITION);
+		}
+
+		return encodeNumbers(src, type, dest.getByteBuffer(), position, byteOrder);
+	}
+
+	/**
+	 * Encodes numbers starting at an absolute position, through a typed view of dest.
+	 * @return the position after the last encoded number.
+	 */
+	public static int encodeNumbers(Object[] src, String type, ByteBuffer dest, int position, int byteOrder)
+	{
+		int width = validateType(type);
+		int count = src.length;
+		validateRegion(position, count * width, dest.limit());
+
+		ByteBuffer view = dest.duplicate();
+		view.order(toByteOrder(byteOrder));
+		view.position(position);
+
+		if (type.equals(TYPE_BYTE)) {
+			byte values[] = new byte[count];
+			for (int i = 0; i < count; i++) {
+				values[i] = (byte) ((Number) src[i]).longValue();
+			}
+			view.put(values);
+		} else if (type.equals(TYPE_SHORT)) {
+			short values[] = new short[count];
+			for (int i = 0; i < count; i++) {
+				values[i] = (short) ((Number) src[i]).longValue();
 			}
-		} else if (type.equals(TYPE_INT) || type.equals(TYPE_FLOAT)) {
-			int bits = 0;
-			int shiftBits = byteOrder == BIG_ENDIAN ? 24 : 0;
-			int step = byteOrder == BIG_ENDIAN ? -8 : 8;
-			for (int i = 0; i < 4; i++, shiftBits += step) {
-				int part = (int) (src[position + i] & 0xFF);
-				bits += (part << shiftBits);
+			view.asShortBuffer().put(values);
+		} else if (type.equals(TYPE_INT)) {
+			int values[] = new int[count];
+			for (int i = 0; i < count; i++) {
+				values[i] = (int) ((Number) src[i]).longValue();
 			}
-			if (type.equals(TYPE_FLOAT)) {
-				return Float.intBitsToFloat(bits);
+			view.asIntBuffer().put(values);
+		} else if (type.equals(TYPE_FLOAT)) {
+			float values[] = new float[count];
+			for (int i = 0; i < count; i++) {
+				values[i] = ((Number) src[i]).floatValue();
 			}
-			return bits;
-		} else if (type.equals(TYPE_LONG) || type.equals(TYPE_DOUBLE)) {
-			long bits = 0;
-			int shiftBits = byteOrder == BIG_ENDIAN ? 56 : 0;
-			int step = byteOrder == BIG_ENDIAN ? -8 : 8;
-			for (int i = 0; i < 8; i++, shiftBits += step) {
-				long part = (long) (src[position + i] & 0xFF);
-				bits += (part << shiftBits);
+			view.asFloatBuffer().put(values);
+		} else if (type.equals(TYPE_LONG)) {
+			long values[] = new long[count];
+			for (int i = 0; i < count; i++) {
+				values[i] = ((Number) src[i]).longValue();
 			}
-			if (type.equals(TYPE_DOUBLE)) {
-				return Double.longBitsToDouble(bits);
+			view.asLongBuffer().put(values);
+		} else {
+			double values[] = new double[count];
+			for (int i = 0; i < count; i++) {
+				values[i] = ((Number) src[i]).doubleValue();
 			}
-			return bits;
+			view.asDoubleBuffer().put(values);
 		}
-		return 0;
+
+		return position + count * width;
+	}
+
+	/**
+	 * Decodes consecutive numbers of the same type in one call. The result is returned as a
+	 * primitive array so it crosses into JavaScript as a single array.
+	 */
+	@Kroll.method
+	public Object decodeNumbers(KrollDict args)
+	{
+		if (!args.containsKey(TiC.PROPERTY_SOURCE)) {
+			throw new IllegalArgumentException("src was not specified for decodeNumbers");
+		}
+		if (!args.containsKey(TiC.PROPERTY_TYPE)) {
+			throw new IllegalArgumentException("type was not specified for decodeNumbers");
+		}
+
+		BufferProxy buffer = (BufferProxy) args.get(TiC.PROPERTY_SOURCE);
+		ByteBuffer src = buffer.getByteBuffer();
+		String type = TiConvert.toString(args, TiC.PROPERTY_TYPE);
+		int byteOrder = getByteOrder(args.get(TiC.PROPERTY_BYTE_ORDER));
+		int width = validateType(type);
+
+		int position = 0;
+		if (args.containsKey(TiC.PROPERTY_POSITION)) {
+			position = TiConvert.toInt(args, TiC.PROPERTY_POSITION);
+		}
+		int count = Math.max(0, src.limit() - position) / width;
+		if (args.containsKey(TiC.PROPERTY_COUNT)) {
+			count = TiConvert.toInt(args, TiC.PROPERTY_COUNT);
+		}
+
+		return decodeNumbers(src, type, position, count, byteOrder);
+	}
+
+	/**
+	 * Decodes count numbers starting at an absolute position, through a typed view of src.
+	 * Bytes and shorts are returned as an int array (bytes signed, shorts unsigned, as in decodeNumber),
+	 * the other types as an array of the matching primitive type.
+	 */
+	public static Object decodeNumbers(ByteBuffer src, String type, int position, int count, int byteOrder)
+	{
+		int width = validateType(type);
+		validateRegion(position, count * width, src.limit());
+
+		ByteBuffer view = src.duplicate();
+		view.order(toByteOrder(byteOrder));
+		view.position(position);
+
+		if (type.equals(TYPE_BYTE)) {
+			byte bytes[] = new byte[count];
+			view.get(bytes);
+			int values[] = new int[count];
+			for (int i = 0; i < count; i++) {
+				values[i] = bytes[i];
+			}
+			return values;
+		} else if (type.equals(TYPE_SHORT)) {
+			short shorts[] = new short[count];
+			view.asShortBuffer().get(shorts);
+			int values[] = new int[count];
+			for (int i = 0; i < count; i++) {
+				values[i] = shorts[i] & 0xFFFF;
+			}
+			return values;
+		} else if (type.equals(TYPE_INT)) {
+			int values[] = new int[count];
+			view.asIntBuffer().get(values);
+			return values;
+		} else if (type.equals(TYPE_FLOAT)) {
+			float values[] = new float[count];
+			view.asFloatBuffer().get(values);
+			return values;
+		} else if (type.equals(TYPE_LONG)) {
+			long values[] = new long[count];
+			view.asLongBuffer().get(values);
+			return values;
+		} else {
+			double values[] = new double[count];
+			view.asDoubleBuffer().get(values);
+			return values;
+		}
+	}
+
+	/**
+	 * Decodes repeated fixed-size records in a single pass. The layout is an array of
+	 * {name, type} fields in record order; fields without a name are padding and are skipped.
+	 * @return a dictionary mapping each field name to an array of its values, one per record.
+	 */
+	@SuppressWarnings("unchecked")
+	@Kroll.method
+	public KrollDict decodeStruct(KrollDict args)
+	{
+		if (!args.containsKey(TiC.PROPERTY_SOURCE)) {
+			throw new IllegalArgumentException("src was not specified for decodeStruct");
+		}
+		if (!(args.get(TiC.PROPERTY_LAYOUT) instanceof Object[])) {
+			throw new IllegalArgumentException("layout array was not specified for decodeStruct");
+		}
+
+		BufferProxy buffer = (BufferProxy) args.get(TiC.PROPERTY_SOURCE);
+		Object[] layout = (Object[]) args.get(TiC.PROPERTY_LAYOUT);
+		int byteOrder = getByteOrder(args.get(TiC.PROPERTY_BYTE_ORDER));
+
+		int fieldCount = layout.length;
+		String names[] = new String[fieldCount];
+		int types[] = new int[fieldCount];
+		int offsets[] = new int[fieldCount];
+		int recordSize = 0;
+		for (int i = 0; i < fieldCount; i++) {
+			if (!(layout[i] instanceof HashMap)) {
+				throw new IllegalArgumentException("layout field " + i + " is not a dictionary");
+			}
+			HashMap<String, Object> field = (HashMap<String, Object>) layout[i];
+			names[i] = TiConvert.toString(field, TiC.PROPERTY_NAME);
+			String type = TiConvert.toString(field, TiC.PROPERTY_TYPE);
+			types[i] = getTypeCode(type);
+			offsets[i] = recordSize;
+			recordSize += validateType(type);
+		}
+		if (recordSize == 0) {
+			throw new IllegalArgumentException("layout for decodeStruct has no fields");
+		}
+
+		ByteBuffer src = buffer.getByteBuffer();
+		int position = 0;
+		if (args.containsKey(TiC.PROPERTY_POSITION)) {
+			position = TiConvert.toInt(args, TiC.PROPERTY_POSITION);
+		}
+		int count = Math.max(0, src.limit() - position) / recordSize;
+		if (args.containsKey(TiC.PROPERTY_COUNT)) {
+			count = TiConvert.toInt(args, TiC.PROPERTY_COUNT);
+		}
+
+		return decodeStruct(src, names, types, offsets, recordSize, position, count, byteOrder);
+	}
+
+	private static KrollDict decodeStruct(ByteBuffer src, String names[], int types[], int offsets[],
+		int recordSize, int position, int count, int byteOrder)
+	{
+		validateRegion(position, count * recordSize, src.limit());
+
+		ByteBuffer view = src.duplicate();
+		view.order(toByteOrder(byteOrder));
+
+		int fieldCount = names.length;
+		Object columns[] = new Object[fieldCount];
+		for (int i = 0; i < fieldCount; i++) {
+			if (names[i] == null) {
+				continue;
+			}
+			switch (types[i]) {
+				case CODE_FLOAT:
+					columns[i] = new float[count];
+					break;
+				case CODE_LONG:
+					columns[i] = new long[count];
+					break;
+				case CODE_DOUBLE:
+					columns[i] = new double[count];
+					break;
+				default:
+					columns[i] = new int[count];
+					break;
+			}
+		}
+
+		for (int r = 0; r < count; r++) {
+			int record = position + r * recordSize;
+			for (int i = 0; i < fieldCount; i++) {
+				Object column = columns[i];
+				if (column == null) {
+					continue;
+				}
+				int offset = record + offsets[i];
+				switch (types[i]) {
+					case CODE_BYTE:
+						((int[]) column)[r] = view.get(offset);
+						break;
+					case CODE_SHORT:
+						((int[]) column)[r] = view.getShort(offset) & 0xFFFF;
+						break;
+					case CODE_INT:
+						((int[]) column)[r] = view.getInt(offset);
+						break;
+					case CODE_FLOAT:
+						((float[]) column)[r] = view.getFloat(offset);
+						break;
+					case CODE_LONG:
+						((long[]) column)[r] = view.getLong(offset);
+						break;
+					default:
+						((double[]) column)[r] = view.getDouble(offset);
+						break;
+				}
+			}
+		}
+
+		KrollDict result = new KrollDict();
+		for (int i = 0; i < fieldCount; i++) {
+			if (columns[i] != null) {
+				result.put(names[i], columns[i]);
+			}
+		}
+		return result;
 	}
 
 	@Kroll.method
@@ -192,7 +472,6 @@ public class CodecModule extends KrollModule
 		}
 
 		String charset = validateCharset(args);
-		byte destBuffer[] = dest.getBuffer();
 		validatePositionAndLength(srcPosition, srcLength, src.length());
 
 		if (srcPosition != 0 || srcLength != src.length()) {
@@ -201,7 +480,13 @@ public class CodecModule extends KrollModule
 
 		try {
 			byte encoded[] = src.getBytes(charset);
-			System.arraycopy(encoded, 0, destBuffer, destPosition, encoded.length);
+			ByteBuffer destBuffer = dest.getByteBuffer();
+			if (destPosition + encoded.length > destBuffer.limit()) {
+				throw new IndexOutOfBoundsException("encoded length " + encoded.length + " at position " + destPosition +
+					" is larger than the buffer length: " + destBuffer.limit());
+			}
+			destBuffer.position(destPosition);
+			destBuffer.put(encoded);
 
 			return destPosition + encoded.length;
 		} catch (UnsupportedEncodingException e) {
@@ -218,22 +503,29 @@ public class CodecModule extends KrollModule
 		}
 
 		BufferProxy src = (BufferProxy) args.get(TiC.PROPERTY_SOURCE);
-		byte buffer[] = src.getBuffer();
+		ByteBuffer buffer = src.getByteBuffer();
 
 		int position = 0;
 		if (args.containsKey(TiC.PROPERTY_POSITION)) {
 			position = TiConvert.toInt(args, TiC.PROPERTY_POSITION);
 		}
-		int length = buffer.length;
+		int length = buffer.limit();
 		if (args.containsKey(TiC.PROPERTY_LENGTH)) {
 			length = TiConvert.toInt(args, TiC.PROPERTY_LENGTH);
 		}
 
-		validatePositionAndLength(position, length, buffer.length);
+		validatePositionAndLength(position, length, buffer.limit());
 		String charset = validateCharset(args);
 
 		try {
-			return new String(buffer, position, length, charset);
+			if (buffer.hasArray()) {
+				return new String(buffer.array(), buffer.arrayOffset() + position, length, charset);
+			}
+
+			byte bytes[] = new byte[length];
+			buffer.position(position);
+			buffer.get(bytes);
+			return new String(bytes, charset);
 		} catch (UnsupportedEncodingException e) {
 			Log.w(TAG, e.getMessage(), e);
 			throw new IllegalArgumentException("Unsupported Encoding: " + charset);
@@ -266,6 +558,44 @@ public class CodecModule extends KrollModule
 		return 0;
 	}
 
+	private static int getTypeCode(String type)
+	{
+		if (TYPE_BYTE.equals(type)) {
+			return CODE_BYTE;
+		} else if (TYPE_SHORT.equals(type)) {
+			return CODE_SHORT;
+		} else if (TYPE_INT.equals(type)) {
+			return CODE_INT;
+		} else if (TYPE_FLOAT.equals(type)) {
+			return CODE_FLOAT;
+		} else if (TYPE_LONG.equals(type)) {
+			return CODE_LONG;
+		}
+		return CODE_DOUBLE;
+	}
+
+	private static int validateType(String type)
+	{
+		int width = getWidth(type);
+		if (width == 0) {
+			throw new IllegalArgumentException("unknown type: " + type);
+		}
+		return width;
+	}
+
+	private static void validateRegion(int position, int length, int limit)
+	{
+		if (position < 0 || length < 0 || position + length > limit) {
+			throw new IndexOutOfBoundsException("position " + position + " and length " + length +
+				" is outside the buffer length: " + limit);
+		}
+	}
+
+	private static ByteOrder toByteOrder(int byteOrder)
+	{
+		return byteOrder == BIG_ENDIAN ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+	}
+
 	public static int getByteOrder(Object byteOrder)
 	{
 		if (byteOrder instanceof Number) {
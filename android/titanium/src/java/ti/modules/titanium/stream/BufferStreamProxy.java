@@ -7,15 +7,12 @@
 
 package ti.modules.titanium.stream;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 
 import org.appcelerator.kroll.KrollProxy;
 import org.appcelerator.kroll.annotations.Kroll;
-import org.appcelerator.kroll.common.Log;
 import org.appcelerator.kroll.common.TiConfig;
 import org.appcelerator.titanium.io.TiStream;
-import org.appcelerator.titanium.util.TiStreamHelper;
 
 import ti.modules.titanium.BufferProxy;
 
@@ -105,22 +102,21 @@ public class BufferStreamProxy extends KrollProxy implements TiStream
 			throw new IllegalArgumentException("Invalid number of arguments");
 		}
 
-		ByteArrayInputStream bufferInputStream = new ByteArrayInputStream(buffer.getBuffer(), position, (buffer.getLength() - position));
-		int bytesRead;
-
-		try {
-			bytesRead = TiStreamHelper.read(bufferInputStream, bufferProxy, offset, length);
+		// copied straight between the two buffers
+		int available = buffer.getLength() - position;
+		if (available <= 0) {
+			return -1;
+		}
 
-			if (bytesRead > -1) {
-				position += bytesRead;
-			}
+		int bytesRead = Math.min(Math.min(length, bufferProxy.getLength() - offset), available);
+		if (bytesRead <= 0) {
+			return 0;
+		}
 
-			return bytesRead;
+		bufferProxy.write(offset, buffer, position, bytesRead);
+		position += bytesRead;
 
-		} catch (IOException e) {
-			Log.e(LCAT, "Unable to read from buffer stream, IO error", e);
-			throw new IOException("Unable to read from buffer stream, IO error");
-		}
+		return bytesRead;
 	}
 
 	@Kroll.method
@@ -175,7 +171,7 @@ public class BufferStreamProxy extends KrollProxy implements TiStream
 			throw new IllegalArgumentException("Invalid number of arguments");
 		}
 
-		int bytesWritten = buffer.write(position, bufferProxy.getBuffer(), offset, length);
+		int bytesWritten = buffer.write(position, bufferProxy, offset, length);
 		position += bytesWritten;
 
 		return bytesWritten;
@@ -0,0 +1,67 @@
+/**
+ * Appcelerator Titanium Mobile
+ * Copyright (c) 2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Apache Public License
+ * Please see the LICENSE included with this distribution for details.
+ */
+
+package ti.modules.titanium.stream;
+
+import java.util.LinkedList;
+
+import ti.modules.titanium.BufferProxy;
+
+/**
+ * Chunk buffers shared by writeStream calls, so copying a large stream doesn't allocate a
+ * new buffer proxy and byte array for every copy. Only buffers that never reach Javascript
+ * may be pooled, pump handlers get a new buffer for every chunk.
+ */
+class StreamChunkPool
+{
+	private static final int MAX_POOLED_CHUNKS = 8;
+	// larger chunks are left to the garbage collector
+	private static final int MAX_POOLED_CHUNK_SIZE = 64 * 1024;
+
+	// guarded by chunks
+	private static final LinkedList<BufferProxy> chunks = new LinkedList<BufferProxy>();
+
+	/**
+	 * @param size the chunk size in bytes.
+	 * @return a pooled chunk of exactly size bytes, or a new one if none is available.
+	 */
+	static BufferProxy obtain(int size)
+	{
+		synchronized (chunks) {
+			for (int i = chunks.size() - 1; i >= 0; i--) {
+				if (chunks.get(i).getLength() == size) {
+					return chunks.remove(i);
+				}
+			}
+		}
+
+		return new BufferProxy(size);
+	}
+
+	/**
+	 * Returns a chunk to the pool. The chunk must no longer be used by the caller.
+	 * @param chunk the chunk returned by {@link #obtain(int)}.
+	 * @param size the size it was obtained with, in case it was shortened for a partial read.
+	 */
+	static void recycle(BufferProxy chunk, int size)
+	{
+		if (size > MAX_POOLED_CHUNK_SIZE) {
+			return;
+		}
+
+		if (chunk.getLength() != size) {
+			chunk.resize(size);
+		}
+
+		synchronized (chunks) {
+			if (chunks.size() == MAX_POOLED_CHUNKS) {
+				chunks.removeFirst();
+			}
+			chunks.addLast(chunk);
+		}
+	}
+}
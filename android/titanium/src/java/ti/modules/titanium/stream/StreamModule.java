@@ -8,12 +8,23 @@
 package ti.modules.titanium.stream;
 
 import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.appcelerator.kroll.KrollDict;
 import org.appcelerator.kroll.KrollFunction;
 import org.appcelerator.kroll.KrollModule;
+import org.appcelerator.kroll.KrollRuntime;
 import org.appcelerator.kroll.annotations.Kroll;
+import org.appcelerator.kroll.common.Log;
 import org.appcelerator.kroll.common.TiConfig;
+import org.appcelerator.kroll.common.TiMessenger;
 import org.appcelerator.titanium.TiBlob;
 import org.appcelerator.titanium.io.TiStream;
 
@@ -30,6 +41,42 @@ public class StreamModule extends KrollModule
 	private static final String LCAT = "StreamModule";
 	private static final boolean DBG = TiConfig.LOGD;
 
+	private static final int MAX_IO_THREADS = 8;
+	private static final long IO_KEEP_ALIVE_SECONDS = 30;
+	private static final int READ_ALL_CHUNK_SIZE = 1024;
+	// chunks an async pump reads ahead of its handler
+	private static final int PUMP_READ_AHEAD = 2;
+	private static final long PUMP_WAIT_SECONDS = 1;
+
+	private static ThreadPoolExecutor ioExecutor;
+
+	/**
+	 * Async reads, writes and pumps share a pool of threads. Pumping a socket can hold on to a
+	 * thread for as long as the socket is open, so once every pool thread is busy further
+	 * operations get a thread of their own rather than waiting behind them.
+	 */
+	private static synchronized Executor getIOExecutor()
+	{
+		if (ioExecutor == null) {
+			ioExecutor = new ThreadPoolExecutor(0, MAX_IO_THREADS, IO_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+				new SynchronousQueue<Runnable>(), new ThreadFactory() {
+					private final AtomicInteger threadCounter = new AtomicInteger();
+
+					public Thread newThread(Runnable runnable)
+					{
+						return new Thread(runnable, "TiStream-" + threadCounter.incrementAndGet());
+					}
+				}, new RejectedExecutionHandler() {
+					public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor)
+					{
+						Log.w(LCAT, "All stream threads are busy, starting a dedicated thread");
+						new Thread(runnable, "TiStream-overflow").start();
+					}
+				});
+		}
+		return ioExecutor;
+	}
+
 	@Kroll.method
 	public Object createStream(KrollDict params)
 	//public Object createStream(Object container)
@@ -125,7 +172,7 @@ public class StreamModule extends KrollModule
 		final int flength = length;
 		final KrollFunction fResultsCallback = resultsCallback;
 
-		new Thread(new Runnable() {
+		getIOExecutor().execute(new Runnable() {
 			public void run()
 			{
 				int bytesRead = -1;
@@ -144,7 +191,7 @@ public class StreamModule extends KrollModule
 
 				fResultsCallback.callAsync(getKrollObject(), buildRWCallbackArgs(fsourceStream, bytesRead, errorState, errorDescription));
 			}
-		}).start();
+		});
 	}
 
 	@Kroll.method
@@ -185,7 +232,7 @@ public class StreamModule extends KrollModule
 		}
 
 		if (args.length == 1) {
-			BufferProxy buffer = new BufferProxy(1024);
+			BufferProxy buffer = new BufferProxy(READ_ALL_CHUNK_SIZE);
 			int offset = 0;
 
 			readAll(sourceStream, buffer, offset);
@@ -197,17 +244,13 @@ public class StreamModule extends KrollModule
 			final BufferProxy fbuffer = bufferArg;
 			final KrollFunction fResultsCallback = resultsCallback;
 
-			new Thread(new Runnable() {
+			getIOExecutor().execute(new Runnable() {
 				public void run()
 				{
 					int offset = 0;
 					int errorState = 0;
 					String errorDescription = "";
 
-					if (fbuffer.getLength() < 1024) {
-						fbuffer.resize(1024);
-					}
-
 					try {
 						readAll(fsourceStream, fbuffer, offset);
 
@@ -218,7 +261,7 @@ public class StreamModule extends KrollModule
 
 					fResultsCallback.callAsync(getKrollObject(), buildRWCallbackArgs(fsourceStream, fbuffer.getLength(), errorState, errorDescription));
 				}
-			}).start();
+			});
 
 			return null; // TODO KrollProxy.UNDEFINED;
 		}
@@ -229,13 +272,18 @@ public class StreamModule extends KrollModule
 		int totalBytesRead = 0;
 
 		while(true) {
-			int bytesRead = sourceStream.read(new Object[] {buffer, offset, 1024});
+			// grow geometrically, so reading n bytes copies O(n) rather than O(n^2)
+			int length = buffer.getLength();
+			if (length - offset < READ_ALL_CHUNK_SIZE) {
+				buffer.resize(Math.max(length * 2, offset + READ_ALL_CHUNK_SIZE));
+			}
+
+			int bytesRead = sourceStream.read(new Object[] {buffer, offset, buffer.getLength() - offset});
 			if (bytesRead == -1) {
 				break;
 			}
 
 			totalBytesRead += bytesRead;
-			buffer.resize(1024 + totalBytesRead);
 			offset += bytesRead;
 		}
 
@@ -310,7 +358,7 @@ public class StreamModule extends KrollModule
 		final int flength = length;
 		final KrollFunction fResultsCallback = resultsCallback;
 
-		new Thread(new Runnable() {
+		getIOExecutor().execute(new Runnable() {
 			public void run()
 			{
 				int bytesWritten = -1;
@@ -328,7 +376,7 @@ public class StreamModule extends KrollModule
 
 				fResultsCallback.callAsync(getKrollObject(), buildRWCallbackArgs(foutputStream, bytesWritten, errorState, errorDescription));
 			}
-		}).start();
+		});
 	}
 
 	@Kroll.method
@@ -385,7 +433,7 @@ public class StreamModule extends KrollModule
 			final int fmaxChunkSize = maxChunkSize;
 			final KrollFunction fResultsCallback = resultsCallback;
 
-			new Thread(new Runnable() {
+			getIOExecutor().execute(new Runnable() {
 				public void run()
 				{
 					int totalBytesWritten = 0;
@@ -402,7 +450,7 @@ public class StreamModule extends KrollModule
 
 					fResultsCallback.callAsync(getKrollObject(), buildWriteStreamCallbackArgs(finputStream, foutputStream, totalBytesWritten, errorState, errorDescription));
 				}
-			}).start();
+			});
 
 			return 0;
 		}
@@ -410,18 +458,22 @@ public class StreamModule extends KrollModule
 
 	private int writeStream(TiStream inputStream, TiStream outputStream, int maxChunkSize) throws IOException
 	{
-		BufferProxy buffer = new BufferProxy(maxChunkSize);
+		BufferProxy buffer = StreamChunkPool.obtain(maxChunkSize);
 		int totalBytesWritten = 0;
 
-		while(true) {
-			int bytesRead = inputStream.read(new Object[] {buffer, 0, maxChunkSize});
-			if (bytesRead == -1) {
-				break;
+		try {
+			while(true) {
+				int bytesRead = inputStream.read(new Object[] {buffer, 0, maxChunkSize});
+				if (bytesRead == -1) {
+					break;
+				}
+
+				int bytesWritten = outputStream.write(new Object[] {buffer, 0, bytesRead});
+				totalBytesWritten += bytesWritten;
 			}
 
-			int bytesWritten = outputStream.write(new Object[] {buffer, 0, bytesRead});
-			totalBytesWritten += bytesWritten;
-			buffer.clear();
+		} finally {
+			StreamChunkPool.recycle(buffer, maxChunkSize);
 		}
 
 		return totalBytesWritten;
@@ -478,15 +530,12 @@ public class StreamModule extends KrollModule
 			final KrollFunction fHandler = handler;
 			final int fmaxChunkSize = maxChunkSize;
 
-			new Thread(
-					new Runnable()
-					{
-						public void run()
-						{
-							pump(finputStream, fHandler, fmaxChunkSize);
-						}
-					}
-				) {}.start();
+			getIOExecutor().execute(new Runnable() {
+				public void run()
+				{
+					pumpAsync(finputStream, fHandler, fmaxChunkSize);
+				}
+			});
 
 		} else {
 			pump(inputStream, handler, maxChunkSize);
@@ -501,23 +550,14 @@ public class StreamModule extends KrollModule
 
 		try {
 			while (true) {
+				// a new chunk each time, the handler may keep it or write it asynchronously
 				BufferProxy buffer = new BufferProxy(maxChunkSize);
-				int bytesRead = inputStream.read(new Object[] {buffer, 0, maxChunkSize});
+				int bytesRead = readChunk(inputStream, buffer, maxChunkSize);
 				if (bytesRead != -1) {
 					totalBytesRead += bytesRead;
 				}
 
-				if (bytesRead != buffer.getLength()) {
-					if (bytesRead == -1) {
-						buffer.resize(0);
-
-					} else {
-						buffer.resize(bytesRead);
-					}
-				}
-
 				handler.call(getKrollObject(), buildPumpCallbackArgs(inputStream, buffer, bytesRead, totalBytesRead, errorState, errorDescription));
-				buffer = null;
 
 				if (bytesRead == -1) {
 					break;
@@ -527,8 +567,106 @@ public class StreamModule extends KrollModule
 		} catch (IOException e) {
 			errorState = 1;
 			errorDescription = e.getMessage();
-			handler.call(getKrollObject(), buildPumpCallbackArgs(inputStream, new BufferProxy(), 0, totalBytesRead, errorState, errorDescription));
+			handler.call(getKrollObject(), buildPumpCallbackArgs(inputStream, new BufferProxy(0), 0, totalBytesRead, errorState, errorDescription));
+		}
+	}
+
+	/**
+	 * Reads on a stream thread and calls the handler on the runtime thread. Reading runs at most
+	 * PUMP_READ_AHEAD chunks ahead of the handler, so a slow handler slows down reading instead of
+	 * queueing up the whole stream in memory. Each chunk is a new buffer, since the handler may
+	 * keep it.
+	 */
+	private void pumpAsync(final TiStream inputStream, final KrollFunction handler, final int maxChunkSize)
+	{
+		final Semaphore chunksAvailable = new Semaphore(PUMP_READ_AHEAD);
+		int totalBytesRead = 0;
+
+		try {
+			while (true) {
+				if (!acquireChunk(chunksAvailable)) {
+					return;
+				}
+
+				BufferProxy buffer = new BufferProxy(maxChunkSize);
+				int bytesRead;
+				try {
+					bytesRead = readChunk(inputStream, buffer, maxChunkSize);
+
+				} catch (IOException e) {
+					chunksAvailable.release();
+					throw e;
+				}
+
+				if (bytesRead != -1) {
+					totalBytesRead += bytesRead;
+				}
+
+				final KrollDict args = buildPumpCallbackArgs(inputStream, buffer, bytesRead, totalBytesRead, 0, "");
+				TiMessenger.postOnRuntime(new Runnable() {
+					public void run()
+					{
+						try {
+							handler.call(getKrollObject(), args);
+
+						} finally {
+							chunksAvailable.release();
+						}
+					}
+				});
+
+				if (bytesRead == -1) {
+					break;
+				}
+			}
+
+		} catch (IOException e) {
+			final KrollDict args = buildPumpCallbackArgs(inputStream, new BufferProxy(0), 0, totalBytesRead, 1, e.getMessage());
+			TiMessenger.postOnRuntime(new Runnable() {
+				public void run()
+				{
+					handler.call(getKrollObject(), args);
+				}
+			});
+		}
+
+		if (DBG) {
+			Log.d(LCAT, "Pumped " + totalBytesRead + " bytes");
+		}
+	}
+
+	// Waits for the handler to catch up, gives up if the runtime goes away
+	private boolean acquireChunk(Semaphore chunksAvailable)
+	{
+		try {
+			while (!chunksAvailable.tryAcquire(PUMP_WAIT_SECONDS, TimeUnit.SECONDS)) {
+				if (!KrollRuntime.isInitialized()) {
+					Log.w(LCAT, "Runtime disposed, stopping pump");
+					return false;
+				}
+			}
+			return true;
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	/**
+	 * Reads up to maxChunkSize bytes into the chunk, shortening it to the number of bytes read.
+	 */
+	private int readChunk(TiStream inputStream, BufferProxy buffer, int maxChunkSize) throws IOException
+	{
+		if (buffer.getLength() != maxChunkSize) {
+			buffer.resize(maxChunkSize);
+		}
+
+		int bytesRead = inputStream.read(new Object[] {buffer, 0, maxChunkSize});
+		if (bytesRead != buffer.getLength()) {
+			buffer.resize(bytesRead == -1 ? 0 : bytesRead);
 		}
+		return bytesRead;
 	}
 
 	private KrollDict buildRWCallbackArgs(TiStream sourceStream, int bytesProcessed, int errorState, String errorDescription)
@@ -0,0 +1,181 @@
+/**
+ * Appcelerator Titanium Mobile
+ * Copyright (c) 2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Apache Public License
+ * Please see the LICENSE included with this distribution for details.
+ */
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.appcelerator.kroll.KrollEventCallback;
+import org.appcelerator.kroll.KrollEventListeners;
+
+/*
+ * Adds, removes and fires KrollEventListeners callbacks from several threads at once, the way
+ * the UI and runtime threads do, and checks that:
+ *  - firing never throws while callbacks are added and removed,
+ *  - callbacks registered for the whole run see every event exactly once,
+ *  - callbacks are called in the order they were added,
+ *  - a removed callback is never called by a fire that started after the removal.
+ * Runs on a desktop JVM:
+ *
+ *   javac -d /tmp/listeners ../runtime/common/src/java/org/appcelerator/kroll/KrollEventCallback.java \
+ *     src/java/org/appcelerator/kroll/KrollEventListeners.java tools/KrollEventListenersStress.java
+ *   java -cp /tmp/listeners KrollEventListenersStress [fires] [churnThreads]
+ */
+public class KrollEventListenersStress
+{
+	private static final int DEFAULT_FIRES = 200000;
+	private static final int DEFAULT_CHURN_THREADS = 2;
+	private static final int STABLE_LISTENERS = 4;
+	private static final String EVENT = "click";
+
+	private static final AtomicReference<String> failure = new AtomicReference<String>();
+
+	private static void fail(String message)
+	{
+		failure.compareAndSet(null, message);
+	}
+
+	// Records the order callbacks run in during a single fire
+	private static final class OrderCallback implements KrollEventCallback
+	{
+		final int order;
+		final AtomicInteger calls = new AtomicInteger();
+
+		OrderCallback(int order)
+		{
+			this.order = order;
+		}
+
+		public void call(Object data)
+		{
+			calls.incrementAndGet();
+			int[] last = (int[]) data;
+			if (order <= last[0]) {
+				fail("callback " + order + " ran after callback " + last[0]);
+			}
+			last[0] = order;
+		}
+	}
+
+	// Must never be called by a fire that started after it was removed
+	private static final class ChurnCallback implements KrollEventCallback
+	{
+		final int owner;
+		volatile boolean removed = false;
+
+		ChurnCallback(int owner)
+		{
+			this.owner = owner;
+		}
+
+		public void call(Object data)
+		{
+			// only the owning thread's fires are known to start after the removal
+			if (removed && ((int[]) data)[1] == owner) {
+				fail("removed callback was called");
+			}
+		}
+	}
+
+	public static void main(String[] args) throws Exception
+	{
+		final int fires = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_FIRES;
+		int churnThreads = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_CHURN_THREADS;
+
+		final KrollEventListeners listeners = new KrollEventListeners();
+		final ArrayList<OrderCallback> stable = new ArrayList<OrderCallback>();
+		for (int i = 0; i < STABLE_LISTENERS; i++) {
+			OrderCallback callback = new OrderCallback(i * 2);
+			stable.add(callback);
+			listeners.add(EVENT, callback);
+		}
+
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicInteger firesLeft = new AtomicInteger(fires * 2);
+		final AtomicInteger churnFires = new AtomicInteger();
+		ArrayList<Thread> threads = new ArrayList<Thread>();
+
+		// "ui" and "runtime" threads fire concurrently
+		for (String name : new String[] { "ui", "runtime" }) {
+			threads.add(new Thread(name) {
+				public void run()
+				{
+					await(start);
+					while (firesLeft.getAndDecrement() > 0 && failure.get() == null) {
+						try {
+							listeners.fire(EVENT, new int[] { -1, 0 });
+
+						} catch (Throwable t) {
+							fail(getName() + ": " + t);
+						}
+					}
+				}
+			});
+		}
+
+		// churn threads add and remove callbacks while events are fired
+		for (int i = 0; i < churnThreads; i++) {
+			final int owner = i + 1;
+			threads.add(new Thread("churn-" + i) {
+				public void run()
+				{
+					await(start);
+					while (firesLeft.get() > 0 && failure.get() == null) {
+						ChurnCallback callback = new ChurnCallback(owner);
+						int id = listeners.add(EVENT, callback);
+						if (!listeners.remove(EVENT, id)) {
+							fail("callback " + id + " could not be removed");
+						}
+						callback.removed = true;
+
+						// a fire that starts now must not see the removed callback
+						listeners.fire(EVENT, new int[] { -1, owner });
+						churnFires.incrementAndGet();
+					}
+				}
+			});
+		}
+
+		long startTime = System.nanoTime();
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		long elapsed = (System.nanoTime() - startTime) / 1000000;
+
+		int expectedCalls = fires * 2 + churnFires.get();
+		for (OrderCallback callback : stable) {
+			if (callback.calls.get() != expectedCalls) {
+				fail("stable callback " + callback.order + " was called " + callback.calls.get() + " times, expected " + expectedCalls);
+			}
+		}
+		if (!listeners.hasListeners(EVENT)) {
+			fail("stable callbacks are gone");
+		}
+
+		String result = failure.get();
+		if (result != null) {
+			System.out.println("FAILED: " + result);
+			System.exit(1);
+		}
+		System.out.println("OK: " + (fires * 2) + " fires with " + churnThreads + " churn threads in " + elapsed + " ms");
+	}
+
+	private static void await(CountDownLatch latch)
+	{
+		try {
+			latch.await();
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -3,6 +3,9 @@ describe("Ti.Codec tests", {
 		valueOf(Ti.Codec).shouldBeObject();
 
 		var functions = ["encodeNumber", "decodeNumber", "encodeString", "decodeString", "getNativeByteOrder"];
+		if (Ti.Platform.osname == "android") {
+			functions = functions.concat(["encodeNumbers", "decodeNumbers", "decodeStruct"]);
+		}
 		for (var i = 0; i < functions.length; i++) {
 			valueOf(Ti.Codec[functions[i]]).shouldBeFunction();
 		};
@@ -268,6 +271,79 @@ describe("Ti.Codec tests", {
 		valueOf( Ti.Codec.decodeString({ source: buffer, charset: Ti.Codec.CHARSET_UTF16 })).shouldBe(PHRASE);
 	},
 
+	testBulkNumbers: function() {
+		if (Ti.Platform.osname != "android") {
+			return;
+		}
+
+		var buffer = Ti.createBuffer({ length: 10 });
+		var end = Ti.Codec.encodeNumbers({
+			source: [ 0x1234, 0xabcd, -1 ],
+			dest: buffer,
+			position: 4,
+			type: Ti.Codec.TYPE_SHORT,
+			byteOrder: Ti.Codec.BIG_ENDIAN
+		});
+		valueOf(end).shouldBe(10);
+		valueOf(buffer[4]).shouldBe(0x12);
+		valueOf(buffer[5]).shouldBe(0x34);
+		valueOf(buffer[6]).shouldBe(0xab);
+		valueOf(buffer[7]).shouldBe(0xcd);
+		valueOf(buffer[8]).shouldBe(0xff);
+		valueOf(buffer[9]).shouldBe(0xff);
+
+		var values = Ti.Codec.decodeNumbers({
+			source: buffer,
+			position: 4,
+			type: Ti.Codec.TYPE_SHORT,
+			byteOrder: Ti.Codec.BIG_ENDIAN
+		});
+		valueOf(values.length).shouldBe(3);
+		valueOf(values[0]).shouldBe(0x1234);
+		valueOf(values[1]).shouldBe(0xabcd);
+		valueOf(values[2]).shouldBe(0xffff);
+
+		buffer = Ti.createBuffer({ length: 16 });
+		Ti.Codec.encodeNumbers({ source: [ 1.5, -2.25 ], dest: buffer, type: Ti.Codec.TYPE_DOUBLE });
+		values = Ti.Codec.decodeNumbers({ source: buffer, type: Ti.Codec.TYPE_DOUBLE, count: 2 });
+		valueOf(values[0]).shouldBe(1.5);
+		valueOf(values[1]).shouldBe(-2.25);
+
+		valueOf(function() {
+			Ti.Codec.decodeNumbers({ source: buffer, type: Ti.Codec.TYPE_DOUBLE, count: 3 });
+		}).shouldThrowException();
+	},
+
+	testDecodeStruct: function() {
+		if (Ti.Platform.osname != "android") {
+			return;
+		}
+
+		// records of { int id; byte padding; short value }
+		var count = 50;
+		var buffer = Ti.createBuffer({ length: count * 7 });
+		for (var i = 0; i < count; i++) {
+			Ti.Codec.encodeNumber({ source: i, dest: buffer, position: i * 7, type: Ti.Codec.TYPE_INT, byteOrder: Ti.Codec.LITTLE_ENDIAN });
+			Ti.Codec.encodeNumber({ source: i * 3, dest: buffer, position: i * 7 + 5, type: Ti.Codec.TYPE_SHORT, byteOrder: Ti.Codec.LITTLE_ENDIAN });
+		}
+
+		var records = Ti.Codec.decodeStruct({
+			source: buffer,
+			byteOrder: Ti.Codec.LITTLE_ENDIAN,
+			layout: [
+				{ name: "id", type: Ti.Codec.TYPE_INT },
+				{ type: Ti.Codec.TYPE_BYTE },
+				{ name: "value", type: Ti.Codec.TYPE_SHORT }
+			]
+		});
+		valueOf(records.id.length).shouldBe(count);
+		valueOf(records.value.length).shouldBe(count);
+		for (var i = 0; i < count; i++) {
+			valueOf(records.id[i]).shouldBe(i);
+			valueOf(records.value[i]).shouldBe(i * 3);
+		}
+	},
+
 	testDecodeString: function() {
 		var TEST = "spät";
 		var buffer = Ti.createBuffer({ length: 5 });
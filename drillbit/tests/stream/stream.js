@@ -386,4 +386,66 @@ describe("Ti.Stream tests", {
 		timeout: 10000,
 		timeoutError: "Timed out waiting for pump"
 	}),
+
+	pumpThroughput: asyncTest({
+		start: function() {
+			// Pumps a few MB through a buffer stream and into a file stream, and logs the throughput.
+			var size = 4 * 1024 * 1024;
+			var chunksize = 64 * 1024;
+			var sourceBuffer = Ti.createBuffer({length:size});
+			for (var i=0; i < size; i += 4096) {
+				sourceBuffer[i] = (i / 4096) & 0xff;
+			}
+
+			// writeStream, buffer stream to file stream
+			var file = Ti.Filesystem.getFile(Ti.Filesystem.applicationDataDirectory, 'pumpthroughput.bin');
+			if (file.exists()) {
+				file.deleteFile();
+			}
+			var fileStream = file.open(Ti.Filesystem.MODE_WRITE);
+			var bufferStream = Ti.Stream.createStream({source:sourceBuffer, mode:Ti.Stream.MODE_READ});
+			var start = new Date().getTime();
+			var written = Ti.Stream.writeStream(bufferStream, fileStream, chunksize);
+			var elapsed = Math.max(1, new Date().getTime() - start);
+			fileStream.close();
+			valueOf(written).shouldBeExactly(size);
+			Ti.API.info("writeStream: " + (size / 1024 / elapsed).toFixed(1) + " MB/s");
+
+			// async pump, file stream to handler
+			var test = this;
+			var readStream = file.open(Ti.Filesystem.MODE_READ);
+			var total = 0;
+			var chunks = 0;
+			var done = this.async(function() {
+				elapsed = Math.max(1, new Date().getTime() - start);
+				readStream.close();
+				file.deleteFile();
+				valueOf(total).shouldBeExactly(size);
+				Ti.API.info("pump: " + chunks + " chunks, " + (size / 1024 / elapsed).toFixed(1) + " MB/s");
+			});
+
+			start = new Date().getTime();
+			Ti.Stream.pump(readStream, function(e) {
+				if (e.bytesProcessed == -1) {
+					done();
+					return;
+				}
+
+				try {
+					valueOf(e.errorState).shouldBeExactly(0);
+					// buffers are reused once the handler returns, check them while we have them
+					valueOf(e.buffer.length).shouldBeExactly(e.bytesProcessed);
+					if (total % 4096 == 0) {
+						valueOf(e.buffer[0]).shouldBeExactly((total / 4096) & 0xff);
+					}
+				} catch (err) {
+					test.failed(err);
+				}
+				total += e.bytesProcessed;
+				chunks++;
+			}, chunksize, true);
+		},
+		timeout: 60000,
+		timeoutError: "Timed out waiting for pump throughput"
+	}),
 });
\ No newline at end of file